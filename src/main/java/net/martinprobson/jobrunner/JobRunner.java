@@ -21,43 +21,94 @@ import com.github.dexecutor.core.ExecutionConfig;
 import com.github.dexecutor.core.task.ExecutionResults;
 import net.martinprobson.jobrunner.common.BaseTask;
 import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskListener;
 import net.martinprobson.jobrunner.monitor.SimpleMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class JobRunner extends DefaultDexecutor<String, TaskResult> {
 
     public JobRunner(final JobRunnerConfig config) throws JobRunnerException {
         super(config);
         this.config = config;
         setDependencies();
+        for (BaseTask task : config.getJob()) {
+            task.setDispatcher(config.getDispatcher());
+            task.setSpeculator(config.getSpeculator());
+            for (TaskListener listener : config.getListeners())
+                task.addListener(listener);
+        }
     }
 
     @Override
     public ExecutionResults<String, TaskResult> execute(final ExecutionConfig ExecutionConfig) {
-        SimpleMonitor monitor = SimpleMonitor.getInstance(config.getJob());
+        SimpleMonitor monitor = SimpleMonitor.getInstance(config.getJob(), config.getDurationEstimator());
         monitor.start();
-        ExecutionResults<String,TaskResult> results = super.execute(ExecutionConfig);
+        ExecutionResults<String,TaskResult> results;
+        if (toRun == 0) {
+            log.info("All tasks have already completed, nothing to run");
+            results = new ExecutionResults<>();
+        } else
+            results = super.execute(ExecutionConfig);
         monitor.stop();
         return results;
     }
 
 
+    /**
+     * <p>Add each task and its dependencies to the execution graph.</p>
+     * <p>Tasks that have already succeeded (for example, restored from a checkpoint) are left out of the
+     * graph, as long as every task they depend on has also already succeeded.</p>
+     */
     private void setDependencies() throws JobRunnerException {
         for (BaseTask task : config.getJob()) {
             for (String dep : task.getDependencies()) {
-                if (config.getJob().hasId(dep)) {
-                    if (task.getId().equals(dep))
-                        throw new JobRunnerException(task.getId() + " - setDependencies: A task cannot be dependent on itself");
-                    this.addDependency(dep, task.getId());
-                    log.trace(task.getId() + " depends on " + dep);
-                } else
+                if (!config.getJob().hasId(dep))
                     throw new JobRunnerException(task.getId() + " - setDependencies: There is no Task with an id of: " + dep);
+                if (task.getId().equals(dep))
+                    throw new JobRunnerException(task.getId() + " - setDependencies: A task cannot be dependent on itself");
+            }
+        }
+        Map<String, Boolean> done = new HashMap<>();
+        for (BaseTask task : config.getJob()) {
+            if (isDone(task, done)) {
+                log.info(task.getId() + " has already completed, it will not be run");
+                continue;
+            }
+            if (task.getTaskResult().succeeded())
+                task.setTaskResult(new TaskResult.Builder(TaskResult.Result.NOT_EXECUTED).build());
+            toRun++;
+            boolean independent = true;
+            for (String dep : task.getDependencies()) {
+                if (isDone(config.getJob().getId(dep), done))
+                    continue;
+                this.addDependency(dep, task.getId());
+                independent = false;
+                log.trace(task.getId() + " depends on " + dep);
             }
-            if (task.getDependencies().size() == 0) this.addIndependent(task.getId());
+            if (independent) this.addIndependent(task.getId());
         }
     }
 
+    /**
+     * @return {@code true} if {@code task} and every task upstream of it have already succeeded.
+     */
+    private boolean isDone(BaseTask task, Map<String, Boolean> done) {
+        Boolean isDone = done.get(task.getId());
+        if (isDone != null)
+            return isDone;
+        done.put(task.getId(), false);
+        isDone = task.getTaskResult().succeeded();
+        for (String dep : task.getDependencies())
+            isDone = isDone && isDone(config.getJob().getId(dep), done);
+        done.put(task.getId(), isDone);
+        return isDone;
+    }
+
     private static final Logger log = LoggerFactory.getLogger(JobRunner.class);
     private final JobRunnerConfig config;
+    private int toRun = 0;
 }
@@ -1,19 +1,87 @@
 package net.martinprobson.jobrunner;
 
 import com.github.dexecutor.core.DexecutorConfig;
+import net.martinprobson.jobrunner.common.DirectTaskDispatcher;
+import net.martinprobson.jobrunner.common.TaskDispatcher;
+import net.martinprobson.jobrunner.common.TaskListener;
+import net.martinprobson.jobrunner.common.TaskSpeculator;
+import net.martinprobson.jobrunner.scheduler.DurationEstimator;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 public class JobRunnerConfig extends DexecutorConfig<String, TaskResult> {
 
+    private final ExecutorService executorService;
     private final Job job;
+    private final TaskDispatcher dispatcher;
+    private final List<TaskListener> listeners = new ArrayList<>();
+    private DurationEstimator durationEstimator;
+    private TaskSpeculator speculator;
 
     public JobRunnerConfig(final ExecutorService executorService, final Job job) {
+        this(executorService, job, new DirectTaskDispatcher());
+    }
+
+    /**
+     * @param executorService The pool Dexecutor submits ready tasks to.
+     * @param job             The Job to run.
+     * @param dispatcher      Decides when each ready task may actually start running.
+     */
+    public JobRunnerConfig(final ExecutorService executorService, final Job job, final TaskDispatcher dispatcher) {
         super(executorService, job);
+        this.executorService = executorService;
         this.job = job;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @return The pool ready tasks are submitted to.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
     }
 
     public Job getJob() {
         return job;
     }
+
+    public TaskDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @param listener Notified as each task of the job starts and finishes running.
+     */
+    public void addListener(final TaskListener listener) {
+        listeners.add(listener);
+    }
+
+    public List<TaskListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * @param durationEstimator Used by the monitor to estimate the time remaining, may be {@code null}.
+     */
+    public void setDurationEstimator(final DurationEstimator durationEstimator) {
+        this.durationEstimator = durationEstimator;
+    }
+
+    public DurationEstimator getDurationEstimator() {
+        return durationEstimator;
+    }
+
+    /**
+     * @param speculator Starts a second copy of a straggling task, {@code null} (the default) for none.
+     */
+    public void setSpeculator(final TaskSpeculator speculator) {
+        this.speculator = speculator;
+    }
+
+    public TaskSpeculator getSpeculator() {
+        return speculator;
+    }
 }
@@ -25,7 +25,9 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -78,34 +80,26 @@ public class LocalFileSystemTaskBuilder implements TaskBuilder {
     }
 
     /**
+     * <p>The task files are listed (in name order) and then their configuration is parsed and the tasks
+     * built in parallel (see {@link ParallelTaskCreator}). The map returned holds the tasks in task file name
+     * order, however many threads are used.</p>
+     *
      * @return A collection of Tasks built from specific base directory.
      * @throws JobRunnerException If files cannot be read or mapping failure
      */
     @Override
     public Map<String, BaseTask> build() throws JobRunnerException {
 
-        Map<String, BaseTask> taskMap = new HashMap<>();
+        long start = System.nanoTime();
         File testDirectory = new File(taskDirectory);
-        String[] taskFiles = testDirectory.list(new SuffixFileFilter(taskProvider.getSupportedFileExtensions()));
-        if (taskFiles != null)
-            for (String taskFile : taskFiles) {
-                File file = new File(testDirectory.getAbsolutePath() + File.separatorChar + taskFile);
-                String fileExtension = FilenameUtils.getExtension(file.getName());
-                //TODO Tidy
-//                String contents;
-//                try {
-//                    contents = FileUtils.readFileToString(file, Charset.defaultCharset());
-//                } catch (IOException e) {
-//                    throw new JobRunnerException("Error reading file: " + file, e);
-//                }
-                Config taskConfig = getTaskConfiguration(new File(configDirectory), taskFile);
-                BaseTask task = taskProvider.fileExtensionCreateTask("." + fileExtension,
-                        taskFile,
-                        file,
-                        taskConfig)
-                        .orElseThrow(() -> new JobRunnerException("No mapping found for " + fileExtension.toLowerCase()));
-                taskMap.put(taskFile, task);
-            }
-        return taskMap;
+        String[] files = testDirectory.list(new SuffixFileFilter(taskProvider.getSupportedFileExtensions()));
+        String[] taskFiles = files == null ? new String[0] : files;
+        Arrays.sort(taskFiles);
+        List<ParallelTaskCreator.TaskFile> found = new ArrayList<>();
+        for (String taskFile : taskFiles)
+            found.add(new ParallelTaskCreator.TaskFile(taskFile,
+                    new File(testDirectory.getAbsolutePath() + File.separatorChar + taskFile),
+                    () -> getTaskConfiguration(new File(configDirectory), taskFile)));
+        return ParallelTaskCreator.create(taskDirectory, found, System.nanoTime() - start);
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.martinprobson.jobrunner;
+
+import com.typesafe.config.Config;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * {@code ParallelTaskCreator} - Parse the configuration of, and create, the tasks found by a file system
+ * {@link TaskBuilder} in parallel, on a {@code ForkJoinPool} of {@code jobrunner.discovery-threads} threads.
+ * The map returned holds the tasks in the order they were found, however many threads are used.
+ *
+ * @author martinr
+ */
+final class ParallelTaskCreator {
+
+    /**
+     * A task file found by a builder, and how to get its task specific configuration.
+     */
+    static final class TaskFile {
+        private final String id;
+        private final File file;
+        private final Supplier<Config> config;
+
+        TaskFile(String id, File file, Supplier<Config> config) {
+            this.id = id;
+            this.file = file;
+            this.config = config;
+        }
+    }
+
+    /**
+     * @param source    Where the tasks came from (for logging).
+     * @param taskFiles The task files, in the order the tasks should be returned.
+     * @param listNanos The time spent finding the task files.
+     * @return The tasks, keyed by id.
+     * @throws JobRunnerException If a task cannot be created.
+     */
+    static Map<String, BaseTask> create(String source, List<TaskFile> taskFiles, long listNanos) throws JobRunnerException {
+        long start = System.nanoTime();
+        TaskProvider taskProvider = TaskProvider.getInstance();
+        Config conf = GlobalConfigurationProvider.get().getConfiguration();
+        AtomicLong configNanos = new AtomicLong();
+        AtomicLong createNanos = new AtomicLong();
+        int threads = conf.getInt("jobrunner.discovery-threads");
+        ForkJoinPool pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        List<BaseTask> tasks;
+        try {
+            tasks = pool.submit(() -> taskFiles.stream()
+                    .parallel()
+                    .map(taskFile -> create(taskProvider, taskFile, configNanos, createNanos))
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobRunnerException("Interrupted building tasks from " + source, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedTaskException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof JobRunnerException)
+                throw (JobRunnerException) cause;
+            throw new JobRunnerException("Error building tasks from " + source, cause);
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, BaseTask> taskMap = new LinkedHashMap<>();
+        for (BaseTask task : tasks)
+            taskMap.put(task.getId(), task);
+        long end = System.nanoTime();
+        log.info(String.format("Built %d tasks from %s in %dms (list files: %dms, parse config: %dms, " +
+                        "create tasks: %dms, summed over %d threads)",
+                taskMap.size(), source, millis(end - start + listNanos), millis(listNanos),
+                millis(configNanos.get()), millis(createNanos.get()), pool.getParallelism()));
+        return taskMap;
+    }
+
+    private static BaseTask create(TaskProvider taskProvider, TaskFile taskFile, AtomicLong configNanos,
+                                   AtomicLong createNanos) {
+        String fileExtension = FilenameUtils.getExtension(taskFile.file.getName());
+        long start = System.nanoTime();
+        Config taskConfig = taskFile.config.get();
+        long parsed = System.nanoTime();
+        configNanos.addAndGet(parsed - start);
+        try {
+            return taskProvider.fileExtensionCreateTask("." + fileExtension,
+                    taskFile.id,
+                    taskFile.file,
+                    taskConfig)
+                    .orElseThrow(() -> new JobRunnerException("No mapping found for " + fileExtension.toLowerCase()));
+        } catch (JobRunnerException e) {
+            throw new UncheckedTaskException(e);
+        } finally {
+            createNanos.addAndGet(System.nanoTime() - parsed);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Carries a {@code JobRunnerException} out of the parallel stream.
+     */
+    private static class UncheckedTaskException extends RuntimeException {
+        UncheckedTaskException(JobRunnerException cause) {
+            super(cause);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelTaskCreator.class);
+
+    private ParallelTaskCreator() {
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.martinprobson.jobrunner;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigValueFactory;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * <h3>{@code RecursiveFileSystemTaskBuilder}</h3>
+ * <p>Build a Collection of tasks from one or more task directory trees on the local file system.</p>
+ * <p>Each task id is the path of the task file relative to its root directory, with {@code /} separators
+ * (for example {@code sales/daily/load.sql}). When there is more than one root, the ids are prefixed
+ * with the name of the root directory ({@code warehouse/sales/daily/load.sql}).</p>
+ * <p>The task specific configuration of {@code <id>.<ext>} is read from {@code <id>.conf} under the config
+ * directory, falling back to the {@code .conf} file alongside the task file. A {@code depends-on} id is
+ * first looked for in the directory of the task that depends on it (so tasks in the same directory can
+ * refer to each other by file name), and otherwise taken as a full task id.</p>
+ * <p>Directories whose names start with {@code .} are skipped. Tasks only hold the location of their task
+ * file, the contents are read when they are needed.</p>
+ *
+ * @author martinr
+ */
+public class RecursiveFileSystemTaskBuilder implements TaskBuilder {
+
+    private final List<Path> taskRoots;
+    private final Path configDirectory;
+
+    private RecursiveFileSystemTaskBuilder(List<Path> taskRoots, Path configDirectory) {
+        this.taskRoots = taskRoots;
+        this.configDirectory = configDirectory;
+    }
+
+    /**
+     * @param taskDirectories The root task directories.
+     * @param configDirectory The config directory.
+     * @return The builder.
+     * @throws JobRunnerException If a directory does not exist, or two roots have the same name.
+     */
+    public static RecursiveFileSystemTaskBuilder create(List<String> taskDirectories,
+                                                        String configDirectory) throws JobRunnerException {
+        if (taskDirectories.isEmpty())
+            throw new JobRunnerException("no task directories given");
+        List<Path> roots = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (String taskDirectory : taskDirectories) {
+            Path root = Paths.get(taskDirectory).toAbsolutePath().normalize();
+            if (!Files.isDirectory(root))
+                throw new JobRunnerException("task directory " + taskDirectory + " does not exist");
+            if (taskDirectories.size() > 1 && !names.add(rootName(root)))
+                throw new JobRunnerException("task directories " + taskDirectories +
+                        " do not have unique names (" + rootName(root) + ")");
+            roots.add(root);
+        }
+        Path configDir = Paths.get(configDirectory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(configDir))
+            throw new JobRunnerException("config directory " + configDirectory + " does not exist");
+        return new RecursiveFileSystemTaskBuilder(roots, configDir);
+    }
+
+    /**
+     * @return A collection of Tasks built from the task directories, in task id order.
+     * @throws JobRunnerException If files cannot be read or mapping failure
+     */
+    @Override
+    public Map<String, BaseTask> build() throws JobRunnerException {
+        long start = System.nanoTime();
+        Set<String> extensions = new HashSet<>();
+        for (String extension : TaskProvider.getInstance().getSupportedFileExtensions())
+            extensions.add(extension.toLowerCase());
+        SortedMap<String, Path> found = new TreeMap<>();
+        for (Path root : taskRoots)
+            walk(root, taskRoots.size() > 1 ? rootName(root) + "/" : "", extensions, found);
+        Set<String> ids = found.keySet();
+        List<ParallelTaskCreator.TaskFile> taskFiles = new ArrayList<>();
+        for (Map.Entry<String, Path> e : found.entrySet())
+            taskFiles.add(new ParallelTaskCreator.TaskFile(e.getKey(), e.getValue().toFile(),
+                    () -> getTaskConfiguration(e.getKey(), e.getValue(), ids)));
+        return ParallelTaskCreator.create(taskRoots.toString(), taskFiles, System.nanoTime() - start);
+    }
+
+    private static void walk(Path root, String prefix, Set<String> extensions, Map<String, Path> found)
+            throws JobRunnerException {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && dir.getFileName().toString().startsWith("."))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String name = file.getFileName().toString();
+                    if (attrs.isRegularFile()
+                            && extensions.contains("." + FilenameUtils.getExtension(name).toLowerCase()))
+                        found.put(prefix + root.relativize(file).toString().replace(File.separatorChar, '/'), file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new JobRunnerException("Error reading task directory " + root, e);
+        }
+    }
+
+    /**
+     * Load the task specific configuration of a task, resolving its {@code depends-on} ids.
+     */
+    private Config getTaskConfiguration(String id, Path taskFile, Set<String> ids) {
+        ConfigParseOptions options = ConfigParseOptions.defaults().setAllowMissing(true);
+        String base = FilenameUtils.removeExtension(id);
+        Path configured = configDirectory.resolve(base.replace('/', File.separatorChar));
+        Path alongside = taskFile.resolveSibling(FilenameUtils.getBaseName(taskFile.getFileName().toString()));
+        Config config = ConfigFactory.parseFileAnySyntax(configured.toFile(), options);
+        if (!alongside.equals(configured))
+            config = config.withFallback(ConfigFactory.parseFileAnySyntax(alongside.toFile(), options));
+        if (!config.hasPath("depends-on.id"))
+            return config;
+        String namespace = id.lastIndexOf('/') < 0 ? "" : id.substring(0, id.lastIndexOf('/') + 1);
+        List<String> dependencies = new ArrayList<>();
+        for (String dependency : config.getStringList("depends-on.id"))
+            dependencies.add(ids.contains(namespace + dependency) ? namespace + dependency : dependency);
+        return config.withValue("depends-on.id", ConfigValueFactory.fromIterable(dependencies));
+    }
+
+    private static String rootName(Path root) {
+        return root.getFileName() == null ? root.toString() : root.getFileName().toString();
+    }
+}
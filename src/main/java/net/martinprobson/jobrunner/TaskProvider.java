@@ -98,7 +98,9 @@ public class TaskProvider {
                     taskMapping.keySet();
             throw new JobRunnerException(sb);
         }
-        return taskFactory.create(taskId,taskFile,taskConfiguration);
+        BaseTask task = taskFactory.create(taskId,taskFile,taskConfiguration);
+        task.setTaskType(taskType);
+        return task;
     }
 
     /**
@@ -31,6 +31,12 @@ final public class TaskResult {
     /** The command line executed if external command */
     private final String procString;
 
+    /** Time (ms since the epoch) the task started running, 0 if not started. */
+    private final long startTime;
+
+    /** Time (ms since the epoch) the task finished running, 0 if not finished. */
+    private final long endTime;
+
     /**
      * <p>
      * A TasKResult Builder.
@@ -42,6 +48,21 @@ final public class TaskResult {
             this.result = result;
         }
 
+        /**
+         * A Builder initialised with all the values of {@code taskResult}.
+         * @param taskResult The TaskResult to copy.
+         */
+        public Builder(TaskResult taskResult) {
+            this.result = taskResult.result;
+            this.exception = taskResult.exception;
+            this.exitValue = taskResult.exitValue;
+            this.error = taskResult.error;
+            this.output = taskResult.output;
+            this.procString = taskResult.procString;
+            this.startTime = taskResult.startTime;
+            this.endTime = taskResult.endTime;
+        }
+
         public Builder exception(Throwable exception) {
             this.exception = exception;
             return this;
@@ -62,6 +83,14 @@ final public class TaskResult {
             this.procString = procString;
             return this;
         }
+        public Builder startTime(long startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+        public Builder endTime(long endTime) {
+            this.endTime = endTime;
+            return this;
+        }
         public TaskResult build() {
             return new TaskResult(this);
         }
@@ -72,6 +101,8 @@ final public class TaskResult {
         private String error;
         private String output;
         private String procString;
+        private long startTime;
+        private long endTime;
     }
 
     private TaskResult(Builder builder) {
@@ -81,6 +112,8 @@ final public class TaskResult {
         this.error = builder.error;
         this.output = builder.output;
         this.procString = builder.procString;
+        this.startTime = builder.startTime;
+        this.endTime = builder.endTime;
     }
 
     @Override
@@ -119,12 +152,27 @@ final public class TaskResult {
         return result;
     }
 
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return The time (ms) the task took to run, or 0 if it has not both started and finished.
+     */
+    public long getDuration() {
+        return (startTime == 0 || endTime == 0) ? 0 : endTime - startTime;
+    }
+
     /**
-     * Has this task succeeded?
+     * Has this task succeeded (or been skipped because it was already up to date)?
      * @return <code>true</code> if task succeeded, <code>false</code> otherwise.
      */
     public Boolean succeeded() {
-        return result == Result.SUCCESS;
+        return result == Result.SUCCESS || result == Result.SKIPPED_UP_TO_DATE;
     }
 
     /**
@@ -136,7 +184,7 @@ final public class TaskResult {
     }
 
     public enum Result {
-        SUCCESS, RUNNING, FAILED, NOT_EXECUTED
+        SUCCESS, RUNNING, FAILED, NOT_EXECUTED, SKIPPED_UP_TO_DATE
     }
 
 }
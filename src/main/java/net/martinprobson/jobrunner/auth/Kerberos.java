@@ -22,14 +22,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.security.auth.callback.*;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 
 /**
  * Get a valid Kerberos ticket based on jdbc.user/jdbc.password and kerberos.principal specified in configuration.
- * <p></p>
+ * <p>The ticket is obtained once and renewed in the background by a {@link KerberosCredentialManager}, so
+ * {@code auth()} is cheap to call before every use.</p>
  */
 public class Kerberos {
 
@@ -38,6 +35,7 @@ public class Kerberos {
     private static final String KERBEROS_PRINCIPAL;
 
     private static final Config CONFIG;
+    private static final KerberosCredentialManager CREDENTIALS;
     private static final Logger log = LoggerFactory.getLogger(Kerberos.class);
 
     static {
@@ -45,39 +43,12 @@ public class Kerberos {
         KERBEROS_USERNAME = CONFIG.getString("kerberos.username");
         KERBEROS_PASSWORD = CONFIG.getString("kerberos.password");
         KERBEROS_PRINCIPAL = CONFIG.getString("kerberos.principal");
-
+        CREDENTIALS = KERBEROS_PRINCIPAL.equals("") ? null : KerberosCredentialManager.fromConfig(CONFIG);
     }
 
     public static void auth() {
-        if (!KERBEROS_PRINCIPAL.equals(""))
-            auth_cmd();
-    }
-
-    private static String runCmd(String cmd, String input) {
-
-        StringBuilder sb = new StringBuilder();
-        try {
-            Process p = Runtime.getRuntime().exec(cmd);
-            if (input != null) {
-                OutputStream out = p.getOutputStream();
-                String s = input + "\n";
-                out.write(s.getBytes());
-                out.flush();
-            }
-            p.waitFor();
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(p.getInputStream())
-            );
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
-
-        } catch (IOException | InterruptedException e1) {
-            e1.printStackTrace();
-            System.exit(2);
-        }
-        return sb.toString();
+        if (CREDENTIALS != null)
+            CREDENTIALS.ensureValid();
     }
 
     private static String getLoginDomain() {
@@ -86,13 +57,6 @@ public class Kerberos {
         return s;
     }
 
-    private static void auth_cmd() {
-        String logon = " kinit " + getLoginDomain();
-        log.trace("Attempting Kerberos logon using: " + logon);
-        log.trace("Logon: " + runCmd(logon, KERBEROS_PASSWORD));
-        log.trace("klist returns: " + runCmd("klist", null));
-    }
-
     @SuppressWarnings("unused")
     private class MyCallbackHandler implements CallbackHandler {
         public void handle(Callback[] callbacks)
@@ -0,0 +1,171 @@
+package net.martinprobson.jobrunner.auth;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3>{@code KerberosCredentialManager}</h3>
+ * <p>Obtains a Kerberos ticket (by running {@code kinit}) once, and then keeps it valid by running
+ * {@code kinit} again in the background shortly before the ticket expires.</p>
+ * <p>{@link #ensureValid()} is called before anything that needs a ticket. While the ticket is valid it is
+ * just a read of a volatile field; it only runs {@code kinit} itself if there is no valid ticket (the first
+ * call, or after a failed renewal).</p>
+ * <p>The ticket lifetime is not read back from the ticket cache, it is taken from configuration
+ * ({@code kerberos.ticket-lifetime}) and should match (or be less than) the lifetime issued by the KDC.</p>
+ *
+ * @author martinr
+ */
+public class KerberosCredentialManager implements Closeable {
+
+    private final String kinitCmd;
+    private final String loginDomain;
+    private final String password;
+    private final long lifetimeMs;
+    private final long renewBeforeMs;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "kerberos-renewer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Time (ms since the epoch) the current ticket expires, 0 if there is no ticket. */
+    private volatile long expires = 0;
+    private ScheduledFuture<?> renewal;
+    private int logins = 0;
+
+    /**
+     * @param kinitCmd      The kinit command.
+     * @param loginDomain   user@REALM to log in as.
+     * @param password      The password (passed to kinit on stdin).
+     * @param lifetimeMs    Lifetime (ms) of the tickets issued.
+     * @param renewBeforeMs How long (ms) before the ticket expires to renew it.
+     */
+    KerberosCredentialManager(String kinitCmd, String loginDomain, String password, long lifetimeMs, long renewBeforeMs) {
+        if (renewBeforeMs >= lifetimeMs)
+            throw new IllegalArgumentException("kerberos.renew-before must be less than kerberos.ticket-lifetime");
+        this.kinitCmd = kinitCmd;
+        this.loginDomain = loginDomain;
+        this.password = password;
+        this.lifetimeMs = lifetimeMs;
+        this.renewBeforeMs = renewBeforeMs;
+    }
+
+    /**
+     * @param config Configuration holding the {@code kerberos} settings.
+     * @return A {@code KerberosCredentialManager} for the configured principal.
+     */
+    static KerberosCredentialManager fromConfig(Config config) {
+        return new KerberosCredentialManager(config.getString("kerberos.kinit-cmd"),
+                config.getString("kerberos.username") + "@" + config.getString("kerberos.principal"),
+                config.getString("kerberos.password"),
+                config.getDuration("kerberos.ticket-lifetime", TimeUnit.MILLISECONDS),
+                config.getDuration("kerberos.renew-before", TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Make sure there is a valid ticket, running {@code kinit} if there is not.
+     */
+    public void ensureValid() {
+        if (System.currentTimeMillis() < expires)
+            return;
+        synchronized (this) {
+            if (System.currentTimeMillis() < expires)
+                return;
+            login();
+        }
+    }
+
+    /**
+     * @return {@code true} if there is currently a valid ticket.
+     */
+    public boolean isValid() {
+        return System.currentTimeMillis() < expires;
+    }
+
+    /**
+     * @return The number of successful {@code kinit}s so far.
+     */
+    public synchronized int getLogins() {
+        return logins;
+    }
+
+    @Override
+    public void close() {
+        renewer.shutdownNow();
+    }
+
+    /**
+     * Run kinit and, if successful, schedule the renewal. Must be called holding the lock.
+     * @return {@code true} if kinit succeeded.
+     */
+    private boolean login() {
+        log.trace("Attempting Kerberos logon using: " + kinitCmd + " " + loginDomain);
+        long start = System.currentTimeMillis();
+        if (!kinit())
+            return false;
+        logins++;
+        expires = start + lifetimeMs;
+        long renewIn = expires - renewBeforeMs - System.currentTimeMillis();
+        log.debug("Kerberos ticket for " + loginDomain + " obtained, renewing in " + renewIn + "ms");
+        schedule(renewIn);
+        return true;
+    }
+
+    private void schedule(long delayMs) {
+        if (renewal != null)
+            renewal.cancel(false);
+        if (!renewer.isShutdown())
+            renewal = renewer.schedule(this::renew, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void renew() {
+        if (!login()) {
+            // The current ticket may still be valid for a while, keep trying until it expires (after
+            // which ensureValid will also try when a ticket is next needed).
+            long retry = Math.max(1000, Math.min(renewBeforeMs / 4, 60000));
+            log.warn("Kerberos ticket renewal failed, retrying in " + retry + "ms");
+            schedule(retry);
+        }
+    }
+
+    /**
+     * @return {@code true} if kinit succeeded.
+     */
+    private boolean kinit() {
+        try {
+            Process p = new ProcessBuilder(kinitCmd, loginDomain).redirectErrorStream(true).start();
+            try (OutputStream out = p.getOutputStream()) {
+                out.write((password + "\n").getBytes(Charset.defaultCharset()));
+            }
+            StringBuilder sb = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), Charset.defaultCharset()))) {
+                String line;
+                while ((line = reader.readLine()) != null)
+                    sb.append(line).append('\n');
+            }
+            int rc = p.waitFor();
+            log.trace("Logon: " + sb);
+            if (rc != 0) {
+                log.error("Kerberos logon as " + loginDomain + " failed (" + rc + "): " + sb);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Kerberos logon as " + loginDomain + " failed", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(KerberosCredentialManager.class);
+}
@@ -0,0 +1,176 @@
+package net.martinprobson.jobrunner.checkpoint;
+
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <h3>{@code CheckpointLog}</h3>
+ * <p>A write-ahead log of the state transitions ({@code RUNNING}, {@code SUCCESS}, {@code FAILED} ...)
+ * of the tasks in a job. Each transition is forced to disk before the task carries on, so after the JVM
+ * dies the log says which tasks had completed.</p>
+ * <p>Each line of the log is {@code <state> <time> <content hash> <task id>}. A line that was only partly
+ * written is ignored when the log is read.</p>
+ *
+ * @author martinr
+ */
+public class CheckpointLog implements TaskListener, Closeable {
+
+    private static final String HEADER = "# jobrunner checkpoint";
+
+    private final File file;
+    private final FileChannel channel;
+    /**
+     * Content hash of each task whose last recorded state was successful, keyed by task id.
+     */
+    private final Map<String, String> completed;
+
+    private CheckpointLog(File file, FileChannel channel, Map<String, String> completed) {
+        this.file = file;
+        this.channel = channel;
+        this.completed = completed;
+    }
+
+    /**
+     * Start a new checkpoint log, discarding any previous log in {@code file}.
+     *
+     * @param file The log file.
+     * @return The {@code CheckpointLog}
+     * @throws JobRunnerException If the log cannot be written.
+     */
+    public static CheckpointLog create(File file) throws JobRunnerException {
+        try {
+            if (file.getParentFile() != null)
+                Files.createDirectories(file.getParentFile().toPath());
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            CheckpointLog checkpointLog = new CheckpointLog(file, channel, new HashMap<>());
+            checkpointLog.append(HEADER + " " + System.currentTimeMillis());
+            return checkpointLog;
+        } catch (IOException e) {
+            throw new JobRunnerException("CheckpointLog: error creating " + file, e);
+        }
+    }
+
+    /**
+     * Read the checkpoint log in {@code file} and carry on appending to it.
+     *
+     * @param file The log file.
+     * @return The {@code CheckpointLog}
+     * @throws JobRunnerException If there is no log, or it cannot be read.
+     */
+    public static CheckpointLog resume(File file) throws JobRunnerException {
+        if (!file.exists())
+            throw new JobRunnerException("CheckpointLog: no checkpoint to resume from (" + file + ")");
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            int end = bytes.length;
+            // Drop a partly written last line.
+            while (end > 0 && bytes[end - 1] != '\n')
+                end--;
+            Map<String, String> completed = new HashMap<>();
+            for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split(" ", 4);
+                if (fields.length != 4)
+                    continue;
+                TaskResult.Result state;
+                try {
+                    state = TaskResult.Result.valueOf(fields[0]);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                if (state == TaskResult.Result.SUCCESS || state == TaskResult.Result.SKIPPED_UP_TO_DATE)
+                    completed.put(fields[3], fields[2]);
+                else
+                    completed.remove(fields[3]);
+            }
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            channel.truncate(end);
+            channel.position(end);
+            return new CheckpointLog(file, channel, completed);
+        } catch (IOException e) {
+            throw new JobRunnerException("CheckpointLog: error reading " + file, e);
+        }
+    }
+
+    /**
+     * @param task The task.
+     * @return {@code true} if the log records that the task completed successfully, and its task file has not
+     * changed since.
+     */
+    public synchronized boolean isCompleted(BaseTask task) {
+        String contentHash = completed.get(task.getId());
+        if (contentHash == null)
+            return false;
+        if (!contentHash.equals(contentHash(task))) {
+            log.info("Task: " + task.getId() + " has changed since it completed, it will be run again");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void taskStarted(BaseTask task) {
+        record(task, TaskResult.Result.RUNNING);
+    }
+
+    @Override
+    public void taskFinished(BaseTask task, TaskResult result) {
+        record(task, result.getResult());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void record(BaseTask task, TaskResult.Result state) {
+        String contentHash = contentHash(task);
+        String line = state + " " + System.currentTimeMillis() + " " + contentHash + " " + task.getId();
+        synchronized (this) {
+            try {
+                append(line);
+            } catch (IOException e) {
+                log.warn("Task: " + task.getId() + " state not checkpointed to " + file, e);
+                return;
+            }
+            if (state == TaskResult.Result.SUCCESS || state == TaskResult.Result.SKIPPED_UP_TO_DATE)
+                completed.put(task.getId(), contentHash);
+            else
+                completed.remove(task.getId());
+        }
+    }
+
+    private void append(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        channel.force(false);
+    }
+
+    private static String contentHash(BaseTask task) {
+        try {
+            return task.getContentHash();
+        } catch (JobRunnerException e) {
+            return "-";
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CheckpointLog.class);
+}
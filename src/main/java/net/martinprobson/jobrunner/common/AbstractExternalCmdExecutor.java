@@ -1,6 +1,8 @@
 package net.martinprobson.jobrunner.common;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.typesafe.config.Config;
 import net.martinprobson.jobrunner.TaskResult;
 import net.martinprobson.jobrunner.auth.Kerberos;
 import org.apache.commons.io.FileUtils;
@@ -96,35 +98,118 @@ public abstract class AbstractExternalCmdExecutor implements TaskExecutor {
         return "";
     }
 
+    /**
+     * <p>Get the config path of the driver session settings (see {@link DriverSessionPool}), {@code null} if
+     * the command cannot be run in a driver session.</p>
+     */
+    protected String getSessionConfigPath() {
+        return null;
+    }
+
+    /**
+     * <p>Get the command line that starts a driver session, {@code null} if there is none.</p>
+     * <p>By default this is {@code <session config path>.command} ({@code null} if it is empty).</p>
+     *
+     * @param task The task.
+     * @param args The command arguments (from {@link #getArgs(BaseTask)}).
+     */
+    protected List<String> getSessionCommand(BaseTask task, String[] args) throws JobRunnerException {
+        List<String> command = task.getConfig().getStringList(getSessionConfigPath() + ".command");
+        return command.isEmpty() ? null : command;
+    }
+
     private TaskResult execute(BaseTask task) throws JobRunnerException {
         log.info(getClass().getName() + " executeTask - " + task.getId());
         checkEnv(task);
         Kerberos.auth();
-        cmd.setCmd(getCmd())
-                .withArgs(getArgs(task))
-                .withTimeoutMillis(getTimeOutMs(task));
-        log.trace("About to execute: " + task.getId());
-        log.trace("Cmd: " + getCmd());
-        for (String arg : getArgs(task))
-            log.trace("Arg: " + arg);
-        return cmd.run();
+        // getArgs may render the task to a temp file, so only call it once.
+        String[] args = getArgs(task);
+        try {
+            TaskResult sessionResult = runInSession(task, args);
+            if (sessionResult != null)
+                return sessionResult;
+            // A new builder for each run, copies of the same task may run at once (see TaskSpeculator).
+            ExternalCommandBuilder cmd = cmdProvider.get();
+            cmd.setCmd(getCmd())
+                    .withArgs(args)
+                    .withTimeoutMillis(getTimeOutMs(task));
+            setOutputCapture(task, cmd);
+            log.trace("About to execute: " + task.getId());
+            log.trace("Cmd: " + getCmd());
+            for (String arg : args)
+                log.trace("Arg: " + arg);
+            return cmd.run();
+        } finally {
+            for (String arg : args)
+                if (TempFiles.isTempFile(new File(arg)))
+                    TempFiles.delete(new File(arg));
+        }
+    }
+
+    /**
+     * <p>With driver sessions enabled, send the application file (the last argument) to a session.</p>
+     *
+     * @return The {@code TaskResult}, {@code null} if the task was not run in a session.
+     */
+    private TaskResult runInSession(BaseTask task, String[] args) throws JobRunnerException {
+        String path = getSessionConfigPath();
+        if (path == null || !task.getConfig().getBoolean(path + ".enabled"))
+            return null;
+        Config session = task.getConfig().getConfig(path);
+        List<String> command = getSessionCommand(task, args);
+        if (command == null) {
+            log.debug("Task: " + task.getId() + " no driver session command (" + path + ".command)");
+            return null;
+        }
+        TaskResult result = DriverSessionPool.get(command, session)
+                .run(args[args.length - 1], getTimeOutMs(task), session.getBoolean("fallback"));
+        if (result == null)
+            log.warn("Task: " + task.getId() + " no driver session available, running " + getCmd());
+        return result;
+    }
+
+    /**
+     * <p>In {@code stream} mode (output-capture.mode), stdout/stderr of the command are written to
+     * {@code <log-dir>/<task id>.stdout.log} and {@code .stderr.log}, only the last {@code tail-kb} of
+     * each are kept in the {@code TaskResult}. The speculative copy of a task (see {@link TaskAttempt}) writes to
+     * {@code <task id>.speculative.stdout.log} and {@code .stderr.log}.</p>
+     */
+    private void setOutputCapture(BaseTask task, ExternalCommandBuilder cmd) throws JobRunnerException {
+        String mode = task.getConfig().getString("output-capture.mode");
+        switch (mode) {
+            case "buffer":
+                break;
+            case "stream":
+                File logDir = new File(task.getConfig().getString("output-capture.log-dir"));
+                TaskAttempt attempt = TaskAttempt.current();
+                String prefix = task.getId() + (attempt != null && attempt.isSpeculative() ? ".speculative" : "");
+                cmd.withStreamingOutput(task.getConfig().getInt("output-capture.tail-kb") * 1024,
+                        new File(logDir, prefix + ".stdout.log"),
+                        new File(logDir, prefix + ".stderr.log"));
+                break;
+            default:
+                throw new JobRunnerException("Unknown output-capture.mode: " + mode);
+        }
     }
 
+    /**
+     * <p>Write the rendered task to a temp file (see {@link TempFiles}). A temp file passed as an argument to the
+     * command is deleted once the command has finished.</p>
+     */
     protected File createTempFile(BaseTask task) throws JobRunnerException {
         File temp;
         try {
-            temp = File.createTempFile(getTempFilePrefix(), getTempFileSuffix());
+            temp = TempFiles.create(getTempFilePrefix(), getTempFileSuffix());
             String content = task.getRenderedTaskContents();
             FileUtils.write(temp, content + "\n", Charset.defaultCharset());
         } catch (IOException e) {
             throw new JobRunnerException("Error creating temp file", e);
         }
-        temp.deleteOnExit();
         return temp;
     }
 
     @Inject
-    private ExternalCommandBuilder cmd;
+    private Provider<ExternalCommandBuilder> cmdProvider;
     private static final Logger log = LoggerFactory.getLogger(AbstractExternalCmdExecutor.class);
 
 }
@@ -11,7 +11,6 @@ import net.martinprobson.jobrunner.TaskResult;
 import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
 import net.martinprobson.jobrunner.template.TemplateException;
 import net.martinprobson.jobrunner.template.TemplateService;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +20,7 @@ import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * <h3><p>{@code BaseTask}</p></h3>
@@ -73,6 +73,48 @@ public abstract class BaseTask extends Task<String, TaskResult> {
      * ExecutionService.
      */
     private final TaskExecutor taskExecutor;
+    /**
+     * Decides when this task may start running (supplied by the {@code JobRunner}).
+     */
+    private transient TaskDispatcher dispatcher = new DirectTaskDispatcher();
+    /**
+     * Starts a second copy of this task if it straggles, {@code null} for no speculation (supplied by the
+     * {@code JobRunner}).
+     */
+    private transient TaskSpeculator speculator;
+    /**
+     * The task type (plugin name) this task was created as (supplied by the {@code TaskProvider}).
+     */
+    private transient String taskType;
+    /**
+     * The task is known to be up to date, so is not run (incremental mode).
+     */
+    private transient boolean upToDate = false;
+    /**
+     * Notified as the task starts and finishes running.
+     */
+    private transient List<TaskListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * The (cached) contents of the taskFile.
+     */
+    private transient TaskContent content;
+    /**
+     * The (cached) rendered contents, and the version of the contents they were rendered from.
+     */
+    private transient String rendered;
+    private transient Object renderedVersion;
+    /**
+     * The (cached) ids of the tasks this task depends on.
+     */
+    private transient volatile List<String> dependencies;
+    /**
+     * The task specific config on its own (without the global config as a fallback).
+     */
+    private transient Config taskConfig;
+    /**
+     * The (cached) retry policy.
+     */
+    private transient volatile RetryPolicy retryPolicy;
 
     /**
      * Construct a new Task with the given id and contents.
@@ -86,6 +128,8 @@ public abstract class BaseTask extends Task<String, TaskResult> {
         super.setId(id);
         this.taskId = id;
         this.taskFile = taskFile;
+        this.content = new TaskContent(taskFile, Charset.defaultCharset());
+        this.taskConfig = taskConfig;
         this.config = taskConfig.withFallback(GlobalConfigurationProvider.get().getConfiguration());
         this.templateService = templateService;
         this.taskExecutor = taskExecutor;
@@ -130,18 +174,62 @@ public abstract class BaseTask extends Task<String, TaskResult> {
      */
     public String getTaskContents() throws JobRunnerException {
         try {
-            return FileUtils.readFileToString(taskFile, Charset.defaultCharset());
+            return content.getContents();
         } catch (IOException e) {
             throw new JobRunnerException("Error reading file.",e);
         }
     }
 
     /**
-     * @return the taskFile contents after template has been applied
+     * @return the task type (e.g. {@code hive}), or {@code null} if not known.
+     */
+    public String getTaskType() { return taskType; }
+
+    /**
+     * Set the task type (plugin name) of this task.
+     * @param taskType - Task type
+     */
+    public void setTaskType(String taskType) { this.taskType = taskType; }
+
+    /**
+     * @return How this task is run, for a task type that can be run in more than one way (for example
+     * {@code jdbc} for a hive task with {@code hive.mode = "jdbc"}), otherwise an empty string. The task
+     * history keeps the run times of each mode apart.
+     */
+    public String getMode() { return ""; }
+
+    /**
+     * @return Hex encoded SHA-256 hash of the taskFile contents.
+     */
+    public String getContentHash() throws JobRunnerException {
+        try {
+            return content.getHash();
+        } catch (IOException e) {
+            throw new JobRunnerException("Error hashing file.",e);
+        }
+    }
+
+    /**
+     * @return the taskFile contents after template has been applied (cached until the taskFile changes).
      */
     public String getRenderedTaskContents() throws JobRunnerException {
+        Object version;
+        try {
+            version = content.getVersion();
+        } catch (IOException e) {
+            throw new JobRunnerException("Error reading file.",e);
+        }
+        synchronized (content) {
+            if (renderedVersion == version)
+                return rendered;
+        }
         try {
-            return templateService.apply(getId(), getTaskContents(), getConfig());
+            String s = templateService.apply(getId(), getTaskContents(), getConfig());
+            synchronized (content) {
+                rendered = s;
+                renderedVersion = version;
+            }
+            return s;
         } catch (TemplateException e) {
             throw new JobRunnerException("Template error",e);
         }
@@ -163,6 +251,31 @@ public abstract class BaseTask extends Task<String, TaskResult> {
         return config;
     }
 
+    /**
+     * @return The task specific config on its own, without the global config as a fallback.
+     */
+    public Config getTaskConfig() {
+        return taskConfig;
+    }
+
+    /**
+     * @return The {@link RetryPolicy} of this task ({@code retry}).
+     * @throws JobRunnerException If the task's retry configuration is invalid (the task fails rather than
+     * run without the retries it asked for).
+     */
+    public RetryPolicy getRetryPolicy() throws JobRunnerException {
+        RetryPolicy policy = retryPolicy;
+        if (policy == null) {
+            try {
+                policy = RetryPolicy.forTask(this);
+            } catch (RuntimeException e) {
+                throw new JobRunnerException("Task: " + getId() + " invalid retry configuration: " + e.getMessage(), e);
+            }
+            retryPolicy = policy;
+        }
+        return policy;
+    }
+
     /**
      * Set the {@code TaskResult} for this taskFile.
      * @param t - TaskResult
@@ -173,14 +286,53 @@ public abstract class BaseTask extends Task<String, TaskResult> {
         return t;
     }
 
+    /**
+     * Set the {@code TaskDispatcher} that decides when this task may start running.
+     * @param dispatcher - TaskDispatcher
+     */
+    public void setDispatcher(TaskDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Set the {@code TaskSpeculator} that runs this task once it has been dispatched.
+     * @param speculator - TaskSpeculator, {@code null} to always run the task just once.
+     */
+    public void setSpeculator(TaskSpeculator speculator) {
+        this.speculator = speculator;
+    }
+
+    /**
+     * Mark this task as up to date, when executed it finishes immediately with a result of
+     * {@code SKIPPED_UP_TO_DATE} without being run.
+     * @param upToDate - {@code true} if the task is up to date.
+     */
+    public void setUpToDate(boolean upToDate) {
+        this.upToDate = upToDate;
+    }
+
+    /**
+     * Add a {@code TaskListener} to be notified as this task starts and finishes running.
+     * @param listener - TaskListener
+     */
+    public void addListener(TaskListener listener) {
+        listeners.add(listener);
+    }
+
     /**
      * Returns the list of {@code TaskIds} that this Task depends on. All of the Tasks in this
      * list must have a successful status in order for this Task to run.
      * @return The list of {@code taskIds} that this Task is dependent on. List returned can be empty.
      */
     public List<String> getDependencies() {
-        return getConfig().hasPath("depends-on.id") ? getConfig().getStringList("depends-on.id")
-                : Collections.emptyList();
+        List<String> deps = dependencies;
+        if (deps == null) {
+            deps = getConfig().hasPath("depends-on.id")
+                    ? Collections.unmodifiableList(getConfig().getStringList("depends-on.id"))
+                    : Collections.emptyList();
+            dependencies = deps;
+        }
+        return deps;
     }
 
     /**
@@ -202,26 +354,119 @@ public abstract class BaseTask extends Task<String, TaskResult> {
     /**
      * <h3>{@code execute}</h3>
      *
-     * <p>Executes this taskFile via a {@code TaskExecutor}.</p>
+     * <p>Executes this taskFile via a {@code TaskExecutor}, trying again (after a backoff) if it fails and
+     * its {@link RetryPolicy} allows. The dispatcher slot is released while waiting to try again, but the calling
+     * thread sleeps, so the pool the task runs on must have threads to spare ({@code DagRunner} reschedules the
+     * attempts itself rather than call this).</p>
      *
-     * @return set to {@code SUCCESSFUL} if execution successful, {@code FAILED} if error occurs.
+     * @return set to {@code SUCCESSFUL} if execution successful, {@code FAILED} if error occurs,
+     * {@code SKIPPED_UP_TO_DATE} if the task is up to date.
      * @throws TaskExecutionException thrown when a execution problem is encountered.
      */
     public TaskResult execute() throws TaskExecutionException {
-        log.trace("About to execute taskFile id: " + this.getId());
-        setTaskResult(new TaskResult.Builder(TaskResult.Result.RUNNING).build());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return executeAttempt(attempt);
+            } catch (TaskExecutionException e) {
+                long delay = retryDelay(attempt, e);
+                if (delay < 0)
+                    throw e;
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new TaskExecutionException("Task: " + getId() + " interrupted waiting to retry", ie);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param attempt The attempt that failed (1 for the first).
+     * @param failure Why it failed.
+     * @return How long (ms) to wait before trying the task again, -1 if it should not be tried again.
+     */
+    public long retryDelay(int attempt, Exception failure) {
+        RetryPolicy policy;
+        try {
+            policy = getRetryPolicy();
+        } catch (JobRunnerException e) {
+            return -1;
+        }
+        if (!policy.shouldRetry(attempt, failure))
+            return -1;
+        long delay = policy.backoffMillis(attempt);
+        log.warn("Task: " + getId() + " failed (attempt " + attempt + " of " + policy.getMaxAttempts() +
+                "), retrying in " + delay + "ms: " + failure.getMessage());
+        return delay;
+    }
+
+    /**
+     * <h3>{@code executeAttempt}</h3>
+     *
+     * <p>Executes this taskFile once via a {@code TaskExecutor}, see {@link #execute()}.</p>
+     *
+     * @param attempt The attempt (1 for the first).
+     * @return The {@code TaskResult}
+     * @throws TaskExecutionException thrown when a execution problem is encountered.
+     */
+    public TaskResult executeAttempt(int attempt) throws TaskExecutionException {
+        log.trace("About to execute taskFile id: " + this.getId() + " attempt: " + attempt);
+        if (upToDate) {
+            log.info("Task: " + getId() + " is up to date, skipping");
+            return finished(new TaskResult.Builder(TaskResult.Result.SKIPPED_UP_TO_DATE).build());
+        }
+        if (attempt == 1) {
+            try {
+                getRetryPolicy();
+            } catch (JobRunnerException e) {
+                log.error(e.getMessage(), e);
+                finished(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e).build());
+                throw new TaskExecutionException(e.getMessage(), e);
+            }
+        }
+        try {
+            dispatcher.acquire(this);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setTaskResult(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e).build());
+            throw new TaskExecutionException("Task: " + getId() + " interrupted waiting to be dispatched",e);
+        }
+        long startTime = System.currentTimeMillis();
+        setTaskResult(new TaskResult.Builder(TaskResult.Result.RUNNING).startTime(startTime).build());
+        for (TaskListener listener : listeners)
+            listener.taskStarted(this);
         TaskResult taskResult;
         try {
-            taskResult = taskExecutor.executeTask(this);
+            taskResult = speculator == null ? taskExecutor.executeTask(this) : speculator.execute(this, taskExecutor);
         } catch (Exception e) {
-            setTaskResult(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e).build());
+            finished(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e)
+                    .startTime(startTime).endTime(System.currentTimeMillis()).build());
             throw new TaskExecutionException("Task: " + getId() + " failed with " + e.getMessage(),e);
+        } finally {
+            dispatcher.release(this);
         }
+        taskResult = new TaskResult.Builder(taskResult).startTime(startTime).endTime(System.currentTimeMillis()).build();
         if (taskResult.failed())
             log.error("Task: " + this.getId() + " Result: " + taskResult);
         else
             log.trace("Task: " + this.getId() + " Result: " + taskResult);
-        return setTaskResult(taskResult);
+        return finished(taskResult);
+    }
+
+    /**
+     * Set the final {@code TaskResult} and notify the listeners.
+     */
+    private TaskResult finished(TaskResult taskResult) {
+        setTaskResult(taskResult);
+        for (TaskListener listener : listeners) {
+            try {
+                listener.taskFinished(this, taskResult);
+            } catch (RuntimeException e) {
+                log.warn("Task: " + getId() + " listener " + listener + " failed", e);
+            }
+        }
+        return taskResult;
     }
 
     /**
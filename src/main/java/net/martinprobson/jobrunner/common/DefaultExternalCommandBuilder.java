@@ -1,7 +1,22 @@
 package net.martinprobson.jobrunner.common;
 
 import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.launcher.LaunchMetrics;
+import net.martinprobson.jobrunner.launcher.LaunchedProcess;
+import net.martinprobson.jobrunner.launcher.ProcessLauncher;
 import org.buildobjects.process.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -10,31 +25,75 @@ import org.buildobjects.process.*;
  * interface.
  * </p><p>
  * Uses the <a href="https://github.com/fleipold/jproc">jproc library</a> to
- * implement external command execution.
+ * implement external command execution, unless a {@link ProcessLauncher} is configured
+ * ({@code jobrunner.launcher.mode}), in which case the process is started by the launcher with its output
+ * written to files (temp files, or the log files when streaming).
+ * </p><p>
+ * When run as part of a {@link TaskAttempt} the process is killed if the attempt is cancelled (or the thread
+ * running it is interrupted), jproc cannot do this so the process is started directly.
  * </p>
  *
  * @author martinr
  */
 public class DefaultExternalCommandBuilder implements ExternalCommandBuilder {
+
+    public DefaultExternalCommandBuilder() {
+        this.launcherSet = false;
+        this.launcher = null;
+    }
+
+    /**
+     * @param launcher The launcher to start the command with, {@code null} to use jproc (rather than the
+     *                 configured launcher).
+     */
+    DefaultExternalCommandBuilder(ProcessLauncher launcher) {
+        this.launcherSet = true;
+        this.launcher = launcher;
+    }
+
     @Override
     public ExternalCommandBuilder setCmd(String cmd) {
         procBuilder = new ProcBuilder(cmd);
+        command = new ArrayList<>();
+        command.add(cmd);
+        timeoutMillis = DEFAULT_TIMEOUT_MS;
+        stdoutLog = null;
+        stderrLog = null;
         return this;
     }
 
     @Override
     public ExternalCommandBuilder withArgs(String... args) {
         procBuilder.withArgs(args);
+        command.addAll(Arrays.asList(args));
         return this;
     }
 
     @Override
     public void withTimeoutMillis(long timeoutMillis) {
         procBuilder.withTimeoutMillis(timeoutMillis);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public ExternalCommandBuilder withStreamingOutput(int tailBytes, File stdoutLog, File stderrLog) {
+        this.tailBytes = tailBytes;
+        this.stdoutLog = stdoutLog;
+        this.stderrLog = stderrLog;
+        return this;
     }
 
     @Override
     public TaskResult run() throws JobRunnerException {
+        ProcessLauncher processLauncher = launcherSet ? launcher : ProcessLauncher.configured();
+        // A jproc process cannot be killed from another thread, so a cancellable attempt starts its process
+        // directly.
+        if (processLauncher == null && TaskAttempt.current() != null)
+            processLauncher = ProcessLauncher.forMode("direct", null);
+        if (processLauncher != null)
+            return runLaunched(processLauncher);
+        if (stdoutLog != null)
+            return runStreaming();
         TaskResult taskResult;
         try {
             ProcResult procResult = procBuilder.run();
@@ -45,11 +104,142 @@ public class DefaultExternalCommandBuilder implements ExternalCommandBuilder {
                     .procString(procResult.getProcString())
                     .build();
 
+        } catch (ExternalProcessFailureException e) {
+            throw new ExternalCommandException("failure", e.getExitValue(), e);
         } catch (Exception e) {
             throw new JobRunnerException("failure",e);
         }
         return taskResult;
     }
 
+    /**
+     * Run the command, streaming stdout/stderr to the log files and keeping only their tails in memory.
+     */
+    private TaskResult runStreaming() throws JobRunnerException {
+        StreamCapture stdout = null;
+        StreamCapture stderr = null;
+        try {
+            stdout = new StreamCapture(tailBytes, stdoutLog);
+            stderr = new StreamCapture(tailBytes, stderrLog);
+            ProcResult procResult = procBuilder.withOutputStream(stdout).withErrorStream(stderr).run();
+            return new TaskResult.Builder(TaskResult.Result.SUCCESS)
+                    .error(stderr.getTail(Charset.defaultCharset()))
+                    .exitValue(procResult.getExitValue())
+                    .output(stdout.getTail(Charset.defaultCharset()))
+                    .procString(procResult.getProcString())
+                    .build();
+        } catch (ExternalProcessFailureException e) {
+            throw new ExternalCommandException("failure (output in " + stdoutLog + " and " + stderrLog + ")",
+                    e.getExitValue(), e);
+        } catch (Exception e) {
+            throw new JobRunnerException("failure (output in " + stdoutLog + " and " + stderrLog + ")",e);
+        } finally {
+            closeQuietly(stdout);
+            closeQuietly(stderr);
+        }
+    }
+
+    /**
+     * Run the command with a {@code ProcessLauncher}, recording the time taken to start it separately from the
+     * time it runs for.
+     */
+    private TaskResult runLaunched(ProcessLauncher launcher) throws JobRunnerException {
+        boolean streaming = stdoutLog != null;
+        File stdout = null;
+        File stderr = null;
+        LaunchedProcess process = null;
+        try {
+            if (streaming) {
+                stdout = stdoutLog;
+                stderr = stderrLog;
+                for (File logFile : new File[]{stdout, stderr})
+                    if (logFile.getParentFile() != null)
+                        Files.createDirectories(logFile.getParentFile().toPath());
+            } else {
+                stdout = TempFiles.create("cmd", ".stdout");
+                stderr = TempFiles.create("cmd", ".stderr");
+            }
+            process = launcher.launch(command, stdout, stderr);
+            TaskAttempt attempt = TaskAttempt.current();
+            if (attempt != null)
+                attempt.onCancel(process::kill);
+            long start = System.nanoTime();
+            Integer exitValue = process.waitFor(timeoutMillis);
+            if (exitValue == null) {
+                process.kill();
+                throw new JobRunnerException("Process '" + String.join(" ", command) + "' timed out after " + timeoutMillis + "ms");
+            }
+            long runNanos = System.nanoTime() - start;
+            LaunchMetrics.record(process.getSpawnNanos(), runNanos);
+            log.debug("Ran " + command.get(0) + ": spawn " + TimeUnit.NANOSECONDS.toMicros(process.getSpawnNanos()) +
+                    "us, run " + TimeUnit.NANOSECONDS.toMillis(runNanos) + "ms (" + LaunchMetrics.describe() + ")");
+            String output = streaming ? tail(stdout, tailBytes) : readAll(stdout);
+            String error = streaming ? tail(stderr, tailBytes) : readAll(stderr);
+            if (exitValue != 0)
+                throw new ExternalCommandException("Process '" + String.join(" ", command) + "' returned " + exitValue +
+                        (streaming ? " (output in " + stdoutLog + " and " + stderrLog + ")" : "") + "\n" + error,
+                        exitValue);
+            return new TaskResult.Builder(TaskResult.Result.SUCCESS)
+                    .error(error)
+                    .exitValue(exitValue)
+                    .output(output)
+                    .procString(String.join(" ", command))
+                    .build();
+        } catch (IOException e) {
+            throw new JobRunnerException("failure", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (process != null)
+                process.kill();
+            throw new JobRunnerException("Interrupted running " + command.get(0), e);
+        } finally {
+            if (!streaming) {
+                if (stdout != null)
+                    TempFiles.delete(stdout);
+                if (stderr != null)
+                    TempFiles.delete(stderr);
+            }
+        }
+    }
+
+    private static String readAll(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset());
+    }
+
+    /**
+     * @return The last {@code tailBytes} of {@code file}, as {@link StreamCapture#getTail(Charset)} would.
+     */
+    private static String tail(File file, int tailBytes) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            int size = (int) Math.min(length, Math.max(0, tailBytes));
+            byte[] bytes = new byte[size];
+            in.seek(length - size);
+            in.readFully(bytes);
+            String s = new String(bytes, Charset.defaultCharset());
+            return length > size ? "[... " + (length - size) + " bytes not shown]\n" + s : s;
+        }
+    }
+
+    private static void closeQuietly(StreamCapture capture) {
+        try {
+            if (capture != null)
+                capture.close();
+        } catch (IOException e) {
+            log.warn("Error closing output log", e);
+        }
+    }
+
+    /** The jproc default. */
+    private static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    private final boolean launcherSet;
+    private final ProcessLauncher launcher;
     private ProcBuilder procBuilder;
+    private List<String> command;
+    private long timeoutMillis;
+    private int tailBytes;
+    private File stdoutLog;
+    private File stderrLog;
+    private static final Logger log = LoggerFactory.getLogger(DefaultExternalCommandBuilder.class);
 }
@@ -0,0 +1,20 @@
+package net.martinprobson.jobrunner.common;
+
+/**
+ * <h3>{@code DirectTaskDispatcher}</h3>
+ * <p>A {@code TaskDispatcher} that lets every task run as soon as it is executed.
+ * Concurrency is then bounded purely by the size of the thread pool that Dexecutor
+ * submits tasks to.</p>
+ *
+ * @author martinr
+ */
+public class DirectTaskDispatcher implements TaskDispatcher {
+
+    @Override
+    public void acquire(BaseTask task) {
+    }
+
+    @Override
+    public void release(BaseTask task) {
+    }
+}
@@ -0,0 +1,272 @@
+package net.martinprobson.jobrunner.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * <h3>{@code DriverSession}</h3>
+ * <p>A long running driver process (a Spark driver, for example) that is sent one application file at a
+ * time to run, so the cost of starting the driver is paid once rather than for every task.</p>
+ * <p>The protocol is line based, over the stdin/stdout of the process: -</p>
+ * <ul>
+ *     <li>Once started, the driver writes {@code #jobrunner-ready}.</li>
+ *     <li>For each task the driver is sent {@code RUN <file>}. It runs the file, and then writes
+ *     {@code #jobrunner-done <exit code>}. Everything it writes before that is the output of the task.</li>
+ *     <li>When stdin is closed the driver exits.</li>
+ * </ul>
+ * <p>The output of the process (stderr is merged into stdout) is read all the time by its own thread, so a
+ * driver that logs while idle never blocks on a full pipe.</p>
+ *
+ * @author martinr
+ */
+public class DriverSession implements Closeable {
+
+    static final String READY = "#jobrunner-ready";
+    static final String DONE = "#jobrunner-done ";
+
+    private final List<String> command;
+    private final Process process;
+    private final Writer stdin;
+    private final CountDownLatch ready = new CountDownLatch(1);
+    /** The request being run, {@code null} when idle. */
+    private volatile Request current;
+    /** Set once the output of the process has ended. */
+    private volatile boolean exited = false;
+    private volatile long lastUsed = System.currentTimeMillis();
+    private int requests = 0;
+
+    private DriverSession(List<String> command, Process process) {
+        this.command = command;
+        this.process = process;
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Start a driver process and wait for it to be ready.
+     *
+     * @param command        The driver command line.
+     * @param startTimeoutMs How long to wait for the driver to be ready.
+     * @return The {@code DriverSession}
+     * @throws JobRunnerException If the driver cannot be started, or is not ready in time.
+     */
+    static DriverSession start(List<String> command, long startTimeoutMs) throws JobRunnerException {
+        log.info("Starting driver session: " + String.join(" ", command));
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            throw new JobRunnerException("Cannot start driver session: " + String.join(" ", command), e);
+        }
+        DriverSession session = new DriverSession(command, process);
+        Thread reader = new Thread(session::read, "driver-session-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            if (!session.ready.await(startTimeoutMs, TimeUnit.MILLISECONDS) || !process.isAlive()) {
+                session.close();
+                throw new JobRunnerException("Driver session not ready within " + startTimeoutMs + "ms: " + String.join(" ", command));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            session.close();
+            throw new JobRunnerException("Interrupted starting driver session", e);
+        }
+        return session;
+    }
+
+    /**
+     * Send a file to the driver to run and wait for it to finish.
+     *
+     * @param file      The application file.
+     * @param timeoutMs How long to wait for it to finish, the driver is killed if it takes longer.
+     * @return The exit code of the run and its output, or {@code null} if the request could not be sent (the
+     * driver had already exited), in which case it was not run.
+     * @throws ExitedException If the driver exits while running the file (or as the file was sent).
+     * @throws JobRunnerException If the driver times out while running the file.
+     */
+    Result run(String file, long timeoutMs) throws JobRunnerException {
+        Request request = new Request();
+        current = request;
+        if (exited || !process.isAlive()) {
+            current = null;
+            return null;
+        }
+        requests++;
+        try {
+            stdin.write("RUN " + file + "\n");
+            stdin.flush();
+        } catch (IOException e) {
+            current = null;
+            log.warn("Driver session " + this + " has gone away", e);
+            return null;
+        }
+        // The reader may have finished between the check above and the request being sent.
+        if (exited)
+            request.rc.completeExceptionally(new IOException("driver session exited"));
+        try {
+            int rc = request.rc.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return new Result(rc, request.output());
+        } catch (TimeoutException e) {
+            kill();
+            throw new JobRunnerException("Driver session: " + file + " timed out after " + timeoutMs + "ms\n" + request.output());
+        } catch (ExecutionException e) {
+            throw new ExitedException("Driver session: " + e.getCause().getMessage() + " running " + file + "\n" +
+                    request.output(), exitValue(), !request.output().isEmpty());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            kill();
+            throw new JobRunnerException("Interrupted running " + file + " in driver session", e);
+        } finally {
+            current = null;
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    boolean isAlive() {
+        return !exited && process.isAlive();
+    }
+
+    /**
+     * @return Time (ms since the epoch) the session last finished running a file.
+     */
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @return The number of files sent to this session.
+     */
+    int getRequests() {
+        return requests;
+    }
+
+    /**
+     * Close stdin (so the driver exits) and kill the driver, along with the processes it started (see
+     * {@link ProcessTrees}), if it has not exited a few seconds later.
+     */
+    @Override
+    public void close() {
+        try {
+            stdin.close();
+        } catch (IOException ignored) {
+            // The process has already gone.
+        }
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS))
+                ProcessTrees.destroy(process);
+        } catch (InterruptedException e) {
+            ProcessTrees.destroy(process);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Kill the driver (and the processes it started) straight away, it is still running a file so would not
+     * notice stdin being closed.
+     */
+    private void kill() {
+        ProcessTrees.destroy(process);
+        close();
+    }
+
+    /**
+     * @return The exit value of the driver, -1 if it has not exited.
+     */
+    private int exitValue() {
+        try {
+            return process.waitFor(1, TimeUnit.SECONDS) ? process.exitValue() : -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DriverSession[" + String.join(" ", command) + ", requests=" + requests + "]";
+    }
+
+    private void read() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Request request = current;
+                if (line.equals(READY)) {
+                    ready.countDown();
+                } else if (line.startsWith(DONE) && request != null) {
+                    int rc;
+                    try {
+                        rc = Integer.parseInt(line.substring(DONE.length()).trim());
+                    } catch (NumberFormatException e) {
+                        rc = -1;
+                    }
+                    request.rc.complete(rc);
+                } else if (request != null) {
+                    request.append(line);
+                } else {
+                    log.debug("Driver session: " + line);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Driver session output closed", e);
+        }
+        exited = true;
+        ready.countDown();
+        Request request = current;
+        if (request != null)
+            request.rc.completeExceptionally(new IOException("driver session exited"));
+    }
+
+    /**
+     * The exit code and output of a file run in a session.
+     */
+    static final class Result {
+        final int exitValue;
+        final String output;
+
+        Result(int exitValue, String output) {
+            this.exitValue = exitValue;
+            this.output = output;
+        }
+    }
+
+    /**
+     * The driver exited while running a file. A driver that exits without any output for the request may have
+     * exited (after its previous request) before reading it, so the file may not have been run.
+     */
+    static final class ExitedException extends ExternalCommandException {
+        private final boolean output;
+
+        ExitedException(String msg, int exitValue, boolean output) {
+            super(msg, exitValue);
+            this.output = output;
+        }
+
+        /**
+         * @return {@code true} if the driver wrote any output for the request (so it had started running it).
+         */
+        boolean hasOutput() {
+            return output;
+        }
+    }
+
+    private static final class Request {
+        private final StringBuilder output = new StringBuilder();
+        private final CompletableFuture<Integer> rc = new CompletableFuture<>();
+
+        synchronized void append(String line) {
+            output.append(line).append('\n');
+        }
+
+        synchronized String output() {
+            return output.toString();
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DriverSession.class);
+}
@@ -0,0 +1,180 @@
+package net.martinprobson.jobrunner.common;
+
+import com.typesafe.config.Config;
+import net.martinprobson.jobrunner.TaskResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * <h3>{@code DriverSessionPool}</h3>
+ * <p>A pool of up to {@code pool-size} {@link DriverSession}s started with the same command line. Tasks
+ * are run in an idle session if there is one, otherwise a new session is started, or (if the pool is full)
+ * the task waits for a session to become free.</p>
+ * <p>Sessions idle for longer than {@code idle-timeout} are closed, as are all sessions when the JVM
+ * exits.</p>
+ * <p>There is one pool per command line, shared by all tasks (and task types) that use it. The settings of a
+ * pool are taken from the config of the first task to use it.</p>
+ *
+ * @author martinr
+ */
+public class DriverSessionPool {
+
+    private static final Map<List<String>, DriverSessionPool> POOLS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "driver-session-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DriverSessionPool::closeAll, "driver-session-shutdown"));
+    }
+
+    private final List<String> command;
+    private final Semaphore permits;
+    private final long startTimeoutMs;
+    private final long idleTimeoutMs;
+    /** Idle sessions, most recently used first. */
+    private final Deque<DriverSession> idle = new ConcurrentLinkedDeque<>();
+    private final ScheduledFuture<?> reaper;
+    private volatile boolean closed = false;
+
+    private DriverSessionPool(List<String> command, int size, long startTimeoutMs, long idleTimeoutMs) {
+        this.command = command;
+        this.permits = new Semaphore(Math.max(1, size), true);
+        this.startTimeoutMs = startTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        this.reaper = REAPER.scheduleWithFixedDelay(this::closeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param command The driver command line.
+     * @param config  The session config ({@code pool-size}, {@code start-timeout}, {@code idle-timeout}).
+     * @return The pool of sessions started with {@code command}.
+     */
+    public static DriverSessionPool get(List<String> command, Config config) {
+        return POOLS.computeIfAbsent(Collections.unmodifiableList(new ArrayList<>(command)),
+                c -> new DriverSessionPool(c, config.getInt("pool-size"),
+                        config.getDuration("start-timeout", TimeUnit.MILLISECONDS),
+                        config.getDuration("idle-timeout", TimeUnit.MILLISECONDS)));
+    }
+
+    /**
+     * Run a file in a session from the pool.
+     *
+     * @param file      The application file.
+     * @param timeoutMs How long the file may run for.
+     * @param fallback  If {@code true}, return {@code null} rather than fail when no session can be started.
+     * @return The {@code TaskResult}, or {@code null} if {@code fallback} and the file was not run (so it can be
+     * run some other way).
+     * @throws JobRunnerException If the file fails, or (without {@code fallback}) no session can be started.
+     */
+    public TaskResult run(String file, long timeoutMs, boolean fallback) throws JobRunnerException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobRunnerException("Interrupted waiting for a driver session", e);
+        }
+        try {
+            // A session that dies while idle is only noticed when a file is sent to it, so try each idle
+            // session in turn before starting a new one.
+            boolean rerun = false;
+            while (true) {
+                DriverSession session = idle.pollFirst();
+                if (session == null) {
+                    try {
+                        session = DriverSession.start(command, startTimeoutMs);
+                    } catch (JobRunnerException e) {
+                        if (!fallback)
+                            throw e;
+                        log.warn(e.getMessage(), e);
+                        return null;
+                    }
+                }
+                if (!session.isAlive()) {
+                    session.close();
+                    continue;
+                }
+                DriverSession.Result result;
+                try {
+                    result = session.run(file, timeoutMs);
+                } catch (DriverSession.ExitedException e) {
+                    // A driver that exits without output may not have read the file, but it may equally have
+                    // been killed by it, so the file is only run again once.
+                    if (e.hasOutput() || rerun)
+                        throw e;
+                    rerun = true;
+                    log.warn("Driver session " + session + " exited without output running " + file +
+                            ", running it again in another session");
+                    continue;
+                } finally {
+                    release(session);
+                }
+                if (result == null)
+                    continue;
+                if (result.exitValue != 0)
+                    throw new ExternalCommandException("Driver session: " + file + " failed with exit code " +
+                            result.exitValue + "\n" + result.output, result.exitValue);
+                return new TaskResult.Builder(TaskResult.Result.SUCCESS)
+                        .exitValue(result.exitValue)
+                        .output(result.output)
+                        .procString(String.join(" ", command) + " < RUN " + file)
+                        .build();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return The number of idle sessions.
+     */
+    int idleSessions() {
+        return idle.size();
+    }
+
+    private void release(DriverSession session) {
+        if (session.isAlive() && !closed)
+            idle.addFirst(session);
+        else
+            session.close();
+    }
+
+    private void closeIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+        for (DriverSession session : idle) {
+            if ((session.getLastUsed() < cutoff || !session.isAlive()) && idle.remove(session)) {
+                log.debug("Closing idle driver session " + session);
+                session.close();
+            }
+        }
+    }
+
+    private void close() {
+        closed = true;
+        reaper.cancel(false);
+        DriverSession session;
+        while ((session = idle.pollFirst()) != null)
+            session.close();
+    }
+
+    /**
+     * Close the sessions of every pool.
+     */
+    public static void closeAll() {
+        for (DriverSessionPool pool : POOLS.values())
+            pool.close();
+        POOLS.clear();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DriverSessionPool.class);
+}
@@ -3,6 +3,8 @@ package net.martinprobson.jobrunner.common;
 import com.google.inject.ImplementedBy;
 import net.martinprobson.jobrunner.TaskResult;
 
+import java.io.File;
+
 /**
  * <p>
  * {@code ExternalCommandBuilder} interface, provides
@@ -19,6 +21,22 @@ public interface ExternalCommandBuilder {
     ExternalCommandBuilder setCmd(String cmd);
     ExternalCommandBuilder withArgs(String ...args);
     void withTimeoutMillis(long timeoutMillis);
+
+    /**
+     * <p>Stream the output of the command rather than buffering it in memory: stdout and stderr are
+     * written to the given log files as they are produced, and only the last {@code tailBytes} of each
+     * are returned in the {@code TaskResult}.</p>
+     * <p>Must be called after {@code setCmd}. Builders that cannot stream ignore this.</p>
+     *
+     * @param tailBytes The number of bytes at the end of stdout/stderr to keep in the TaskResult.
+     * @param stdoutLog File to write stdout to.
+     * @param stderrLog File to write stderr to.
+     * @return this
+     */
+    default ExternalCommandBuilder withStreamingOutput(int tailBytes, File stdoutLog, File stderrLog) {
+        return this;
+    }
+
     TaskResult run() throws JobRunnerException;
 
 }
@@ -0,0 +1,29 @@
+package net.martinprobson.jobrunner.common;
+
+/**
+ * <h3>{@code ExternalCommandException}</h3>
+ * <p>An external command (or driver session run) finished with a non-zero exit code.</p>
+ *
+ * @author martinr
+ */
+public class ExternalCommandException extends JobRunnerException {
+
+    private final int exitValue;
+
+    public ExternalCommandException(final String msg, final int exitValue) {
+        super(msg);
+        this.exitValue = exitValue;
+    }
+
+    public ExternalCommandException(final String msg, final int exitValue, final Throwable cause) {
+        super(msg, cause);
+        this.exitValue = exitValue;
+    }
+
+    /**
+     * @return The exit code of the command.
+     */
+    public int getExitValue() {
+        return exitValue;
+    }
+}
@@ -0,0 +1,32 @@
+package net.martinprobson.jobrunner.common;
+
+/**
+ * <h3>{@code ProcessTrees}</h3>
+ * <p>Kills a process along with the processes it started (a Spark or Hive client forks JVMs of its own,
+ * killing just the client can leave them running). Used by the process launchers and {@link DriverSession}.</p>
+ * <p>This is the Java 8 version, which can only kill the process itself. When running on JDK 21 or later
+ * the version of this class in {@code src/main/java21} (multi-release jar) kills the descendants too.</p>
+ *
+ * @author martinr
+ */
+public final class ProcessTrees {
+
+    /**
+     * Forcibly kill {@code process} and (where the JVM allows) its descendants.
+     *
+     * @param process The process.
+     */
+    public static void destroy(Process process) {
+        process.destroyForcibly();
+    }
+
+    /**
+     * @return {@code false}, only the process itself is killed.
+     */
+    public static boolean killsDescendants() {
+        return false;
+    }
+
+    private ProcessTrees() {
+    }
+}
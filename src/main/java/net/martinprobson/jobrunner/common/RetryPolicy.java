@@ -0,0 +1,142 @@
+package net.martinprobson.jobrunner.common;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigUtil;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
+import org.buildobjects.process.ExternalProcessFailureException;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3>{@code RetryPolicy}</h3>
+ * <p>Decides whether a failed task is tried again, and how long to wait first (exponential backoff with
+ * jitter), as configured by {@code retry}.</p>
+ * <p>The settings for a task are taken, in order, from the {@code retry} block of the task's own
+ * {@code .conf} file, {@code retry.task-types.<task type>} and {@code retry} in the global configuration.</p>
+ *
+ * @author martinr
+ */
+public class RetryPolicy {
+
+    /**
+     * A policy that never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 1.0, 0, 0, Collections.emptyList(),
+            Collections.emptySet());
+
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final double multiplier;
+    private final long maxBackoffMs;
+    private final double jitter;
+    private final List<Class<?>> retryOn;
+    private final Set<Integer> exitCodes;
+
+    RetryPolicy(int maxAttempts, long initialBackoffMs, double multiplier, long maxBackoffMs, double jitter,
+                List<Class<?>> retryOn, Set<Integer> exitCodes) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("retry.max-attempts must be > 0");
+        if (multiplier < 1.0)
+            throw new IllegalArgumentException("retry.multiplier must be >= 1");
+        if (jitter < 0 || jitter > 1)
+            throw new IllegalArgumentException("retry.jitter must be between 0 and 1");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.multiplier = multiplier;
+        this.maxBackoffMs = Math.max(initialBackoffMs, maxBackoffMs);
+        this.jitter = jitter;
+        this.retryOn = retryOn;
+        this.exitCodes = exitCodes;
+    }
+
+    /**
+     * @param retry Configuration holding the {@code retry} settings (the contents of the block).
+     * @return The {@code RetryPolicy}
+     * @throws IllegalArgumentException If the settings are invalid (including an unknown {@code retry-on} class).
+     */
+    public static RetryPolicy fromConfig(Config retry) {
+        List<Class<?>> retryOn = new ArrayList<>();
+        for (String name : retry.getStringList("retry-on")) {
+            try {
+                retryOn.add(Class.forName(name));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("retry.retry-on: unknown exception class " + name, e);
+            }
+        }
+        return new RetryPolicy(retry.getInt("max-attempts"),
+                retry.getDuration("initial-backoff", TimeUnit.MILLISECONDS),
+                retry.getDouble("multiplier"),
+                retry.getDuration("max-backoff", TimeUnit.MILLISECONDS),
+                retry.getDouble("jitter"),
+                retryOn,
+                new HashSet<>(retry.getIntList("exit-codes")));
+    }
+
+    /**
+     * @param task The task.
+     * @return The {@code RetryPolicy} of {@code task}.
+     * @throws IllegalArgumentException If the task's retry settings are invalid.
+     */
+    public static RetryPolicy forTask(BaseTask task) {
+        Config global = GlobalConfigurationProvider.get().getConfiguration();
+        Config retry = task.getTaskConfig().hasPath("retry") ? task.getTaskConfig().getConfig("retry")
+                : ConfigFactory.empty();
+        String typePath = task.getTaskType() == null ? null : "retry.task-types." + ConfigUtil.quoteString(task.getTaskType());
+        if (typePath != null && global.hasPath(typePath))
+            retry = retry.withFallback(global.getConfig(typePath));
+        return fromConfig(retry.withFallback(global.getConfig("retry")));
+    }
+
+    /**
+     * @return The total number of attempts allowed.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt The attempt that failed (1 for the first).
+     * @param failure Why it failed.
+     * @return {@code true} if the task should be tried again.
+     */
+    public boolean shouldRetry(int attempt, Throwable failure) {
+        if (attempt >= maxAttempts)
+            return false;
+        boolean matched = retryOn.isEmpty();
+        Integer exitValue = null;
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException)
+                return false;
+            for (Class<?> c : retryOn)
+                if (c.isInstance(t))
+                    matched = true;
+            if (exitValue == null && t instanceof ExternalCommandException)
+                exitValue = ((ExternalCommandException) t).getExitValue();
+            else if (exitValue == null && t instanceof ExternalProcessFailureException)
+                exitValue = ((ExternalProcessFailureException) t).getExitValue();
+        }
+        return matched && (exitValue == null || exitCodes.isEmpty() || exitCodes.contains(exitValue));
+    }
+
+    /**
+     * @param attempt The attempt that failed (1 for the first).
+     * @return How long (ms) to wait before the next attempt.
+     */
+    public long backoffMillis(int attempt) {
+        double backoff = initialBackoffMs * Math.pow(multiplier, attempt - 1);
+        backoff = Math.min(backoff, maxBackoffMs);
+        if (jitter > 0)
+            backoff *= 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(0, Math.round(backoff));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{max-attempts=" + maxAttempts + ", initial-backoff=" + initialBackoffMs + "ms, multiplier=" +
+                multiplier + ", max-backoff=" + maxBackoffMs + "ms, jitter=" + jitter + ", retry-on=" + retryOn +
+                ", exit-codes=" + exitCodes + "}";
+    }
+}
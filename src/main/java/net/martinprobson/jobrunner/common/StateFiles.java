@@ -0,0 +1,43 @@
+package net.martinprobson.jobrunner.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <h3>{@code StateFiles}</h3>
+ * <p>Names the files, held in {@code jobrunner.state-dir}, that keep state about the tasks in a task
+ * directory between runs. The name includes a hash of the task directory path so that jobs run from
+ * different task directories do not share state.</p>
+ *
+ * @author martinr
+ */
+public final class StateFiles {
+
+    /**
+     * @param stateDir      Directory holding the jobrunner state.
+     * @param taskDirectory The task directory of the job.
+     * @param prefix        File name prefix (e.g. {@code incremental}).
+     * @param suffix        File name suffix (e.g. {@code .properties}).
+     * @return The state file for the tasks in {@code taskDirectory}.
+     * @throws JobRunnerException If the task directory path cannot be resolved.
+     */
+    public static File forTaskDirectory(File stateDir, String taskDirectory, String prefix, String suffix)
+            throws JobRunnerException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(new File(taskDirectory).getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(prefix).append('-');
+            for (int i = 0; i < 8; i++)
+                sb.append(String.format("%02x", digest[i]));
+            return new File(stateDir, sb.append(suffix).toString());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new JobRunnerException("StateFiles: error naming " + prefix + " file for " + taskDirectory, e);
+        }
+    }
+
+    private StateFiles() {
+    }
+}
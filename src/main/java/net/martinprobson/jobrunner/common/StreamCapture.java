@@ -0,0 +1,95 @@
+package net.martinprobson.jobrunner.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <h3>{@code StreamCapture}</h3>
+ * <p>An {@code OutputStream} that captures the output of an external process without holding all of it
+ * in memory. Everything written is copied to a log file (if given) and only the last {@code tailBytes}
+ * bytes are kept in memory, in a ring buffer.</p>
+ *
+ * @author martinr
+ */
+public class StreamCapture extends OutputStream {
+
+    private final byte[] tail;
+    private final FileChannel log;
+    /** Total number of bytes written. */
+    private long written = 0;
+
+    /**
+     * @param tailBytes The number of bytes at the end of the stream to keep in memory.
+     * @param logFile   File to copy the whole stream to, or {@code null}. The file is replaced if it exists.
+     * @throws IOException If the log file cannot be created.
+     */
+    public StreamCapture(int tailBytes, File logFile) throws IOException {
+        this.tail = new byte[Math.max(0, tailBytes)];
+        if (logFile != null) {
+            if (logFile.getParentFile() != null)
+                Files.createDirectories(logFile.getParentFile().toPath());
+            this.log = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } else
+            this.log = null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (log != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining())
+                log.write(buffer);
+        }
+        if (tail.length > 0) {
+            // Only the last tail.length bytes of b can survive.
+            int skip = Math.max(0, len - tail.length);
+            int pos = (int) ((written + skip) % tail.length);
+            int remaining = len - skip;
+            int first = Math.min(remaining, tail.length - pos);
+            System.arraycopy(b, off + skip, tail, pos, first);
+            System.arraycopy(b, off + skip + first, tail, 0, remaining - first);
+        }
+        written += len;
+    }
+
+    /**
+     * @return The total number of bytes written to the stream.
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * @param charset Charset of the stream.
+     * @return The last {@code tailBytes} of the stream, preceded by a note of how much was dropped if the
+     * stream was longer than that.
+     */
+    public synchronized String getTail(Charset charset) {
+        int size = (int) Math.min(written, tail.length);
+        byte[] bytes = new byte[size];
+        int start = (int) ((written - size) % Math.max(1, tail.length));
+        int first = Math.min(size, tail.length - start);
+        System.arraycopy(tail, start, bytes, 0, first);
+        System.arraycopy(tail, 0, bytes, first, size - first);
+        String s = new String(bytes, charset);
+        return written > size ? "[... " + (written - size) + " bytes not shown]\n" + s : s;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null && log.isOpen())
+            log.close();
+    }
+}
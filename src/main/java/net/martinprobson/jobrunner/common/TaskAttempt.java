@@ -0,0 +1,114 @@
+package net.martinprobson.jobrunner.common;
+
+import net.martinprobson.jobrunner.TaskResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h3>{@code TaskAttempt}</h3>
+ * <p>One run of a task by its {@code TaskExecutor} that can be cancelled while it is running, as the
+ * losing copy of a speculatively executed task is (see {@link TaskSpeculator}).</p>
+ * <p>While the attempt runs it is bound to the running thread, so an executor can find it
+ * ({@link #current()}) and register how to stop whatever it has started ({@link #onCancel(Runnable)}), for
+ * example killing an external process or cancelling a JDBC statement.</p>
+ *
+ * @author martinr
+ */
+public final class TaskAttempt {
+
+    private static final ThreadLocal<TaskAttempt> CURRENT = new ThreadLocal<>();
+
+    private final BaseTask task;
+    private final boolean speculative;
+    private final List<Runnable> cancelActions = new ArrayList<>();
+    private boolean cancelled = false;
+
+    /**
+     * @param task        The task.
+     * @param speculative {@code true} for the speculative (second) copy of the task.
+     */
+    public TaskAttempt(BaseTask task, boolean speculative) {
+        this.task = task;
+        this.speculative = speculative;
+    }
+
+    /**
+     * @return The attempt being run by the current thread, {@code null} if the thread is not running a
+     * cancellable attempt.
+     */
+    public static TaskAttempt current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run the task with {@code executor}, bound to the current thread.
+     *
+     * @param executor The task executor.
+     * @return The {@code TaskResult}
+     * @throws JobRunnerException If the task fails (or was cancelled).
+     */
+    public TaskResult run(TaskExecutor executor) throws JobRunnerException {
+        TaskAttempt previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return executor.executeTask(task);
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return {@code true} for the speculative copy of the task.
+     */
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    /**
+     * @param action Run if the attempt is cancelled (straight away if it already has been).
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelActions.add(action);
+                return;
+            }
+        }
+        runQuietly(action);
+    }
+
+    /**
+     * Cancel the attempt, running the actions registered with {@link #onCancel(Runnable)}.
+     */
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled)
+                return;
+            cancelled = true;
+            actions = new ArrayList<>(cancelActions);
+        }
+        for (Runnable action : actions)
+            runQuietly(action);
+    }
+
+    /**
+     * @return {@code true} if the attempt has been cancelled.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void runQuietly(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            log.warn("Task: " + task.getId() + " error cancelling attempt", e);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TaskAttempt.class);
+}
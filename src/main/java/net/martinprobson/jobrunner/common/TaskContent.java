@@ -0,0 +1,131 @@
+package net.martinprobson.jobrunner.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <h3>{@code TaskContent}</h3>
+ * <p>The contents of a task file, read once and cached along with their SHA-256 hash.</p>
+ * <p>Each call checks the file's modification time and size (a single {@code stat}), the file is only read
+ * again if either has changed. Files of {@link #MMAP_THRESHOLD} bytes or more are memory mapped rather than
+ * copied onto the heap before being hashed and decoded.</p>
+ * <p>The hash is always kept. The decoded contents are only kept for files smaller than {@link #MMAP_THRESHOLD}
+ * (so large task files such as jars do not stay on the heap), larger files are mapped and decoded again on
+ * each call.</p>
+ *
+ * @author martinr
+ */
+class TaskContent {
+
+    /** Size (bytes) from which task files are memory mapped. */
+    static final long MMAP_THRESHOLD = 1024 * 1024;
+
+    private final File file;
+    /** Name (rather than the Charset itself, which EqualsVerifier cannot build) of the file's charset. */
+    private final String charset;
+    private Snapshot snapshot;
+
+    TaskContent(File file, Charset charset) {
+        this.file = file;
+        this.charset = charset.name();
+    }
+
+    /**
+     * @return The contents of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    String getContents() throws IOException {
+        Snapshot s = current();
+        return s.contents != null ? s.contents : decode(read(file));
+    }
+
+    /**
+     * @return Hex encoded SHA-256 hash of the file contents.
+     * @throws IOException If the file cannot be read.
+     */
+    String getHash() throws IOException {
+        return current().hash;
+    }
+
+    /**
+     * @return An object that is replaced whenever the file is found to have changed, so can be used to tell
+     * whether anything derived from the contents is still current.
+     * @throws IOException If the file cannot be read.
+     */
+    Object getVersion() throws IOException {
+        return current();
+    }
+
+    private synchronized Snapshot current() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        FileTime lastModified = attributes.lastModifiedTime();
+        long length = attributes.size();
+        if (snapshot != null && snapshot.lastModified.equals(lastModified) && snapshot.length == length)
+            return snapshot;
+        ByteBuffer bytes = read(file);
+        String hash = hash(bytes.duplicate());
+        snapshot = new Snapshot(lastModified, length, hash, length < MMAP_THRESHOLD ? decode(bytes) : null);
+        return snapshot;
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MMAP_THRESHOLD)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File too large: " + file);
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private String decode(ByteBuffer bytes) throws CharacterCodingException {
+        CharBuffer chars = Charset.forName(charset).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes);
+        return chars.toString();
+    }
+
+    private static String hash(ByteBuffer bytes) throws IOException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(bytes);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Snapshot {
+        private final FileTime lastModified;
+        private final long length;
+        private final String hash;
+        private final String contents;
+
+        private Snapshot(FileTime lastModified, long length, String hash, String contents) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.hash = hash;
+            this.contents = contents;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package net.martinprobson.jobrunner.common;
+
+/**
+ * <h3>{@code TaskDispatcher}</h3>
+ * <p>A {@code TaskDispatcher} decides when a task that Dexecutor has made ready
+ * is actually allowed to start running.</p>
+ * <p>{@link BaseTask#execute()} calls {@code acquire} before handing the task to its
+ * {@code TaskExecutor} and {@code release} once the executor returns (successfully or not).</p>
+ *
+ * @author martinr
+ */
+public interface TaskDispatcher {
+
+    /**
+     * Block until {@code task} may start running.
+     *
+     * @param task The task that wants to run.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void acquire(BaseTask task) throws InterruptedException;
+
+    /**
+     * Signal that {@code task} (previously passed to {@code acquire}) has finished running.
+     *
+     * @param task The task that has finished.
+     */
+    void release(BaseTask task);
+}
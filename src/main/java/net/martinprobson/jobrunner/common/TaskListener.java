@@ -0,0 +1,31 @@
+package net.martinprobson.jobrunner.common;
+
+import net.martinprobson.jobrunner.TaskResult;
+
+/**
+ * <h3>{@code TaskListener}</h3>
+ * <p>Notified by {@link BaseTask#execute()} as a task starts and finishes running.</p>
+ * <p>Listeners are called on the thread running the task, so they should be quick and
+ * thread safe.</p>
+ *
+ * @author martinr
+ */
+public interface TaskListener {
+
+    /**
+     * Called once the task has been dispatched and is about to run.
+     *
+     * @param task The task.
+     */
+    default void taskStarted(BaseTask task) {
+    }
+
+    /**
+     * Called when the task has finished running, whether it succeeded or not.
+     *
+     * @param task   The task.
+     * @param result The final result of the task (including its start and end times).
+     */
+    default void taskFinished(BaseTask task, TaskResult result) {
+    }
+}
@@ -0,0 +1,25 @@
+package net.martinprobson.jobrunner.common;
+
+import net.martinprobson.jobrunner.TaskResult;
+
+/**
+ * <h3>{@code TaskSpeculator}</h3>
+ * <p>A {@code TaskSpeculator} runs a task that may be a straggler: if it runs for much longer than it
+ * usually does, a second copy of it is started and whichever copy finishes first is used.</p>
+ * <p>{@link BaseTask#execute()} hands the task and its {@code TaskExecutor} to the speculator (once
+ * the task has been dispatched) rather than calling the executor itself.</p>
+ *
+ * @author martinr
+ */
+public interface TaskSpeculator {
+
+    /**
+     * Run {@code task} with {@code executor}, starting a second copy of it if it straggles.
+     *
+     * @param task     The task.
+     * @param executor The task's executor.
+     * @return The {@code TaskResult} of the copy that finished first.
+     * @throws JobRunnerException If the task fails.
+     */
+    TaskResult execute(BaseTask task, TaskExecutor executor) throws JobRunnerException;
+}
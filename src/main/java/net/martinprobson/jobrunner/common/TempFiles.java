@@ -0,0 +1,82 @@
+package net.martinprobson.jobrunner.common;
+
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <h3>{@code TempFiles}</h3>
+ * <p>The temporary files of external command tasks (rendered scripts, captured output) are created in one
+ * directory per JVM (under {@code jobrunner.temp-dir}, or {@code java.io.tmpdir} if that is empty) and deleted
+ * as soon as the task is done with them. The directory itself is removed when the JVM exits.</p>
+ * <p>Unlike {@code File.deleteOnExit}, nothing is kept in memory for each file, so a long running job runner
+ * does not slowly fill the heap (or the disk) with the names of temp files.</p>
+ *
+ * @author martinr
+ */
+public final class TempFiles {
+
+    private static Path dir;
+
+    private TempFiles() {
+    }
+
+    /**
+     * @return The temp directory of this JVM, created if needed.
+     */
+    public static synchronized Path dir() throws IOException {
+        if (dir == null || !Files.isDirectory(dir)) {
+            String base = GlobalConfigurationProvider.get().getConfiguration().getString("jobrunner.temp-dir");
+            Path parent = Paths.get(base.isEmpty() ? System.getProperty("java.io.tmpdir") : base);
+            Files.createDirectories(parent);
+            Path created = Files.createTempDirectory(parent, "jobrunner-");
+            if (dir == null)
+                Runtime.getRuntime().addShutdownHook(new Thread(TempFiles::deleteDir, "temp-files-cleanup"));
+            dir = created;
+        }
+        return dir;
+    }
+
+    /**
+     * Create a new, empty, temp file.
+     *
+     * @param prefix File name prefix.
+     * @param suffix File name suffix.
+     * @return The file.
+     */
+    public static File create(String prefix, String suffix) throws IOException {
+        return Files.createTempFile(dir(), prefix, suffix).toFile();
+    }
+
+    /**
+     * @return {@code true} if {@code file} is in the temp directory.
+     */
+    public static synchronized boolean isTempFile(File file) {
+        return dir != null && file.toPath().toAbsolutePath().startsWith(dir);
+    }
+
+    /**
+     * Delete {@code file}, if it exists.
+     */
+    public static void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.warn("Cannot delete temp file " + file, e);
+        }
+    }
+
+    private static synchronized void deleteDir() {
+        if (dir != null)
+            FileUtils.deleteQuietly(dir.toFile());
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TempFiles.class);
+}
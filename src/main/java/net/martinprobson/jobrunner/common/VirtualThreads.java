@@ -0,0 +1,33 @@
+package net.martinprobson.jobrunner.common;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <h3>{@code VirtualThreads}</h3>
+ * <p>Access to virtual threads (JDK 21+) from code compiled for Java 8.</p>
+ * <p>This is the Java 8 version, virtual threads are never available. The jar is built as a
+ * multi-release jar, so when running on JDK 21 or later the version of this class in
+ * {@code src/main/java21} is used instead.</p>
+ *
+ * @author martinr
+ */
+public final class VirtualThreads {
+
+    /**
+     * @return {@code true} if the running JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * @return An {@code ExecutorService} that runs each submitted task on a new virtual thread.
+     * @throws UnsupportedOperationException If virtual threads are not available.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+    }
+
+    private VirtualThreads() {
+    }
+}
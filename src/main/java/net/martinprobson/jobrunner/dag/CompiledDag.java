@@ -0,0 +1,215 @@
+package net.martinprobson.jobrunner.dag;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+
+import java.util.*;
+
+/**
+ * <h3>{@code CompiledDag}</h3>
+ * <p>An immutable, compact form of the dependency graph of a job, for jobs with very many tasks. Each task is
+ * given an index ({@code 0 .. size() - 1}) and the edges are held in primitive arrays in compressed sparse row
+ * form: the parents of task {@code i} are {@code parents[parentStart[i] .. parentStart[i + 1] - 1]}, and likewise
+ * for the children.</p>
+ * <p>Compiling reads the dependencies of each task once, checks them (unknown ids, self dependencies, cycles)
+ * and computes a topological order and the level of each task (0 for a task with no dependencies, otherwise one
+ * more than the highest level of its parents), all in O(V + E).</p>
+ *
+ * @author martinr
+ */
+public final class CompiledDag {
+
+    private final BaseTask[] tasks;
+    private final Map<String, Integer> index;
+    private final int[] parentStart;
+    private final int[] parents;
+    private final int[] childStart;
+    private final int[] children;
+    private final int[] order;
+    private final int[] level;
+    private final int levels;
+
+    private CompiledDag(BaseTask[] tasks, Map<String, Integer> index, int[] parentStart, int[] parents,
+                        int[] childStart, int[] children, int[] order, int[] level, int levels) {
+        this.tasks = tasks;
+        this.index = index;
+        this.parentStart = parentStart;
+        this.parents = parents;
+        this.childStart = childStart;
+        this.children = children;
+        this.order = order;
+        this.level = level;
+        this.levels = levels;
+    }
+
+    /**
+     * Compile the dependency graph of {@code tasks}.
+     *
+     * @param tasks The tasks (a {@code Job}, for example).
+     * @return The {@code CompiledDag}
+     * @throws JobRunnerException If a task depends on an unknown task or itself, or the dependencies contain a
+     *                            cycle.
+     */
+    public static CompiledDag compile(Iterable<BaseTask> tasks) throws JobRunnerException {
+        List<BaseTask> list = new ArrayList<>();
+        for (BaseTask task : tasks)
+            list.add(task);
+        int n = list.size();
+        BaseTask[] taskArray = list.toArray(new BaseTask[0]);
+        Map<String, Integer> index = new HashMap<>(n * 4 / 3 + 1);
+        for (int i = 0; i < n; i++)
+            if (index.put(taskArray[i].getId(), i) != null)
+                throw new JobRunnerException("CompiledDag: duplicate task id: " + taskArray[i].getId());
+
+        // Parents, in CSR form (duplicate dependencies are dropped).
+        int[] parentStart = new int[n + 1];
+        int[] parents = new int[16];
+        int edges = 0;
+        int[] seen = new int[n];
+        Arrays.fill(seen, -1);
+        for (int i = 0; i < n; i++) {
+            parentStart[i] = edges;
+            for (String dep : taskArray[i].getDependencies()) {
+                Integer p = index.get(dep);
+                if (p == null)
+                    throw new JobRunnerException(taskArray[i].getId() + " - setDependencies: There is no Task with an id of: " + dep);
+                if (p == i)
+                    throw new JobRunnerException(taskArray[i].getId() + " - setDependencies: A task cannot be dependent on itself");
+                if (seen[p] == i)
+                    continue;
+                seen[p] = i;
+                if (edges == parents.length)
+                    parents = Arrays.copyOf(parents, parents.length * 2);
+                parents[edges++] = p;
+            }
+        }
+        parentStart[n] = edges;
+        parents = Arrays.copyOf(parents, edges);
+
+        // Children: count the children of each task, then fill (a counting sort of the edges by parent).
+        int[] childStart = new int[n + 1];
+        for (int e = 0; e < edges; e++)
+            childStart[parents[e] + 1]++;
+        for (int i = 0; i < n; i++)
+            childStart[i + 1] += childStart[i];
+        int[] children = new int[edges];
+        int[] fill = Arrays.copyOf(childStart, n);
+        for (int i = 0; i < n; i++)
+            for (int e = parentStart[i]; e < parentStart[i + 1]; e++)
+                children[fill[parents[e]]++] = i;
+
+        // Kahn's algorithm, giving the topological order and the level of each task.
+        int[] pending = new int[n];
+        int[] order = new int[n];
+        int[] level = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            pending[i] = parentStart[i + 1] - parentStart[i];
+            if (pending[i] == 0)
+                order[tail++] = i;
+        }
+        int levels = n == 0 ? 0 : 1;
+        while (head < tail) {
+            int t = order[head++];
+            for (int e = childStart[t]; e < childStart[t + 1]; e++) {
+                int c = children[e];
+                level[c] = Math.max(level[c], level[t] + 1);
+                if (--pending[c] == 0) {
+                    order[tail++] = c;
+                    levels = Math.max(levels, level[c] + 1);
+                }
+            }
+        }
+        if (tail != n) {
+            StringBuilder cycle = new StringBuilder();
+            int shown = 0;
+            for (int i = 0; i < n && shown < 10; i++)
+                if (pending[i] > 0) {
+                    cycle.append(shown++ == 0 ? "" : ", ").append(taskArray[i].getId());
+                }
+            throw new JobRunnerException("CompiledDag: cyclic dependency between tasks (" + (n - tail) +
+                    " task(s) involved, including: " + cycle + ")");
+        }
+        return new CompiledDag(taskArray, index, parentStart, parents, childStart, children, order, level, levels);
+    }
+
+    /**
+     * @return The number of tasks.
+     */
+    public int size() {
+        return tasks.length;
+    }
+
+    /**
+     * @return The number of (distinct) dependencies.
+     */
+    public int edges() {
+        return parents.length;
+    }
+
+    /**
+     * @param id Task id
+     * @return The index of the task, -1 if there is no such task.
+     */
+    public int indexOf(String id) {
+        Integer i = index.get(id);
+        return i == null ? -1 : i;
+    }
+
+    public BaseTask task(int i) {
+        return tasks[i];
+    }
+
+    public String id(int i) {
+        return tasks[i].getId();
+    }
+
+    public int parentCount(int i) {
+        return parentStart[i + 1] - parentStart[i];
+    }
+
+    /**
+     * @return The {@code k}th parent (a task that task {@code i} depends on) of task {@code i}.
+     */
+    public int parent(int i, int k) {
+        return parents[parentStart[i] + k];
+    }
+
+    public int childCount(int i) {
+        return childStart[i + 1] - childStart[i];
+    }
+
+    /**
+     * @return The {@code k}th child (a task that depends on task {@code i}) of task {@code i}.
+     */
+    public int child(int i, int k) {
+        return children[childStart[i] + k];
+    }
+
+    /**
+     * @return The {@code k}th task in topological order (every task comes after all of its parents).
+     */
+    public int inOrder(int k) {
+        return order[k];
+    }
+
+    /**
+     * @return The level of task {@code i}, the length of the longest chain of dependencies leading to it.
+     */
+    public int level(int i) {
+        return level[i];
+    }
+
+    /**
+     * @return The number of levels (the length of the longest chain of dependencies in the job).
+     */
+    public int levels() {
+        return levels;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledDag[tasks=" + size() + ", edges=" + edges() + ", levels=" + levels + "]";
+    }
+}
@@ -0,0 +1,193 @@
+package net.martinprobson.jobrunner.dag;
+
+import net.martinprobson.jobrunner.JobRunnerConfig;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskListener;
+import net.martinprobson.jobrunner.monitor.SimpleMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <h3>{@code DagRunner}</h3>
+ * <p>Runs a job from its {@link CompiledDag}, as an alternative to {@code JobRunner} for jobs with very many
+ * tasks. All of the scheduling state is held in arrays indexed by task: a task is submitted to the
+ * executor as soon as the count of its parents still to finish reaches zero.</p>
+ * <p>The results are the same as with {@code JobRunner}: tasks that have already succeeded (along with
+ * everything upstream of them) are not run again, and a task is not run (its result is left as
+ * {@code NOT_EXECUTED}) if a task it depends on could not be run or failed with an exception. A failed task
+ * that its {@code RetryPolicy} allows to be tried again is resubmitted after the backoff, without a thread
+ * waiting for it.</p>
+ *
+ * @author martinr
+ */
+public class DagRunner {
+
+    private final JobRunnerConfig config;
+    private final CompiledDag dag;
+    /** Tasks that are not run because they (and everything upstream of them) have already succeeded. */
+    private final boolean[] done;
+    /** Number of parents of each task still to finish. */
+    private final AtomicIntegerArray pending;
+    /** Set (to 1) for a task that must not run because a parent did not run or failed with an exception. */
+    private final AtomicIntegerArray blocked;
+    private int toRun = 0;
+    private CountDownLatch remaining;
+    private ScheduledExecutorService retries;
+
+    public DagRunner(final JobRunnerConfig config) throws JobRunnerException {
+        this.config = config;
+        this.dag = CompiledDag.compile(config.getJob());
+        log.debug("Compiled " + dag);
+        int n = dag.size();
+        this.done = new boolean[n];
+        this.pending = new AtomicIntegerArray(n);
+        this.blocked = new AtomicIntegerArray(n);
+        for (int k = 0; k < n; k++) {
+            int i = dag.inOrder(k);
+            BaseTask task = dag.task(i);
+            task.setDispatcher(config.getDispatcher());
+            task.setSpeculator(config.getSpeculator());
+            for (TaskListener listener : config.getListeners())
+                task.addListener(listener);
+            boolean isDone = task.getTaskResult().succeeded();
+            for (int p = 0; p < dag.parentCount(i) && isDone; p++)
+                isDone = done[dag.parent(i, p)];
+            done[i] = isDone;
+            if (isDone) {
+                log.info(task.getId() + " has already completed, it will not be run");
+                continue;
+            }
+            if (task.getTaskResult().succeeded())
+                task.setTaskResult(new TaskResult.Builder(TaskResult.Result.NOT_EXECUTED).build());
+            toRun++;
+            int parents = 0;
+            for (int p = 0; p < dag.parentCount(i); p++)
+                if (!done[dag.parent(i, p)])
+                    parents++;
+            pending.set(i, parents);
+        }
+    }
+
+    /**
+     * @return The compiled dependency graph of the job.
+     */
+    public CompiledDag getDag() {
+        return dag;
+    }
+
+    /**
+     * Run the job, returning once every task has either finished or been found unable to run.
+     *
+     * @throws JobRunnerException If interrupted waiting for the tasks to finish.
+     */
+    public void execute() throws JobRunnerException {
+        SimpleMonitor monitor = SimpleMonitor.getInstance(config.getJob(), config.getDurationEstimator());
+        monitor.start();
+        try {
+            if (toRun == 0) {
+                log.info("All tasks have already completed, nothing to run");
+                return;
+            }
+            remaining = new CountDownLatch(toRun);
+            retries = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "dag-runner-retry");
+                t.setDaemon(true);
+                return t;
+            });
+            // The roots are found before any is submitted: once one finishes it may release (or block) its
+            // children, whose pending counts then also read 0.
+            int[] roots = new int[dag.size()];
+            int count = 0;
+            for (int i = 0; i < dag.size(); i++)
+                if (!done[i] && pending.get(i) == 0)
+                    roots[count++] = i;
+            for (int r = 0; r < count; r++)
+                submit(roots[r], 1);
+            remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobRunnerException("DagRunner: interrupted waiting for tasks to finish", e);
+        } finally {
+            if (retries != null)
+                retries.shutdownNow();
+            monitor.stop();
+        }
+    }
+
+    private void submit(int i, int attempt) {
+        try {
+            config.getExecutorService().execute(() -> run(i, attempt));
+        } catch (RejectedExecutionException e) {
+            log.error("Task: " + dag.id(i) + " could not be submitted", e);
+            finished(i, false);
+        }
+    }
+
+    private void run(int i, int attempt) {
+        BaseTask task = dag.task(i);
+        try {
+            task.executeAttempt(attempt);
+        } catch (Exception e) {
+            long delay = task.retryDelay(attempt, e);
+            if (delay >= 0) {
+                // No thread is held while waiting to try again.
+                try {
+                    retries.schedule(() -> submit(i, attempt + 1), delay, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException re) {
+                    log.error("Task: " + task.getId() + " could not be retried", re);
+                }
+            }
+            log.error("Task: " + task.getId() + " failed", e);
+            finished(i, false);
+            return;
+        }
+        finished(i, true);
+    }
+
+    /**
+     * Task {@code i} has finished (or cannot run): release the children whose parents have all finished,
+     * running those that are not blocked and finishing the rest (without running them) in turn.
+     */
+    private void finished(int i, boolean ok) {
+        // An explicit stack rather than recursion, a failure can block a very long chain of tasks.
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = ok ? i : ~i;
+        while (top > 0) {
+            int entry = stack[--top];
+            boolean succeeded = entry >= 0;
+            int t = succeeded ? entry : ~entry;
+            remaining.countDown();
+            for (int c = 0; c < dag.childCount(t); c++) {
+                int child = dag.child(t, c);
+                if (done[child])
+                    continue;
+                if (!succeeded)
+                    blocked.set(child, 1);
+                if (pending.decrementAndGet(child) != 0)
+                    continue;
+                if (blocked.get(child) == 0) {
+                    submit(child, 1);
+                } else {
+                    log.info("Task: " + dag.id(child) + " will not be run, a task it depends on did not complete");
+                    if (top == stack.length)
+                        stack = Arrays.copyOf(stack, top * 2);
+                    stack[top++] = ~child;
+                }
+            }
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DagRunner.class);
+}
@@ -0,0 +1,35 @@
+package net.martinprobson.jobrunner.history;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.scheduler.DurationEstimator;
+
+/**
+ * <h3>{@code HistoryDurationEstimator}</h3>
+ * <p>Estimates the duration of a task from its previous successful runs (held in a
+ * {@link TaskHistoryStore}), falling back to another {@code DurationEstimator} for tasks
+ * that have never run successfully.</p>
+ *
+ * @author martinr
+ */
+public class HistoryDurationEstimator implements DurationEstimator {
+
+    private final TaskHistoryStore history;
+    private final double percentile;
+    private final DurationEstimator fallback;
+
+    /**
+     * @param history    The run history.
+     * @param percentile The percentile (0 - 100) of previous run times used as the estimate.
+     * @param fallback   Used for tasks with no history.
+     */
+    public HistoryDurationEstimator(TaskHistoryStore history, double percentile, DurationEstimator fallback) {
+        this.history = history;
+        this.percentile = percentile;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public long estimate(BaseTask task) {
+        return history.percentile(task, percentile).orElseGet(() -> fallback.estimate(task));
+    }
+}
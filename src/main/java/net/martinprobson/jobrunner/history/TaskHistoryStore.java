@@ -0,0 +1,342 @@
+package net.martinprobson.jobrunner.history;
+
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * <h3>{@code TaskHistoryStore}</h3>
+ * <p>A local, append-only store of task run times. Every run of a task is recorded (keyed by the
+ * task id, a hash of the task file contents and the mode the task was run in, see {@link BaseTask#getMode()})
+ * with its start time, end time and result.</p>
+ * <p>The store is a {@link TaskListener}, so adding it to a {@code JobRunnerConfig} records every
+ * task as it finishes. A warning is logged when a successful run takes more than
+ * {@code regressionFactor} times the median of the previous successful runs of the same task contents
+ * in the same mode. When the same contents have also been run in another mode, the run time is logged
+ * alongside the median of each of the other modes, so the modes can be compared.</p>
+ * <p>The file is a 4 byte header followed by one binary record per run. A partially written record
+ * at the end of the file (after a crash) is discarded when the store is opened. Only the most recent
+ * {@code retain} runs of each task are kept; the file is rewritten when it holds more than twice that, or
+ * when it was written by a version that did not record the mode.</p>
+ *
+ * @author martinr
+ */
+public class TaskHistoryStore implements TaskListener, Closeable {
+
+    private static final int MAGIC = 0x4a524832;        // "JRH2"
+    /** Header of a history file written before the mode was recorded. */
+    private static final int MAGIC_V1 = 0x4a524831;     // "JRH1"
+    private static final int REGRESSION_MIN_RUNS = 3;
+
+    private final Path file;
+    private final int retain;
+    private final double regressionFactor;
+    private final Map<String, Deque<TaskRun>> runs = new HashMap<>();
+    private FileChannel channel;
+
+    private TaskHistoryStore(Path file, int retain, double regressionFactor) {
+        this.file = file;
+        this.retain = retain;
+        this.regressionFactor = regressionFactor;
+    }
+
+    /**
+     * Open (creating if necessary) the history store held in {@code file}.
+     *
+     * @param file             The history file.
+     * @param retain           The number of runs of each task to retain.
+     * @param regressionFactor A successful run this many times slower than the median is reported.
+     * @return The {@code TaskHistoryStore}
+     * @throws JobRunnerException If the file cannot be read or written.
+     */
+    public static TaskHistoryStore open(File file, int retain, double regressionFactor) throws JobRunnerException {
+        if (retain < 1)
+            throw new JobRunnerException("TaskHistoryStore: retain must be > 0");
+        TaskHistoryStore store = new TaskHistoryStore(file.toPath(), retain, regressionFactor);
+        store.load();
+        return store;
+    }
+
+    private void load() throws JobRunnerException {
+        try {
+            if (file.getParent() != null)
+                Files.createDirectories(file.getParent());
+            int records = 0;
+            long good = 0;
+            boolean v1 = false;
+            byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+            if (bytes.length >= 4) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+                int magic = in.readInt();
+                if (magic != MAGIC && magic != MAGIC_V1)
+                    throw new JobRunnerException("TaskHistoryStore: " + file + " is not a history file");
+                v1 = magic == MAGIC_V1;
+                good = 4;
+                try {
+                    while (in.available() > 0) {
+                        TaskRun run = read(in, v1);
+                        good = bytes.length - in.available();
+                        records++;
+                        if (run != null)
+                            add(run);
+                    }
+                } catch (EOFException e) {
+                    log.warn("TaskHistoryStore: discarding partial record at end of " + file);
+                }
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(good);
+            if (good < 4) {
+                channel.truncate(0);
+                channel.write((ByteBuffer) ByteBuffer.allocate(4).putInt(MAGIC).flip(), 0);
+            }
+            channel.position(channel.size());
+            if (v1 || records > 2 * retain * Math.max(1, runs.size()))
+                compact();
+        } catch (IOException e) {
+            throw new JobRunnerException("TaskHistoryStore: error opening " + file, e);
+        }
+    }
+
+    /**
+     * Rewrite the history file, keeping only the retained runs.
+     */
+    private void compact() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write((ByteBuffer) ByteBuffer.allocate(4).putInt(MAGIC).flip());
+            for (Deque<TaskRun> taskRuns : runs.values())
+                for (TaskRun run : taskRuns)
+                    out.write(ByteBuffer.wrap(toBytes(run)));
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        log.trace("TaskHistoryStore: compacted " + file);
+    }
+
+    /**
+     * Append a run to the store.
+     *
+     * @param run The run to record.
+     * @throws JobRunnerException If the run cannot be written.
+     */
+    public synchronized void record(TaskRun run) throws JobRunnerException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(toBytes(run));
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            throw new JobRunnerException("TaskHistoryStore: error writing to " + file, e);
+        }
+        add(run);
+    }
+
+    /**
+     * @param taskId The task id.
+     * @return The retained runs of {@code taskId}, oldest first.
+     */
+    public synchronized List<TaskRun> getRuns(String taskId) {
+        return new ArrayList<>(runs.getOrDefault(taskId, new ArrayDeque<>()));
+    }
+
+    /**
+     * <p>The given percentile of the duration of the successful runs of {@code taskId} with
+     * contents {@code contentHash}, run in {@code mode}. If the task has never run successfully with these
+     * contents in this mode, the successful runs of any previous contents in this mode are used, and failing
+     * that the successful runs in any mode.</p>
+     *
+     * @param taskId      The task id.
+     * @param contentHash Hash of the task contents (see {@link #contentHash(BaseTask)}).
+     * @param mode        The mode the task is run in (see {@link BaseTask#getMode()}).
+     * @param percentile  Percentile (0 - 100).
+     * @return The duration (ms), or empty if the task has no successful runs.
+     */
+    public synchronized OptionalLong percentile(String taskId, long contentHash, String mode, double percentile) {
+        long[] durations = durations(taskId, contentHash, mode);
+        if (durations.length == 0)
+            durations = durations(taskId, null, mode);
+        if (durations.length == 0)
+            durations = durations(taskId, null, null);
+        return percentile(durations, percentile);
+    }
+
+    /**
+     * @param taskId      The task id.
+     * @param contentHash Hash of the task contents (see {@link #contentHash(BaseTask)}).
+     * @param percentile  Percentile (0 - 100).
+     * @return The duration (ms), or empty if the task has no successful runs.
+     * @see #percentile(String, long, String, double)
+     */
+    public OptionalLong percentile(String taskId, long contentHash, double percentile) {
+        return percentile(taskId, contentHash, "", percentile);
+    }
+
+    /**
+     * @param task       The task.
+     * @param percentile Percentile (0 - 100).
+     * @return The duration (ms), or empty if the task has no successful runs.
+     * @see #percentile(String, long, String, double)
+     */
+    public OptionalLong percentile(BaseTask task, double percentile) {
+        return percentile(task.getId(), contentHash(task), task.getMode(), percentile);
+    }
+
+    /**
+     * Compare the modes a task has been run in (for example a hive task run with {@code hive.mode = "cli"}
+     * and with {@code hive.mode = "jdbc"}).
+     *
+     * @param taskId      The task id.
+     * @param contentHash Hash of the task contents (see {@link #contentHash(BaseTask)}).
+     * @param percentile  Percentile (0 - 100).
+     * @return The given percentile of the duration (ms) of the successful runs of these contents, by mode.
+     */
+    public synchronized Map<String, Long> percentileByMode(String taskId, long contentHash, double percentile) {
+        Map<String, Long> byMode = new TreeMap<>();
+        runs.getOrDefault(taskId, new ArrayDeque<>()).stream()
+                .map(TaskRun::getMode)
+                .distinct()
+                .forEach(mode -> percentile(durations(taskId, contentHash, mode), percentile)
+                        .ifPresent(p -> byMode.put(mode, p)));
+        return byMode;
+    }
+
+    /**
+     * Record each task as it finishes.
+     */
+    @Override
+    public void taskFinished(BaseTask task, TaskResult result) {
+        if (result.getStartTime() == 0 || result.getEndTime() == 0)
+            return;
+        TaskRun run = new TaskRun(task.getId(), contentHash(task), task.getMode(), result.getStartTime(),
+                result.getEndTime(), result.getResult());
+        synchronized (this) {
+            if (run.getResult() == TaskResult.Result.SUCCESS) {
+                long[] previous = durations(run.getTaskId(), run.getContentHash(), run.getMode());
+                if (previous.length >= REGRESSION_MIN_RUNS) {
+                    long median = percentile(previous, 50).getAsLong();
+                    if (median > 0 && run.getDuration() > regressionFactor * median)
+                        log.warn("Task: " + run.getTaskId() + " took " + run.getDuration() + "ms, "
+                                + String.format("%.1f", (double) run.getDuration() / median)
+                                + "x its median of " + median + "ms");
+                }
+                Map<String, Long> others = percentileByMode(run.getTaskId(), run.getContentHash(), 50);
+                others.remove(run.getMode());
+                if (!others.isEmpty())
+                    log.info("Task: " + run.getTaskId() + " took " + run.getDuration() + "ms in mode " +
+                            describe(run.getMode()) + ", median in " + others.entrySet().stream()
+                            .map(e -> "mode " + describe(e.getKey()) + " " + e.getValue() + "ms")
+                            .collect(Collectors.joining(", ")));
+            }
+            try {
+                record(run);
+            } catch (JobRunnerException e) {
+                log.warn("Task: " + task.getId() + " run time not recorded", e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+
+    /**
+     * @param task The task.
+     * @return The first 64 bits of the SHA-256 hash of the task file, or 0 if the file cannot be read.
+     */
+    public static long contentHash(BaseTask task) {
+        try {
+            return Long.parseUnsignedLong(task.getContentHash().substring(0, 16), 16);
+        } catch (JobRunnerException e) {
+            return 0;
+        }
+    }
+
+    private void add(TaskRun run) {
+        Deque<TaskRun> taskRuns = runs.computeIfAbsent(run.getTaskId(), k -> new ArrayDeque<>());
+        taskRuns.addLast(run);
+        while (taskRuns.size() > retain)
+            taskRuns.removeFirst();
+    }
+
+    /**
+     * Durations of the successful runs of {@code taskId}, restricted to {@code contentHash} and {@code mode}
+     * unless null.
+     */
+    private long[] durations(String taskId, Long contentHash, String mode) {
+        return runs.getOrDefault(taskId, new ArrayDeque<>()).stream()
+                .filter(r -> r.getResult() == TaskResult.Result.SUCCESS)
+                .filter(r -> contentHash == null || r.getContentHash() == contentHash)
+                .filter(r -> mode == null || r.getMode().equals(mode))
+                .mapToLong(TaskRun::getDuration)
+                .toArray();
+    }
+
+    /**
+     * Nearest rank percentile.
+     */
+    private static OptionalLong percentile(long[] durations, double percentile) {
+        if (durations.length == 0)
+            return OptionalLong.empty();
+        long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return OptionalLong.of(sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))]);
+    }
+
+    private static String describe(String mode) {
+        return mode.isEmpty() ? "(default)" : mode;
+    }
+
+    private static byte[] toBytes(TaskRun run) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(run.getTaskId());
+        out.writeLong(run.getContentHash());
+        out.writeUTF(run.getMode());
+        out.writeLong(run.getStartTime());
+        out.writeLong(run.getEndTime());
+        out.writeUTF(run.getResult().name());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param v1 {@code true} if the record was written before the mode was recorded.
+     * @return The next run, or null if its result is not known to this version.
+     */
+    private static TaskRun read(DataInputStream in, boolean v1) throws IOException {
+        String taskId = in.readUTF();
+        long contentHash = in.readLong();
+        String mode = v1 ? "" : in.readUTF();
+        long startTime = in.readLong();
+        long endTime = in.readLong();
+        String result = in.readUTF();
+        try {
+            return new TaskRun(taskId, contentHash, mode, startTime, endTime, TaskResult.Result.valueOf(result));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TaskHistoryStore.class);
+}
@@ -0,0 +1,107 @@
+package net.martinprobson.jobrunner.history;
+
+import net.martinprobson.jobrunner.TaskResult;
+
+import java.util.Objects;
+
+/**
+ * <h3>{@code TaskRun}</h3>
+ * <p>A single run of a task, as recorded by the {@link TaskHistoryStore}.</p>
+ *
+ * @author martinr
+ */
+public final class TaskRun {
+
+    private final String taskId;
+    private final long contentHash;
+    private final String mode;
+    private final long startTime;
+    private final long endTime;
+    private final TaskResult.Result result;
+
+    /**
+     * @param taskId      The task id.
+     * @param contentHash Hash of the task file contents at the time of the run.
+     * @param startTime   Time (ms since the epoch) the run started.
+     * @param endTime     Time (ms since the epoch) the run finished.
+     * @param result      The result of the run.
+     */
+    public TaskRun(String taskId, long contentHash, long startTime, long endTime, TaskResult.Result result) {
+        this(taskId, contentHash, "", startTime, endTime, result);
+    }
+
+    /**
+     * @param taskId      The task id.
+     * @param contentHash Hash of the task file contents at the time of the run.
+     * @param mode        How the task was run (see {@code BaseTask.getMode()}), empty if it has only one way.
+     * @param startTime   Time (ms since the epoch) the run started.
+     * @param endTime     Time (ms since the epoch) the run finished.
+     * @param result      The result of the run.
+     */
+    public TaskRun(String taskId, long contentHash, String mode, long startTime, long endTime, TaskResult.Result result) {
+        this.taskId = taskId;
+        this.contentHash = contentHash;
+        this.mode = mode;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.result = result;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getDuration() {
+        return endTime - startTime;
+    }
+
+    public TaskResult.Result getResult() {
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TaskRun taskRun = (TaskRun) o;
+        return contentHash == taskRun.contentHash &&
+                startTime == taskRun.startTime &&
+                endTime == taskRun.endTime &&
+                Objects.equals(taskId, taskRun.taskId) &&
+                Objects.equals(mode, taskRun.mode) &&
+                result == taskRun.result;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(taskId, contentHash, mode, startTime, endTime, result);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskRun{" +
+                "taskId='" + taskId + '\'' +
+                ", contentHash=" + Long.toHexString(contentHash) +
+                ", mode='" + mode + '\'' +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", result=" + result +
+                '}';
+    }
+}
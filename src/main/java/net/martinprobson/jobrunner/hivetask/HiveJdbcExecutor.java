@@ -0,0 +1,151 @@
+package net.martinprobson.jobrunner.hivetask;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import com.typesafe.config.ConfigValue;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.auth.Kerberos;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskAttempt;
+import net.martinprobson.jobrunner.common.TaskExecutor;
+import net.martinprobson.jobrunner.jdbctask.DBSource;
+import net.martinprobson.jobrunner.jdbctask.SqlStatementReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>{@code HiveJdbcExecutor}</p>
+ *
+ * <p>Runs a Hive QL script through a pooled JDBC connection (usually to HiveServer2) from the data source named by
+ * {@code hive.jdbc.source}, rather than starting the hive cli for each task.</p>
+ * <p>The task's {@code hive.hiveconf} and {@code hive.hivevar} settings are applied with {@code SET} statements
+ * before the script is run. Afterwards the {@code hive.jdbc.reset} statements are run (and the hivevars
+ * cleared), so nothing the task set carries over to the next task to use the connection.</p>
+ * <p>The rows of any query in the script (up to {@code hive.jdbc.max-output-rows} of each) are written to the
+ * output of the {@code TaskResult}, tab separated, as the hive cli would.</p>
+ * <p>If the task is run as a cancellable {@code TaskAttempt} the running statement is cancelled with it.</p>
+ *
+ * @author martinr
+ */
+class HiveJdbcExecutor implements TaskExecutor {
+
+    @Override
+    public TaskResult executeTask(BaseTask task) throws JobRunnerException {
+        StringBuilder output = new StringBuilder();
+        try {
+            Config config = task.getConfig();
+            DataSource dataSource = DBSource.get(config.getString("hive.jdbc.source"));
+            log.info(getClass().getName() + " executeTask - " + task.getId());
+            try (SqlStatementReader script = new SqlStatementReader(new StringReader(task.getRenderedTaskContents()), true);
+                 Connection conn = dataSource.getConnection()) {
+                Kerberos.auth();
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, config.getLong("hive.timeoutms") / 1000));
+                    TaskAttempt attempt = TaskAttempt.current();
+                    if (attempt != null)
+                        attempt.onCancel(() -> cancel(stmt));
+                    try {
+                        for (String set : setStatements(config))
+                            execute(stmt, set, 0, output);
+                        int maxRows = config.getInt("hive.jdbc.max-output-rows");
+                        while (script.hasNext())
+                            execute(stmt, script.next(), maxRows, output);
+                    } finally {
+                        reset(stmt, config);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new JobRunnerException("SQLException", e);
+            } catch (IOException | UncheckedIOException e) {
+                throw new JobRunnerException("Error reading Hive QL script", e);
+            }
+        } catch (JobRunnerException e) {
+            task.setTaskResult(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e)
+                    .output(output.toString()).build());
+            throw e;
+        }
+        return task.setTaskResult(new TaskResult.Builder(TaskResult.Result.SUCCESS).output(output.toString()).build());
+    }
+
+    /**
+     * @return The {@code SET} statements for the task's {@code hive.hiveconf} and {@code hive.hivevar} settings.
+     */
+    static List<String> setStatements(Config config) {
+        List<String> statements = new ArrayList<>();
+        for (Map.Entry<String, String> setting : settings(config, "hive.hiveconf").entrySet())
+            statements.add("set " + setting.getKey() + "=" + setting.getValue());
+        for (Map.Entry<String, String> setting : settings(config, "hive.hivevar").entrySet())
+            statements.add("set hivevar:" + setting.getKey() + "=" + setting.getValue());
+        return statements;
+    }
+
+    /**
+     * @param config Task configuration.
+     * @param path   Path of a block of settings.
+     * @return The settings in the block (with dotted names, whether written as nested blocks or quoted keys).
+     */
+    static SortedMap<String, String> settings(Config config, String path) {
+        SortedMap<String, String> settings = new TreeMap<>();
+        for (Map.Entry<String, ConfigValue> entry : config.getConfig(path).entrySet())
+            settings.put(String.join(".", ConfigUtil.splitPath(entry.getKey())),
+                    String.valueOf(entry.getValue().unwrapped()));
+        return settings;
+    }
+
+    private static void execute(Statement stmt, String sql, int maxRows, StringBuilder output) throws SQLException {
+        log.debug("About to execute statement: " + sql);
+        if (!stmt.execute(sql))
+            return;
+        try (ResultSet rs = stmt.getResultSet()) {
+            int columns = rs.getMetaData().getColumnCount();
+            int rows = 0;
+            while (rs.next()) {
+                if (++rows > maxRows)
+                    continue;
+                for (int i = 1; i <= columns; i++) {
+                    if (i > 1)
+                        output.append('\t');
+                    output.append(rs.getString(i));
+                }
+                output.append('\n');
+            }
+            if (rows > maxRows)
+                output.append("[... ").append(rows - maxRows).append(" more row(s) not shown]\n");
+        }
+    }
+
+    private static void cancel(Statement stmt) {
+        try {
+            stmt.cancel();
+        } catch (SQLException e) {
+            log.warn("Error cancelling Hive statement", e);
+        }
+    }
+
+    private static void reset(Statement stmt, Config config) {
+        List<String> statements = new ArrayList<>(config.getStringList("hive.jdbc.reset"));
+        for (String var : settings(config, "hive.hivevar").keySet())
+            statements.add("set hivevar:" + var + "=");
+        for (String sql : statements) {
+            try {
+                stmt.execute(sql);
+            } catch (SQLException e) {
+                log.warn("Error resetting Hive session with: " + sql, e);
+            }
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(HiveJdbcExecutor.class);
+}
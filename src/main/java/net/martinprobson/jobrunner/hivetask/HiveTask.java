@@ -44,4 +44,12 @@ class HiveTask extends BaseTask {
         log.trace("Built a new HiveTask: " + this);
     }
 
+    /**
+     * @return The {@code hive.mode} of the task ({@code cli} or {@code jdbc}).
+     */
+    @Override
+    public String getMode() {
+        return getConfig().hasPath("hive.mode") ? getConfig().getString("hive.mode") : "";
+    }
+
 }
@@ -1,21 +1,44 @@
 package net.martinprobson.jobrunner.hivetask;
 
+import net.martinprobson.jobrunner.TaskResult;
 import net.martinprobson.jobrunner.common.AbstractExternalCmdExecutor;
 import net.martinprobson.jobrunner.common.BaseTask;
 import net.martinprobson.jobrunner.common.JobRunnerException;
 import net.martinprobson.jobrunner.common.TaskExecutor;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <p>{@code HiveTaskExecutor}</p>
  *
  * <p>Responsible for executing Hive QL script via Hive cli.</p>
+ * <p>With {@code hive.mode = "jdbc"} (which can be set per task) the script is run through a pooled JDBC
+ * connection instead (see {@link HiveJdbcExecutor}).</p>
  *
  * @author martinr
  */
 class HiveTaskExecutor extends AbstractExternalCmdExecutor implements TaskExecutor {
 
+    private final HiveJdbcExecutor jdbcExecutor = new HiveJdbcExecutor();
+
+    @Override
+    public TaskResult executeTask(BaseTask task) throws JobRunnerException {
+        String mode = task.getConfig().getString("hive.mode");
+        switch (mode) {
+            case "cli":
+                return super.executeTask(task);
+            case "jdbc":
+                return jdbcExecutor.executeTask(task);
+            default:
+                JobRunnerException e = new JobRunnerException("Unknown hive.mode: " + mode + " (expected cli or jdbc)");
+                task.setTaskResult(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e).build());
+                throw e;
+        }
+    }
+
     /**
      * <p>Check the environment is capable of executing the command.</p>
      * <p>For example, do the required environment variables exist? etc</p>
@@ -51,7 +74,18 @@ class HiveTaskExecutor extends AbstractExternalCmdExecutor implements TaskExecut
      */
     @Override
     protected String[] getArgs(BaseTask task) throws JobRunnerException {
-        return new String[]{"-f", super.createTempFile(task).getAbsolutePath()};
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, String> setting : HiveJdbcExecutor.settings(task.getConfig(), "hive.hiveconf").entrySet()) {
+            args.add("--hiveconf");
+            args.add(setting.getKey() + "=" + setting.getValue());
+        }
+        for (Map.Entry<String, String> setting : HiveJdbcExecutor.settings(task.getConfig(), "hive.hivevar").entrySet()) {
+            args.add("--hivevar");
+            args.add(setting.getKey() + "=" + setting.getValue());
+        }
+        args.add("-f");
+        args.add(super.createTempFile(task).getAbsolutePath());
+        return args.toArray(new String[0]);
     }
 
     /**
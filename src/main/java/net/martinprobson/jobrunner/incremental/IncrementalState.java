@@ -0,0 +1,112 @@
+package net.martinprobson.jobrunner.incremental;
+
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.StateFiles;
+import net.martinprobson.jobrunner.common.TaskListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * <h3>{@code IncrementalState}</h3>
+ * <p>Remembers the fingerprint (see {@link TaskFingerprints}) of the last successful run of each task in a
+ * group, so that a task whose fingerprint has not changed since can be skipped.</p>
+ * <p>As a {@link TaskListener} it records each task that succeeds and forgets each task that fails. The
+ * state file is rewritten (atomically) after every change, so a run that is killed part way through
+ * still leaves the tasks that completed up to date.</p>
+ *
+ * @author martinr
+ */
+public class IncrementalState implements TaskListener {
+
+    private final Path file;
+    private final Map<String, String> fingerprints;
+    private final Properties state = new Properties();
+
+    private IncrementalState(Path file, Map<String, String> fingerprints) {
+        this.file = file;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Load the state held in {@code file} (if it exists).
+     *
+     * @param file         The state file.
+     * @param fingerprints The current fingerprint of each task, keyed by task id.
+     * @return The {@code IncrementalState}
+     * @throws JobRunnerException If the state file cannot be read.
+     */
+    public static IncrementalState open(File file, Map<String, String> fingerprints) throws JobRunnerException {
+        IncrementalState incrementalState = new IncrementalState(file.toPath(), fingerprints);
+        if (file.exists()) {
+            try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                incrementalState.state.load(in);
+            } catch (IOException e) {
+                throw new JobRunnerException("IncrementalState: error reading " + file, e);
+            }
+        }
+        return incrementalState;
+    }
+
+    /**
+     * @param stateDir      Directory holding the jobrunner state.
+     * @param taskDirectory The task directory of the job.
+     * @return The state file used for the tasks in {@code taskDirectory}.
+     */
+    public static File stateFile(File stateDir, String taskDirectory) throws JobRunnerException {
+        return StateFiles.forTaskDirectory(stateDir, taskDirectory, "incremental", ".properties");
+    }
+
+    /**
+     * @param task The task.
+     * @return {@code true} if the task last succeeded with its current fingerprint.
+     */
+    public synchronized boolean isUpToDate(BaseTask task) {
+        String fingerprint = fingerprints.get(task.getId());
+        return fingerprint != null && fingerprint.equals(state.getProperty(task.getId()));
+    }
+
+    @Override
+    public void taskFinished(BaseTask task, TaskResult result) {
+        synchronized (this) {
+            if (result.getResult() == TaskResult.Result.SUCCESS && fingerprints.containsKey(task.getId()))
+                state.setProperty(task.getId(), fingerprints.get(task.getId()));
+            else if (result.getResult() == TaskResult.Result.FAILED)
+                state.remove(task.getId());
+            else
+                return;
+            try {
+                save();
+            } catch (JobRunnerException e) {
+                log.warn("Task: " + task.getId() + " incremental state not saved", e);
+            }
+        }
+    }
+
+    private void save() throws JobRunnerException {
+        try {
+            if (file.getParent() != null)
+                Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                state.store(out, "jobrunner incremental state - task id = fingerprint of last successful run");
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new JobRunnerException("IncrementalState: error writing " + file, e);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalState.class);
+}
@@ -0,0 +1,120 @@
+package net.martinprobson.jobrunner.incremental;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigValue;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * <h3>{@code TaskFingerprints}</h3>
+ * <p>Computes a fingerprint for each task in a group from everything that determines what the task does: -</p>
+ * <ol>
+ *     <li>The task type and the contents of the task file, both as is and after the template has been applied.</li>
+ *     <li>The effective task config. Values set by system properties (which describe the JVM rather than
+ *     the task) and the {@code jobrunner} framework settings are left out.</li>
+ *     <li>The fingerprints of the tasks it depends on, so a change to a task changes the fingerprint of
+ *     every task downstream of it.</li>
+ * </ol>
+ *
+ * @author martinr
+ */
+public final class TaskFingerprints {
+
+    private static final String SYSTEM_PROPERTIES = "system properties";
+    private static final String FRAMEWORK_CONFIG = "jobrunner";
+
+    /**
+     * @param tasks The tasks (and their dependencies) to fingerprint.
+     * @return Hex encoded SHA-256 fingerprint of each task, keyed by task id.
+     * @throws JobRunnerException If a task cannot be read or the dependencies contain a cycle.
+     */
+    public static Map<String, String> compute(Iterable<BaseTask> tasks) throws JobRunnerException {
+        Map<String, BaseTask> byId = new HashMap<>();
+        for (BaseTask task : tasks)
+            byId.put(task.getId(), task);
+        Map<String, String> fingerprints = new HashMap<>();
+        for (BaseTask task : byId.values())
+            compute(task, byId, fingerprints, new HashSet<>());
+        return fingerprints;
+    }
+
+    private static String compute(BaseTask task, Map<String, BaseTask> byId, Map<String, String> fingerprints,
+                                  Set<String> inProgress) throws JobRunnerException {
+        String fingerprint = fingerprints.get(task.getId());
+        if (fingerprint != null)
+            return fingerprint;
+        if (!inProgress.add(task.getId()))
+            throw new JobRunnerException("TaskFingerprints: cyclic dependency on task " + task.getId());
+        MessageDigest md = sha256();
+        update(md, "type", task.getTaskType());
+        update(md, "content", task.getContentHash());
+        String rendered;
+        try {
+            rendered = task.getRenderedTaskContents();
+        } catch (JobRunnerException e) {
+            // Not a template (e.g. a jar), the raw content hash stands.
+            rendered = "";
+        }
+        update(md, "rendered", rendered);
+        for (Map.Entry<String, String> entry : configEntries(task).entrySet())
+            update(md, "config:" + entry.getKey(), entry.getValue());
+        SortedSet<String> dependencies = new TreeSet<>(task.getDependencies());
+        for (String dep : dependencies)
+            if (byId.containsKey(dep) && !dep.equals(task.getId()))
+                update(md, "depends-on:" + dep, compute(byId.get(dep), byId, fingerprints, inProgress));
+        fingerprint = hex(md.digest());
+        inProgress.remove(task.getId());
+        fingerprints.put(task.getId(), fingerprint);
+        return fingerprint;
+    }
+
+    private static SortedMap<String, String> configEntries(BaseTask task) throws JobRunnerException {
+        SortedMap<String, String> entries = new TreeMap<>();
+        try {
+            Config config = task.getConfig().resolve();
+            for (Map.Entry<String, ConfigValue> entry : config.entrySet()) {
+                if (entry.getKey().equals(FRAMEWORK_CONFIG) || entry.getKey().startsWith(FRAMEWORK_CONFIG + "."))
+                    continue;
+                if (SYSTEM_PROPERTIES.equals(entry.getValue().origin().description()))
+                    continue;
+                entries.put(entry.getKey(), entry.getValue().render(ConfigRenderOptions.concise()));
+            }
+        } catch (ConfigException e) {
+            throw new JobRunnerException("TaskFingerprints: error reading config of task " + task.getId(), e);
+        }
+        return entries;
+    }
+
+    private static void update(MessageDigest md, String name, String value) {
+        byte[] bytes = (name + "=" + value).getBytes(StandardCharsets.UTF_8);
+        // Length prefix so that adjacent fields cannot run into each other.
+        md.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        md.update((byte) ':');
+        md.update(bytes);
+    }
+
+    private static MessageDigest sha256() throws JobRunnerException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new JobRunnerException("TaskFingerprints: SHA-256 not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes)
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    private TaskFingerprints() {
+    }
+}
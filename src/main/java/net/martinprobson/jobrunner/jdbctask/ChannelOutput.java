@@ -0,0 +1,101 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <h3>{@code ChannelOutput}</h3>
+ * <p>Writes primitive values and byte arrays to a file through a fixed size (direct) {@code ByteBuffer}, so
+ * however much is written, no more than the buffer is held in memory. Numbers are written big-endian.</p>
+ *
+ * @author martinr
+ */
+final class ChannelOutput implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    /** Bytes written to the channel so far (not counting those still in the buffer). */
+    private long flushed = 0;
+
+    /**
+     * @param file       File to write, replaced if it exists.
+     * @param bufferSize Size of the buffer in bytes.
+     * @throws IOException If the file cannot be opened.
+     */
+    ChannelOutput(Path file, int bufferSize) throws IOException {
+        this.buffer = ByteBuffer.allocateDirect(Math.max(64, bufferSize));
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void put(byte b) throws IOException {
+        ensure(1);
+        buffer.put(b);
+    }
+
+    void putInt(int i) throws IOException {
+        ensure(4);
+        buffer.putInt(i);
+    }
+
+    void putLong(long l) throws IOException {
+        ensure(8);
+        buffer.putLong(l);
+    }
+
+    void putDouble(double d) throws IOException {
+        ensure(8);
+        buffer.putDouble(d);
+    }
+
+    void put(byte[] bytes) throws IOException {
+        put(bytes, 0, bytes.length);
+    }
+
+    void put(byte[] bytes, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining())
+                flush();
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(bytes, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * @return The total number of bytes written.
+     */
+    long size() {
+        return flushed + buffer.position();
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            flushed += channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Flush the buffer and force the file to disk.
+     */
+    void sync() throws IOException {
+        flush();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buffer.remaining() < n)
+            flush();
+    }
+}
@@ -0,0 +1,181 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * <h3>{@code ColumnarResultSetWriter}</h3>
+ * <p>Writes a {@code ResultSet} in a compact binary columnar format. Rows are read in groups of
+ * {@code rowGroupSize}, each group is written column by column, so only one group is held in memory.</p>
+ * <p>The file layout (all numbers big-endian) is: -</p>
+ * <pre>
+ *   "JRC1"  int columns  { string name, byte kind, int jdbcType } * columns
+ *   { int rows  { byte[(rows + 7) / 8] null bitmap, non-null values } * columns } * row groups
+ *   int 0
+ * </pre>
+ * <p>Each value is written according to the kind of its column: {@link #LONG} - 8 byte long, {@link #DOUBLE} -
+ * 8 byte double, {@link #BOOLEAN} - 1 byte, {@link #STRING} - int length then UTF-8 bytes, {@link #BYTES} -
+ * int length then bytes. Decimal, date and time columns are written as strings.</p>
+ *
+ * @author martinr
+ */
+final class ColumnarResultSetWriter implements ResultSetWriter {
+
+    static final byte[] MAGIC = {'J', 'R', 'C', '1'};
+    static final byte LONG = 1;
+    static final byte DOUBLE = 2;
+    static final byte BOOLEAN = 3;
+    static final byte STRING = 4;
+    static final byte BYTES = 5;
+
+    private final int rowGroupSize;
+
+    ColumnarResultSetWriter(int rowGroupSize) {
+        this.rowGroupSize = Math.max(1, rowGroupSize);
+    }
+
+    @Override
+    public long write(ResultSet rs, ChannelOutput out) throws SQLException, IOException {
+        ResultSetMetaData md = rs.getMetaData();
+        Column[] columns = new Column[md.getColumnCount()];
+        out.put(MAGIC);
+        out.putInt(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            int jdbcType = md.getColumnType(i + 1);
+            columns[i] = new Column(kind(jdbcType), rowGroupSize);
+            putString(md.getColumnLabel(i + 1), out);
+            out.put(columns[i].kind);
+            out.putInt(jdbcType);
+        }
+        long rows = 0;
+        int groupRows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columns.length; i++)
+                columns[i].read(rs, i + 1, groupRows);
+            groupRows++;
+            rows++;
+            if (groupRows == rowGroupSize) {
+                writeGroup(columns, groupRows, out);
+                groupRows = 0;
+            }
+        }
+        if (groupRows > 0)
+            writeGroup(columns, groupRows, out);
+        out.putInt(0);
+        return rows;
+    }
+
+    private static void writeGroup(Column[] columns, int rows, ChannelOutput out) throws IOException {
+        out.putInt(rows);
+        for (Column column : columns)
+            column.write(rows, out);
+    }
+
+    static byte kind(int jdbcType) {
+        switch (jdbcType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return BYTES;
+            default:
+                return STRING;
+        }
+    }
+
+    private static void putString(String s, ChannelOutput out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    /**
+     * The values of one column in the current row group.
+     */
+    private static final class Column {
+        private final byte kind;
+        private final boolean[] nulls;
+        private final long[] longs;
+        private final double[] doubles;
+        private final Object[] objects;
+
+        Column(byte kind, int size) {
+            this.kind = kind;
+            this.nulls = new boolean[size];
+            this.longs = kind == LONG || kind == BOOLEAN ? new long[size] : null;
+            this.doubles = kind == DOUBLE ? new double[size] : null;
+            this.objects = kind == STRING || kind == BYTES ? new Object[size] : null;
+        }
+
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            switch (kind) {
+                case LONG:
+                    longs[row] = rs.getLong(column);
+                    break;
+                case BOOLEAN:
+                    longs[row] = rs.getBoolean(column) ? 1 : 0;
+                    break;
+                case DOUBLE:
+                    doubles[row] = rs.getDouble(column);
+                    break;
+                case BYTES:
+                    objects[row] = rs.getBytes(column);
+                    break;
+                default:
+                    objects[row] = rs.getString(column);
+            }
+            nulls[row] = rs.wasNull();
+        }
+
+        void write(int rows, ChannelOutput out) throws IOException {
+            for (int i = 0; i < rows; i += 8) {
+                int bits = 0;
+                for (int j = 0; j < 8 && i + j < rows; j++)
+                    if (nulls[i + j])
+                        bits |= 1 << j;
+                out.put((byte) bits);
+            }
+            for (int i = 0; i < rows; i++) {
+                if (nulls[i])
+                    continue;
+                switch (kind) {
+                    case LONG:
+                        out.putLong(longs[i]);
+                        break;
+                    case BOOLEAN:
+                        out.put((byte) longs[i]);
+                        break;
+                    case DOUBLE:
+                        out.putDouble(doubles[i]);
+                        break;
+                    case BYTES:
+                        byte[] bytes = (byte[]) objects[i];
+                        out.putInt(bytes.length);
+                        out.put(bytes);
+                        break;
+                    default:
+                        putString((String) objects[i], out);
+                }
+            }
+            if (objects != null)
+                Arrays.fill(objects, 0, rows, null);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+
+import javax.sql.DataSource;
+
+/**
+ * <h3>{@code ConfiguredConnectionRouter}</h3>
+ * <p>Runs each task against the data source named by {@code jdbc.source} in its config (usually the task's own
+ * {@code .conf} file), the default data source if that is empty.</p>
+ *
+ * @author martinr
+ */
+class ConfiguredConnectionRouter implements ConnectionRouter {
+
+    @Override
+    public DataSource route(BaseTask task) throws JobRunnerException {
+        return DBSource.get(source(task));
+    }
+
+    /**
+     * @return The name of the data source the task runs against.
+     */
+    static String source(BaseTask task) {
+        return task.getConfig().getString("jdbc.source");
+    }
+}
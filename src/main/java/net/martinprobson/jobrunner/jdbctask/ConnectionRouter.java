@@ -0,0 +1,22 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+
+import javax.sql.DataSource;
+
+/**
+ * <h3>{@code ConnectionRouter}</h3>
+ * <p>Chooses the data source that a JDBC task runs against.</p>
+ *
+ * @author martinr
+ */
+interface ConnectionRouter {
+
+    /**
+     * @param task The task about to be run.
+     * @return The data source to run it against.
+     * @throws JobRunnerException If the task's data source is not known.
+     */
+    DataSource route(BaseTask task) throws JobRunnerException;
+}
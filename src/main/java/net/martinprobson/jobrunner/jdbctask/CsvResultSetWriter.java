@@ -0,0 +1,71 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * <h3>{@code CsvResultSetWriter}</h3>
+ * <p>Writes a {@code ResultSet} as (RFC 4180 style) UTF-8 CSV. A value is quoted if it contains the
+ * delimiter, a quote or a line break, quotes within it are doubled. {@code NULL}s are written as the
+ * {@code jdbc.export.csv.null} string (unquoted).</p>
+ *
+ * @author martinr
+ */
+final class CsvResultSetWriter implements ResultSetWriter {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final String delimiter;
+    private final byte[] delimiterBytes;
+    private final boolean header;
+    private final byte[] nullBytes;
+
+    CsvResultSetWriter(String delimiter, boolean header, String nullValue) {
+        this.delimiter = delimiter;
+        this.delimiterBytes = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.header = header;
+        this.nullBytes = nullValue.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long write(ResultSet rs, ChannelOutput out) throws SQLException, IOException {
+        ResultSetMetaData md = rs.getMetaData();
+        int columns = md.getColumnCount();
+        if (header) {
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1)
+                    out.put(delimiterBytes);
+                field(md.getColumnLabel(i), out);
+            }
+            out.put(CRLF);
+        }
+        long rows = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1)
+                    out.put(delimiterBytes);
+                String value = rs.getString(i);
+                if (value == null)
+                    out.put(nullBytes);
+                else
+                    field(value, out);
+            }
+            out.put(CRLF);
+            rows++;
+        }
+        return rows;
+    }
+
+    private void field(String value, ChannelOutput out) throws IOException {
+        if (needsQuotes(value))
+            value = '"' + value.replace("\"", "\"\"") + '"';
+        out.put(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean needsQuotes(String value) {
+        return value.contains(delimiter) || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+    }
+}
@@ -2,7 +2,6 @@ package net.martinprobson.jobrunner.jdbctask;
 
 import com.typesafe.config.Config;
 import net.martinprobson.jobrunner.auth.Kerberos;
-import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
 import org.apache.commons.dbcp2.ConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,8 +9,8 @@ import org.slf4j.LoggerFactory;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 /**
@@ -23,30 +22,28 @@ import java.util.List;
  */
 class DBConnection implements ConnectionFactory {
 
-    private static final String JDBC_USERNAME;
-    private static final String JDBC_PASSWORD;
-    private static final String JDBC_DRIVER_CLASSNAME;
-    private static final String JDBC_URL;
+    private final String username;
+    private final String password;
+    private final String driverClassName;
+    private final String jdbcUrl;
 
-    private static final List<URLAppender> appenders = new ArrayList<>();
+    private static final List<URLAppender> appenders = new CopyOnWriteArrayList<>();
     private static final Logger log = LoggerFactory.getLogger(DBConnection.class);
 
-    static {
-        Config cfg = GlobalConfigurationProvider.get().getConfiguration();
-        JDBC_USERNAME = cfg.getString("jdbc.username");
-        JDBC_PASSWORD = cfg.getString("jdbc.password");
-        JDBC_DRIVER_CLASSNAME = cfg.getString("jdbc.driver");
-        JDBC_URL = cfg.getString("jdbc.url");
-    }
-
     private String url;
 
     /**
      * Gives a new DB Connection.
      * <p>
      * Append current date (YYYYMMDD) to connection URL so HQL can use ${hiveconf:run_date} in scripts.
+     *
+     * @param cfg The data source configuration ({@code jdbc}, or one of {@code jdbc.sources}).
      */
-    DBConnection() {
+    DBConnection(Config cfg) {
+        username = cfg.getString("username");
+        password = cfg.getString("password");
+        driverClassName = cfg.getString("driver");
+        jdbcUrl = cfg.getString("url");
         url = buildURL();
     }
 
@@ -63,10 +60,10 @@ class DBConnection implements ConnectionFactory {
      */
     @Override
     public Connection createConnection() throws SQLException {
-        log.trace("Got connection: URL: " + url + " User: " + JDBC_USERNAME);
+        log.trace("Got connection: URL: " + url + " User: " + username);
         Kerberos.auth();
         DriverManager.setLoginTimeout(10);
-        return DriverManager.getConnection(url, JDBC_USERNAME, JDBC_PASSWORD);
+        return DriverManager.getConnection(url, username, password);
     }
 
     /**
@@ -84,17 +81,17 @@ class DBConnection implements ConnectionFactory {
      * </ul>
      */
     private String buildURL() {
-        log.debug("Got JDBC Driver: " + JDBC_DRIVER_CLASSNAME);
-        System.setProperty("JDBC_DRIVERS", JDBC_DRIVER_CLASSNAME);
+        log.debug("Got JDBC Driver: " + driverClassName);
+        System.setProperty("JDBC_DRIVERS", driverClassName);
         try {
-            Class.forName(JDBC_DRIVER_CLASSNAME);
+            Class.forName(driverClassName);
         } catch (ClassNotFoundException e) {
-            log.error("JDBC Driver class not found" + JDBC_DRIVER_CLASSNAME, e);
+            log.error("JDBC Driver class not found" + driverClassName, e);
             e.printStackTrace();
         }
-        log.debug("JDBC Driver " + JDBC_DRIVER_CLASSNAME + " loaded successfully");
+        log.debug("JDBC Driver " + driverClassName + " loaded successfully");
 
-        url = JDBC_URL;
+        url = jdbcUrl;
         // Allow all the registered callback classes to modify the URL as required
 
         if (appenders.size() > 0) url += "#";
@@ -1,38 +1,166 @@
 package net.martinprobson.jobrunner.jdbctask;
 
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
 import org.apache.commons.dbcp2.ConnectionFactory;
 import org.apache.commons.dbcp2.PoolableConnection;
 import org.apache.commons.dbcp2.PoolableConnectionFactory;
 import org.apache.commons.dbcp2.PoolingDataSource;
-import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * <p>Handles the setup of a data source used in connection pool.</p>
- * <p></p>
+ * <p>Handles the setup of the data sources used in connection pool.</p>
+ * <p>The default data source is configured by the {@code jdbc} block, named data sources by
+ * {@code jdbc.sources.<name>} (any setting not given there is taken from the {@code jdbc} block). Each data source
+ * has its own connection pool.</p>
+ * <p>Each pool is configured by the {@code pool} settings (size, borrow timeout, validation and
+ * eviction). Its statistics (active/idle connections, borrow wait times) are registered with JMX (as
+ * {@code org.apache.commons.pool2:type=GenericObjectPool,name=jdbc} or {@code name=jdbc-<name>}) and can be
+ * logged with {@link #metrics(String)}.</p>
  */
-class DBSource {
+public class DBSource {
 
-    private static DataSource dataSource;
+    /** Name of the default data source. */
+    static final String DEFAULT = "";
 
+    private static final ConcurrentMap<String, DBSource> sources = new ConcurrentHashMap<>();
+
+    private final GenericObjectPool<PoolableConnection> pool;
+    private final DataSource dataSource;
+
+    private DBSource(GenericObjectPool<PoolableConnection> pool) {
+        this.pool = pool;
+        this.dataSource = new PoolingDataSource<>(pool);
+    }
+
+    /**
+     * @return The default data source.
+     */
     public static DataSource get() {
-        if (dataSource == null)
-            dataSource = setupDataSource();
-        return dataSource;
+        return instance(DEFAULT).dataSource;
+    }
+
+    /**
+     * @param name The data source name ({@link #DEFAULT} for the default).
+     * @return The data source.
+     * @throws JobRunnerException If there is no such data source.
+     */
+    public static DataSource get(String name) throws JobRunnerException {
+        checkName(name);
+        return instance(name).dataSource;
+    }
+
+    /**
+     * @return The names of the configured data sources, including {@link #DEFAULT}.
+     */
+    static Set<String> names() {
+        Set<String> names = new TreeSet<>();
+        names.add(DEFAULT);
+        Config cfg = GlobalConfigurationProvider.get().getConfiguration();
+        if (cfg.hasPath("jdbc.sources"))
+            names.addAll(cfg.getObject("jdbc.sources").keySet());
+        return names;
     }
 
-    private static DataSource setupDataSource() {
+    /**
+     * @return The connection pool of the default data source.
+     */
+    static GenericObjectPool<PoolableConnection> getPool() {
+        return instance(DEFAULT).pool;
+    }
+
+    /**
+     * @param name The data source name.
+     * @return The connection pool of the data source.
+     * @throws JobRunnerException If there is no such data source.
+     */
+    static GenericObjectPool<PoolableConnection> getPool(String name) throws JobRunnerException {
+        checkName(name);
+        return instance(name).pool;
+    }
+
+    /**
+     * Open connections until the pool holds {@code connections} connections (or is full).
+     *
+     * @param connections Number of connections (usually {@code jdbc.pool.prewarm}).
+     */
+    static void prewarm(String name, int connections) throws JobRunnerException {
+        GenericObjectPool<PoolableConnection> pool = getPool(name);
+        int prewarm = Math.min(connections, pool.getMaxTotal() < 0 ? Integer.MAX_VALUE : pool.getMaxTotal());
+        try {
+            while (pool.getNumIdle() + pool.getNumActive() < prewarm)
+                pool.addObject();
+            log.info("Connection pool " + describe(name) + " pre-warmed: " + metrics(name));
+        } catch (Exception e) {
+            log.warn("Error pre-warming connection pool", e);
+        }
+    }
+
+    /**
+     * @param name The data source name.
+     * @return The current connection pool statistics, for logging.
+     */
+    static String metrics(String name) {
+        GenericObjectPool<PoolableConnection> pool = instance(name).pool;
+        return "active=" + pool.getNumActive() +
+                " idle=" + pool.getNumIdle() +
+                " waiters=" + pool.getNumWaiters() +
+                " max-total=" + pool.getMaxTotal() +
+                " borrowed=" + pool.getBorrowedCount() +
+                " created=" + pool.getCreatedCount() +
+                " mean-borrow-wait-ms=" + pool.getMeanBorrowWaitTimeMillis() +
+                " max-borrow-wait-ms=" + pool.getMaxBorrowWaitTimeMillis();
+    }
+
+    /**
+     * @return A name for the data source, for messages.
+     */
+    static String describe(String name) {
+        return name.equals(DEFAULT) ? "jdbc" : "jdbc.sources." + name;
+    }
+
+    private static void checkName(String name) throws JobRunnerException {
+        if (!names().contains(name))
+            throw new JobRunnerException("Unknown JDBC data source: " + name + " (no jdbc.sources." + name + " in config)");
+    }
+
+    private static DBSource instance(String name) {
+        // computeIfAbsent builds each pool once, however many threads ask for it at the same time.
+        return sources.computeIfAbsent(name, n -> new DBSource(setupPool(n, config(n),
+                GlobalConfigurationProvider.get().getConfiguration().getInt("jobrunner.threads"))));
+    }
+
+    /**
+     * @param name The data source name.
+     * @return The configuration of the data source ({@code jdbc.sources.<name>} falling back to {@code jdbc}).
+     */
+    static Config config(String name) {
+        Config cfg = GlobalConfigurationProvider.get().getConfiguration();
+        Config jdbc = cfg.getConfig("jdbc");
+        if (name.equals(DEFAULT))
+            return jdbc;
+        return cfg.getConfig("jdbc.sources").getConfig(ConfigUtil.quoteString(name)).withFallback(jdbc);
+    }
+
+    private static GenericObjectPool<PoolableConnection> setupPool(String name, Config cfg, int threads) {
         //
         // First, we'll create a ConnectionFactory that the
         // pool will use to create Connections.
-        // We'll use the DriverManagerConnectionFactory,
-        // using the connect string passed in the command line
-        // arguments.
         //
         ConnectionFactory connectionFactory =
-                new DBConnection();
+                new DBConnection(cfg);
 
         //
         // Next we'll create the PoolableConnectionFactory, which wraps
@@ -41,26 +169,40 @@ class DBSource {
         //
         PoolableConnectionFactory poolableConnectionFactory =
                 new PoolableConnectionFactory(connectionFactory, null);
+        String validationQuery = cfg.getString("pool.validation-query");
+        // With no validation query, connections are validated with Connection.isValid.
+        if (!validationQuery.isEmpty())
+            poolableConnectionFactory.setValidationQuery(validationQuery);
+        poolableConnectionFactory.setValidationQueryTimeout(
+                (int) cfg.getDuration("pool.validation-timeout", TimeUnit.SECONDS));
 
         //
         // Now we'll need a ObjectPool that serves as the
         // actual pool of connections.
         //
-        // We'll use a GenericObjectPool instance, although
-        // any ObjectPool implementation will suffice.
-        //
-        ObjectPool<PoolableConnection> connectionPool =
-                new GenericObjectPool<>(poolableConnectionFactory);
+        int maxTotal = cfg.getInt("pool.max-total");
+        if (maxTotal == 0)
+            maxTotal = threads;
+        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxTotal);
+        poolConfig.setMinIdle(cfg.getInt("pool.min-idle"));
+        poolConfig.setMaxWaitMillis(cfg.getDuration("pool.max-wait", TimeUnit.MILLISECONDS));
+        poolConfig.setTestOnBorrow(cfg.getBoolean("pool.test-on-borrow"));
+        poolConfig.setTestWhileIdle(cfg.getBoolean("pool.test-while-idle"));
+        poolConfig.setTimeBetweenEvictionRunsMillis(
+                cfg.getDuration("pool.eviction-interval", TimeUnit.MILLISECONDS));
+        poolConfig.setMinEvictableIdleTimeMillis(
+                cfg.getDuration("pool.min-evictable-idle-time", TimeUnit.MILLISECONDS));
+        poolConfig.setJmxNamePrefix(name.equals(DEFAULT) ? "jdbc" : "jdbc-" + name);
+        GenericObjectPool<PoolableConnection> connectionPool =
+                new GenericObjectPool<>(poolableConnectionFactory, poolConfig);
 
         // Set the factory's pool property to the owning pool
         poolableConnectionFactory.setPool(connectionPool);
-
-        //
-        // Finally, we create the PoolingDriver itself,
-        // passing in the object pool we created.
-        //
-        return new PoolingDataSource<>(connectionPool);
-
+        log.debug("Connection pool " + describe(name) + " created: max-total=" + maxTotal);
+        return connectionPool;
     }
 
+    private static final Logger log = LoggerFactory.getLogger(DBSource.class);
 }
@@ -0,0 +1,39 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import com.google.inject.assistedinject.Assisted;
+import com.google.inject.assistedinject.AssistedInject;
+import com.google.inject.name.Named;
+import com.typesafe.config.Config;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.TaskExecutor;
+import net.martinprobson.jobrunner.template.TemplateService;
+
+import java.io.File;
+
+
+/**
+ * <p>{@code JDBCExportTask}</p>
+ *
+ * <p>A task that holds a query whose results are exported to a file (see {@link JDBCExportTaskExecutor}).</p>
+ *
+ * @author martinr
+ */
+class JDBCExportTask extends BaseTask {
+
+    /**
+     *
+     * Creates a JDBCExportTask with the specified id,sql and task configuration.
+     *
+     * @param id Task Id
+     * @param taskFile File containing the query to export.
+     * @param taskConfiguration  Task specification configuration.
+     */
+    @AssistedInject
+    private JDBCExportTask(TemplateService templateService,
+                           @Named("jdbc-export") TaskExecutor jdbcExportTaskExecutor,
+                           @Assisted String id,
+                           @Assisted File taskFile,
+                           @Assisted Config taskConfiguration) {
+        super(id,taskFile,taskConfiguration,templateService,jdbcExportTaskExecutor);
+    }
+}
@@ -0,0 +1,134 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.auth.Kerberos;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * <p>{@code JDBCExportTaskExecutor}</p>
+ *
+ * <p>Runs the query in a {@code JDBCExportTask} and streams its results to the file {@code jdbc.export.output},
+ * in {@code jdbc.export.format} ({@code csv} or {@code columnar}, see {@link ColumnarResultSetWriter}). The rows
+ * are fetched {@code jdbc.export.fetch-size} at a time and written through a buffer of
+ * {@code jdbc.export.buffer-size}, so the result set is never held in memory.</p>
+ * <p>The last statement of the task file is the query, any statements before it (setting session options,
+ * for example) are run first on the same connection. The file is written alongside the output file and
+ * only moved into place once complete, so a failed export never leaves a partial file behind.</p>
+ * <p>The output of the {@code TaskResult} is {@code rows=<rows> bytes=<bytes> file=<output file>}.</p>
+ *
+ * @author martinr
+ */
+class JDBCExportTaskExecutor implements TaskExecutor {
+
+    /**
+     * Exports the results of the query in a {@code JDBCExportTask}. The results of the execution are set on the
+     * {@code TaskResult} object within the task itself.
+     *
+     * @param task The task to execute.
+     * @throws JobRunnerException on execution error.
+     */
+    @Override
+    public TaskResult executeTask(BaseTask task) throws JobRunnerException {
+        String output;
+        try {
+            Config config = task.getConfig();
+            String file = config.getString("jdbc.export.output");
+            if (file.isEmpty())
+                throw new JobRunnerException("jdbc.export.output is not set for task: " + task.getId());
+            ResultSetWriter writer = ResultSetWriter.forConfig(config);
+            Path target = Paths.get(file).toAbsolutePath();
+            String query = null;
+            DataSource dataSource = router.route(task);
+            try (SqlStatementReader script = new SqlStatementReader(new StringReader(task.getRenderedTaskContents()),
+                    JDBCTaskExecutor.backslashEscapes(task, router));
+                 Connection conn = dataSource.getConnection()) {
+                Kerberos.auth();
+                // Some drivers (PostgreSQL for one) only honour the fetch size within a transaction.
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    while (script.hasNext()) {
+                        if (query != null) {
+                            log.debug("About to execute statement: " + query);
+                            stmt.execute(query);
+                        }
+                        query = script.next();
+                    }
+                    if (query == null)
+                        throw new JobRunnerException("No query to export in task: " + task.getId());
+                    stmt.setFetchSize(config.getInt("jdbc.export.fetch-size"));
+                    log.debug("About to export query: " + query + " to " + target);
+                    output = export(stmt, query, writer, target, (int) config.getBytes("jdbc.export.buffer-size").longValue());
+                    conn.commit();
+                } catch (SQLException | IOException | JobRunnerException e) {
+                    rollback(conn);
+                    throw e;
+                } finally {
+                    JDBCTaskExecutor.restoreAutoCommit(conn, autoCommit);
+                }
+            } catch (SQLException e) {
+                throw new JobRunnerException("SQLException", e);
+            } catch (IOException | UncheckedIOException e) {
+                throw new JobRunnerException("Error exporting to " + target, e);
+            }
+        } catch (JobRunnerException e) {
+            task.setTaskResult(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e).build());
+            throw e;
+        }
+        log.info("Task: " + task.getId() + " exported " + output);
+        return task.setTaskResult(new TaskResult.Builder(TaskResult.Result.SUCCESS).output(output).build());
+    }
+
+    private static String export(Statement stmt, String query, ResultSetWriter writer, Path target, int bufferSize)
+            throws SQLException, IOException {
+        if (target.getParent() != null)
+            Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        long rows;
+        long bytes;
+        try {
+            try (ResultSet rs = stmt.executeQuery(query);
+                 ChannelOutput out = new ChannelOutput(tmp, bufferSize)) {
+                rows = writer.write(rs, out);
+                out.sync();
+                bytes = out.size();
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return "rows=" + rows + " bytes=" + bytes + " file=" + target;
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            log.warn("Rollback failed", e);
+        }
+    }
+
+    @Inject
+    private ConnectionRouter router;
+    private static final Logger log = LoggerFactory.getLogger(JDBCExportTaskExecutor.class);
+}
@@ -0,0 +1,39 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.MapBinder;
+import com.google.inject.name.Names;
+import net.martinprobson.jobrunner.TaskFactory;
+import net.martinprobson.jobrunner.common.TaskExecutor;
+import net.martinprobson.jobrunner.template.FreeMarkerTemplateService;
+import net.martinprobson.jobrunner.template.TemplateService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <h3>{@code JDBCExportTaskModule}</h3>
+ * <p>Google Guice dependency injection for {@code JDBCExportTask}.</p>
+ * <p>This Task is injected into list of available task types (via the
+ * {@code MapBinder}
+ * - See <a href="https://github.com/google/guice/wiki/Multibindings">Guice Multi-bindings</a>)
+ * </p>
+ */
+@SuppressWarnings( "deprecation" )
+public class JDBCExportTaskModule extends AbstractModule {
+
+    @Override
+    public void configure() {
+        log.debug("Configuring JDBCExportTask");
+        MapBinder<String, TaskFactory> mapBinder = MapBinder.newMapBinder(binder(), String.class, TaskFactory.class);
+
+        //TODO FactoryProvider is deprecated
+        mapBinder.addBinding("jdbc-export").toProvider(com.google.inject.assistedinject.FactoryProvider.newFactory(TaskFactory.class, JDBCExportTask.class));
+
+        // JDBCExportTask needs a Task Executor and TemplateService implementation (and the executor a ConnectionRouter).
+        bind(TemplateService.class).to(FreeMarkerTemplateService.class);
+        bind(ConnectionRouter.class).to(ConfiguredConnectionRouter.class);
+        bind(TaskExecutor.class).annotatedWith(Names.named("jdbc-export")).to(JDBCExportTaskExecutor.class);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(JDBCExportTaskModule.class);
+}
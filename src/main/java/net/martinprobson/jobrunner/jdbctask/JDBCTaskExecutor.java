@@ -1,5 +1,7 @@
 package net.martinprobson.jobrunner.jdbctask;
 
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
 import net.martinprobson.jobrunner.auth.Kerberos;
 import net.martinprobson.jobrunner.common.BaseTask;
 import net.martinprobson.jobrunner.common.JobRunnerException;
@@ -8,18 +10,27 @@ import net.martinprobson.jobrunner.TaskResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * <p>{@code JDBCTaskExecutor}</p>
  *
  * <p>Responsible for executing SQL via a JDBC connection.</p>
+ * <p>With {@code jdbc.batch.enabled} set (usually in the task's own config), runs of consecutive DML statements
+ * ({@code INSERT}, {@code UPDATE}, {@code DELETE}, {@code MERGE}) are sent as JDBC batches of up to
+ * {@code jdbc.batch.size} statements, and with {@code jdbc.batch.single-transaction} the whole script is run
+ * in one transaction. The update counts of each batch are reported in the output of the {@code TaskResult}.</p>
+ * <p>The data source each task runs against is chosen by the {@link ConnectionRouter}.</p>
  *
  * @author martinr
  */
@@ -34,81 +45,226 @@ class JDBCTaskExecutor implements TaskExecutor {
      */
     @Override
     public TaskResult executeTask(BaseTask task) throws JobRunnerException {
+        StringBuilder output = new StringBuilder();
         try {
-            ExecuteSqlStmts(task.getRenderedTaskContents());
+            Config config = task.getConfig();
+            DataSource dataSource = router.route(task);
+            try (SqlStatementReader script = openScript(task, backslashEscapes(task, router))) {
+                if (config.getBoolean("jdbc.batch.enabled"))
+                    ExecuteSqlStmtsBatched(dataSource, script, config.getInt("jdbc.batch.size"),
+                            config.getBoolean("jdbc.batch.single-transaction"), output);
+                else
+                    ExecuteSqlStmts(dataSource, script);
+            } catch (IOException | UncheckedIOException e) {
+                throw new JobRunnerException("Error reading SQL script", e);
+            } finally {
+                logPoolMetrics(task, router);
+            }
         } catch (JobRunnerException e) {
-            task.setTaskResult(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e).build());
+            task.setTaskResult(new TaskResult.Builder(TaskResult.Result.FAILED).exception(e)
+                    .output(output.toString()).build());
             throw e;
         }
-        return task.setTaskResult(new TaskResult.Builder(TaskResult.Result.SUCCESS).build());
+        return task.setTaskResult(new TaskResult.Builder(TaskResult.Result.SUCCESS).output(output.toString()).build());
+    }
+
+    /**
+     * <p>A task with no template fields is read straight from its task file, so a large script is never held
+     * in memory as a whole. Otherwise the rendered contents are read.</p>
+     */
+    private static SqlStatementReader openScript(BaseTask task, boolean backslashEscapes)
+            throws JobRunnerException, IOException {
+        if (!task.getConfig().hasPath("template"))
+            return new SqlStatementReader(new InputStreamReader(Files.newInputStream(task.getTaskFile().toPath()),
+                    Charset.defaultCharset()), backslashEscapes);
+        return new SqlStatementReader(new StringReader(task.getRenderedTaskContents()), backslashEscapes);
+    }
+
+    /**
+     * @return {@code true} if {@code \} escapes quotes in the task's SQL ({@code jdbc.sql.backslash-escapes} in the
+     * config of the task, or of the data source it runs against).
+     */
+    static boolean backslashEscapes(BaseTask task, ConnectionRouter router) {
+        if (task.getConfig().getBoolean("jdbc.sql.backslash-escapes"))
+            return true;
+        if (!(router instanceof ConfiguredConnectionRouter))
+            return false;
+        String source = ConfiguredConnectionRouter.source(task);
+        return DBSource.names().contains(source) && DBSource.config(source).getBoolean("sql.backslash-escapes");
+    }
+
+    /**
+     * Log (at debug level) the metrics of the connection pool the task ran against. Never throws, as it is called
+     * as the task finishes (or fails, when the task's own error must not be lost).
+     */
+    static void logPoolMetrics(BaseTask task, ConnectionRouter router) {
+        if (!log.isDebugEnabled() || !(router instanceof ConfiguredConnectionRouter))
+            return;
+        try {
+            String source = ConfiguredConnectionRouter.source(task);
+            if (DBSource.names().contains(source))
+                log.debug("Connection pool " + DBSource.describe(source) + ": " + DBSource.metrics(source));
+        } catch (RuntimeException e) {
+            log.debug("Task: " + task.getId() + " no connection pool metrics", e);
+        }
     }
 
     /**
      * <p>
-     * Given a String containing one or more SQL statements (separated by ';' character),
-     * split the statements and execute each one in turn against a JDBC connection supplied by a
+     * Given a script containing one or more SQL statements (separated by ';' character),
+     * execute each statement in turn against a JDBC connection supplied by a
      * {@link DBSource}
      * </p>
      *
-     * @param script String containing SQL statement(s) to be run.
+     * @param dataSource The data source to run against.
+     * @param script The SQL statement(s) to be run.
      * @throws JobRunnerException on execution error.
      */
-    private static void ExecuteSqlStmts(String script) throws JobRunnerException {
-        try (Connection conn = DBSource.get().getConnection()) {
+    private static void ExecuteSqlStmts(DataSource dataSource, SqlStatementReader script) throws JobRunnerException {
+        try (Connection conn = dataSource.getConnection()) {
             Kerberos.auth();
-            List<String> sqlStmts = SQLSplit(script);
-            log.trace("String contains  " + sqlStmts.size() + " statement(s)");
+            int count = 0;
             try (Statement stmt = conn.createStatement()) {
-                for (String sql : sqlStmts) {
+                while (script.hasNext()) {
+                    String sql = script.next();
                     log.debug("About to execute statement: " + sql);
                     stmt.execute(sql);
+                    count++;
                 }
             }
+            log.trace("Executed " + count + " statement(s)");
         } catch (SQLException e) {
             throw new JobRunnerException("SQLException", e);
         }
     }
 
     /**
-     * Split a string into separate SQL statements.
+     * <p>As {@link #ExecuteSqlStmts(DataSource, SqlStatementReader)}, but consecutive DML statements are sent in batches.</p>
      *
-     * @param sql - String containing SQL
-     * @return a list of SQL statements
+     * @param dataSource        The data source to run against.
+     * @param script            The SQL statement(s) to be run.
+     * @param batchSize         Maximum number of statements in a batch.
+     * @param singleTransaction Run the whole script in one transaction (rolled back on error).
+     * @param output            The update counts of each batch are appended to this.
+     * @throws JobRunnerException on execution error.
      */
-    private static List<String> SQLSplit(String sql) {
-        String str = stripComments(sql);
-        List<String> stmts = new ArrayList<>();
-        boolean in_sQuote = false, in_dQuote = false;
-        StringBuilder stmt = new StringBuilder();
-
-        for (final char c : str.toCharArray()) {
-            if (c == '\'')
-                in_sQuote = !in_sQuote;
-            if (c == '\"')
-                in_dQuote = !in_dQuote;
-            if (c == ';') {
-                if (!in_dQuote && !in_sQuote) {
-                    stmts.add(stmt.toString());
-                    stmt = new StringBuilder();
-                    continue;
+    private static void ExecuteSqlStmtsBatched(DataSource dataSource, SqlStatementReader script, int batchSize,
+                                               boolean singleTransaction, StringBuilder output) throws JobRunnerException {
+        if (batchSize < 1)
+            throw new JobRunnerException("jdbc.batch.size must be at least 1");
+        try (Connection conn = dataSource.getConnection()) {
+            Kerberos.auth();
+            boolean autoCommit = conn.getAutoCommit();
+            if (singleTransaction)
+                conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                Batch batch = new Batch(stmt, output);
+                while (script.hasNext()) {
+                    String sql = script.next();
+                    if (isDml(sql)) {
+                        batch.add(sql);
+                        if (batch.size() >= batchSize)
+                            batch.execute();
+                    } else {
+                        batch.execute();
+                        log.debug("About to execute statement: " + sql);
+                        stmt.execute(sql);
+                    }
                 }
+                batch.execute();
+                if (singleTransaction)
+                    conn.commit();
+            } catch (SQLException e) {
+                if (singleTransaction)
+                    rollback(conn);
+                throw e;
+            } finally {
+                // The connection goes back to the pool.
+                if (singleTransaction)
+                    restoreAutoCommit(conn, autoCommit);
             }
-            stmt.append(c);
+        } catch (SQLException e) {
+            throw new JobRunnerException("SQLException", e);
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            log.warn("Rollback failed", e);
+        }
+    }
+
+    /**
+     * Put back the auto-commit mode of a connection before it returns to the pool. Called from a {@code finally}
+     * block, so a failure is only logged rather than replace the error (if any) of the task.
+     */
+    static void restoreAutoCommit(Connection conn, boolean autoCommit) {
+        try {
+            conn.setAutoCommit(autoCommit);
+        } catch (SQLException e) {
+            log.warn("Restoring auto-commit failed", e);
         }
-        return stmts;
     }
 
-    private static String stripComments(String str) {
-        StringBuilder result = new StringBuilder();
-        Pattern p = Pattern.compile("--");
-        for (String s : str.split(System.getProperty("line.separator"))) {
-            Matcher m = p.matcher(s);
-            if (m.find()) s = s.substring(0, m.start());
-            if (s.isEmpty()) continue;
-            result.append(s).append(" ");
+    private static final Pattern DML = Pattern.compile("^\\s*(insert|update|delete|merge)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * @return {@code true} if the statement is DML (so can be batched).
+     */
+    static boolean isDml(String sql) {
+        return DML.matcher(sql).find();
+    }
+
+    /**
+     * DML statements waiting to be sent as a JDBC batch.
+     */
+    private static class Batch {
+        private final Statement stmt;
+        private final StringBuilder output;
+        private int size = 0;
+        private int batches = 0;
+
+        Batch(Statement stmt, StringBuilder output) {
+            this.stmt = stmt;
+            this.output = output;
+        }
+
+        void add(String sql) throws SQLException {
+            stmt.addBatch(sql);
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void execute() throws SQLException {
+            if (size == 0)
+                return;
+            batches++;
+            log.debug("About to execute batch " + batches + " of " + size + " statement(s)");
+            int[] counts;
+            try {
+                counts = stmt.executeBatch();
+            } finally {
+                size = 0;
+            }
+            long rows = 0;
+            boolean unknown = false;
+            for (int count : counts) {
+                if (count >= 0)
+                    rows += count;
+                else
+                    unknown = true;
+            }
+            output.append("batch ").append(batches).append(": ").append(counts.length).append(" statement(s), ")
+                    .append(rows).append(unknown ? "+" : "").append(" row(s)\n");
         }
-        return result.toString();
     }
 
+    @Inject
+    private ConnectionRouter router;
     private static final Logger log = LoggerFactory.getLogger(JDBCTaskExecutor.class);
 }
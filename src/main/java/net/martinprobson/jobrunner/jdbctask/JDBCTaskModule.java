@@ -5,6 +5,7 @@ import com.google.inject.multibindings.MapBinder;
 import com.google.inject.name.Names;
 import net.martinprobson.jobrunner.TaskFactory;
 import net.martinprobson.jobrunner.common.TaskExecutor;
+import net.martinprobson.jobrunner.common.JobRunnerException;
 import net.martinprobson.jobrunner.template.FreeMarkerTemplateService;
 import net.martinprobson.jobrunner.template.TemplateService;
 import org.slf4j.Logger;
@@ -31,9 +32,27 @@ public class JDBCTaskModule extends AbstractModule {
         //TODO FactoryProvider is deprecated
         mapBinder.addBinding("jdbc").toProvider(com.google.inject.assistedinject.FactoryProvider.newFactory(TaskFactory.class, JDBCTask.class));
 
-        // JDBCTask needs a Task Executor and TemplateService implementation.
+        // JDBCTask needs a Task Executor and TemplateService implementation (and the executor a ConnectionRouter).
         bind(TemplateService.class).to(FreeMarkerTemplateService.class);
         bind(TaskExecutor.class).annotatedWith(Names.named("jdbc")).to(JDBCTaskExecutor.class);
+
+        bind(ConnectionRouter.class).to(ConfiguredConnectionRouter.class);
+
+        // The plugin modules are configured as the job starts, open the pre-warmed connections in the background.
+        for (String source : DBSource.names()) {
+            int connections = DBSource.config(source).getInt("pool.prewarm");
+            if (connections > 0) {
+                Thread prewarm = new Thread(() -> {
+                    try {
+                        DBSource.prewarm(source, connections);
+                    } catch (JobRunnerException e) {
+                        log.warn("Error pre-warming connection pool", e);
+                    }
+                }, "jdbc-prewarm");
+                prewarm.setDaemon(true);
+                prewarm.start();
+            }
+        }
     }
 
     private static final Logger log = LoggerFactory.getLogger(JDBCTaskModule.class);
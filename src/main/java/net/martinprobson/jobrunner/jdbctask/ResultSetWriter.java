@@ -0,0 +1,46 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import com.typesafe.config.Config;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * <h3>{@code ResultSetWriter}</h3>
+ * <p>Writes the rows of a {@code ResultSet} to a {@link ChannelOutput} as they are read, in one of the
+ * {@code jdbc.export.format}s.</p>
+ *
+ * @author martinr
+ */
+interface ResultSetWriter {
+
+    /**
+     * Write the rows of {@code rs} (from its current position to the end).
+     *
+     * @param rs  The result set.
+     * @param out Where to write them.
+     * @return The number of rows written.
+     */
+    long write(ResultSet rs, ChannelOutput out) throws SQLException, IOException;
+
+    /**
+     * @param config Task configuration.
+     * @return The {@code ResultSetWriter} for {@code jdbc.export.format}.
+     * @throws JobRunnerException If the format is not known.
+     */
+    static ResultSetWriter forConfig(Config config) throws JobRunnerException {
+        String format = config.getString("jdbc.export.format");
+        switch (format) {
+            case "csv":
+                return new CsvResultSetWriter(config.getString("jdbc.export.csv.delimiter"),
+                        config.getBoolean("jdbc.export.csv.header"),
+                        config.getString("jdbc.export.csv.null"));
+            case "columnar":
+                return new ColumnarResultSetWriter(config.getInt("jdbc.export.columnar.row-group-size"));
+            default:
+                throw new JobRunnerException("Unknown jdbc.export.format: " + format + " (expected csv or columnar)");
+        }
+    }
+}
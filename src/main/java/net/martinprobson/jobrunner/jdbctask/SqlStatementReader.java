@@ -0,0 +1,230 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <h3>{@code SqlStatementReader}</h3>
+ * <p>Splits a SQL script read from a {@code Reader} into statements separated by {@code ;}, one statement at
+ * a time, so only the current statement is held in memory.</p>
+ * <p>A {@code ;} does not end a statement when it is inside: -</p>
+ * <ul>
+ * <li>a {@code '} or {@code "} quoted string or a {@code `} quoted identifier (a doubled quote does not end
+ * the string; with {@code backslashEscapes}, as in MySQL and Hive, neither does a quote preceded by {@code \}
+ * in a {@code '} or {@code "} string),</li>
+ * <li>a dollar quoted string ({@code $$ .. $$} or {@code $tag$ .. $tag$}),</li>
+ * <li>a {@code --} comment (up to the end of the line) or a {@code /* .. *}{@code /} comment.</li>
+ * </ul>
+ * <p>Comments are dropped, apart from optimizer hints ({@code /*+ .. *}{@code /}). Statements are trimmed,
+ * empty statements are skipped, and a last statement without a terminating {@code ;} is still returned.</p>
+ *
+ * @author martinr
+ */
+public class SqlStatementReader implements Iterator<String>, Closeable {
+
+    private final Reader in;
+    private final boolean backslashEscapes;
+    private final StringBuilder stmt = new StringBuilder();
+    /** A character read but not yet consumed (-2 if none). */
+    private int pushedBack = -2;
+    private String next;
+    private boolean eof = false;
+
+    /**
+     * Read a standard SQL script, in which {@code \} has no special meaning in a string.
+     *
+     * @param in The script.
+     */
+    public SqlStatementReader(Reader in) {
+        this(in, false);
+    }
+
+    /**
+     * @param in               The script.
+     * @param backslashEscapes {@code true} if {@code \} escapes the next character in a {@code '} or {@code "}
+     *                         quoted string (MySQL, Hive).
+     */
+    public SqlStatementReader(Reader in, boolean backslashEscapes) {
+        this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /**
+     * @throws UncheckedIOException If the script cannot be read.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null && !eof)
+            next = readStatement();
+        return next != null;
+    }
+
+    /**
+     * @throws UncheckedIOException If the script cannot be read.
+     */
+    @Override
+    public String next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        String s = next;
+        next = null;
+        return s;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readStatement() {
+        try {
+            stmt.setLength(0);
+            int c;
+            while ((c = read()) != -1) {
+                switch (c) {
+                    case ';':
+                        if (!isBlank(stmt))
+                            return stmt.toString().trim();
+                        stmt.setLength(0);
+                        break;
+                    case '\'':
+                    case '"':
+                    case '`':
+                        quoted(c);
+                        break;
+                    case '$':
+                        dollar();
+                        break;
+                    case '-':
+                        if (peek() == '-')
+                            lineComment();
+                        else
+                            stmt.append('-');
+                        break;
+                    case '/':
+                        if (peek() == '*')
+                            blockComment();
+                        else
+                            stmt.append('/');
+                        break;
+                    default:
+                        stmt.append((char) c);
+                }
+            }
+            eof = true;
+            return isBlank(stmt) ? null : stmt.toString().trim();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void quoted(int quote) throws IOException {
+        stmt.append((char) quote);
+        // A ` quoted identifier never has backslash escapes.
+        boolean escapes = backslashEscapes && quote != '`';
+        int c;
+        while ((c = read()) != -1) {
+            stmt.append((char) c);
+            if (c == '\\' && escapes) {
+                int escaped = read();
+                if (escaped == -1)
+                    return;
+                stmt.append((char) escaped);
+            } else if (c == quote) {
+                if (peek() != quote)
+                    return;
+                stmt.append((char) read());
+            }
+        }
+    }
+
+    /**
+     * After a {@code $}: if it starts a dollar quote tag ({@code $$} or {@code $tag$}), copy up to the closing
+     * tag.
+     */
+    private void dollar() throws IOException {
+        stmt.append('$');
+        int tagStart = stmt.length() - 1;
+        int c;
+        while ((c = read()) != -1 && (Character.isLetterOrDigit(c) || c == '_'))
+            stmt.append((char) c);
+        if (c != '$') {
+            // Not a dollar quote (for example a $1 parameter).
+            unread(c);
+            return;
+        }
+        stmt.append('$');
+        String tag = stmt.substring(tagStart);
+        while ((c = read()) != -1) {
+            stmt.append((char) c);
+            if (c == '$' && endsWith(stmt, tag) && stmt.length() - tag.length() > tagStart + tag.length() - 1)
+                return;
+        }
+    }
+
+    private void lineComment() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '\n')
+            ;
+        stmt.append('\n');
+    }
+
+    private void blockComment() throws IOException {
+        read(); // the '*'
+        boolean hint = peek() == '+';
+        if (hint)
+            stmt.append("/*");
+        int c;
+        int previous = -1;
+        while ((c = read()) != -1) {
+            if (hint)
+                stmt.append((char) c);
+            if (previous == '*' && c == '/')
+                break;
+            previous = c;
+        }
+        if (!hint)
+            stmt.append(' ');
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        unread(c);
+        return c;
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+    }
+
+    private static boolean endsWith(StringBuilder sb, String s) {
+        int offset = sb.length() - s.length();
+        if (offset < 0)
+            return false;
+        for (int i = 0; i < s.length(); i++)
+            if (sb.charAt(offset + i) != s.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static boolean isBlank(CharSequence s) {
+        for (int i = 0; i < s.length(); i++)
+            if (!Character.isWhitespace(s.charAt(i)))
+                return false;
+        return true;
+    }
+}
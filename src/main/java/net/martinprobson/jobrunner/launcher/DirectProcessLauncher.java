@@ -0,0 +1,45 @@
+package net.martinprobson.jobrunner.launcher;
+
+import net.martinprobson.jobrunner.common.ProcessTrees;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3>{@code DirectProcessLauncher}</h3>
+ * <p>Starts processes from this JVM (with {@code ProcessBuilder}).</p>
+ *
+ * @author martinr
+ */
+final class DirectProcessLauncher implements ProcessLauncher {
+
+    static final DirectProcessLauncher INSTANCE = new DirectProcessLauncher();
+
+    private DirectProcessLauncher() {
+    }
+
+    @Override
+    public LaunchedProcess launch(List<String> command, File stdout, File stderr) throws IOException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectOutput(stdout).redirectError(stderr).start();
+        long spawnNanos = System.nanoTime() - start;
+        return new LaunchedProcess() {
+            @Override
+            public long getSpawnNanos() {
+                return spawnNanos;
+            }
+
+            @Override
+            public Integer waitFor(long timeoutMs) throws InterruptedException {
+                return process.waitFor(timeoutMs, TimeUnit.MILLISECONDS) ? process.exitValue() : null;
+            }
+
+            @Override
+            public void kill() {
+                ProcessTrees.destroy(process);
+            }
+        };
+    }
+}
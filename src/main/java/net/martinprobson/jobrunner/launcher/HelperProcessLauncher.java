@@ -0,0 +1,256 @@
+package net.martinprobson.jobrunner.launcher;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h3>{@code HelperProcessLauncher}</h3>
+ * <p>Starts processes through a {@link LauncherHelper}, a small JVM (started once, with
+ * {@code jobrunner.launcher.java-options}) that does the forking, so the cost of forking the job runner JVM
+ * (which grows with its heap) is not paid for every task.</p>
+ * <p>The protocol, over the stdin/stdout of the helper, is binary (numbers big-endian, strings as an int length
+ * and UTF-8 bytes). The helper first writes {@code R}. Requests are {@code S <id> <argc> <args..> <stdout file>
+ * <stderr file>} (start a process) and {@code K <id>} (kill it). Replies are {@code S <id> <spawn ns>} (started),
+ * {@code F <id> <message>} (failed to start) and {@code X <id> <exit value>} (exited).</p>
+ * <p>If the helper dies it is started again for the next process.</p>
+ *
+ * @author martinr
+ */
+final class HelperProcessLauncher implements ProcessLauncher {
+
+    private static HelperProcessLauncher instance;
+
+    private final List<String> helperCommand;
+    private final long startTimeoutMs;
+    private final AtomicLong ids = new AtomicLong();
+    private Helper helper;
+
+    private HelperProcessLauncher(List<String> helperCommand, long startTimeoutMs) {
+        this.helperCommand = helperCommand;
+        this.startTimeoutMs = startTimeoutMs;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "launcher-helper-shutdown"));
+    }
+
+    /**
+     * @param config The {@code jobrunner.launcher} config.
+     * @return The launcher (there is one per JVM).
+     */
+    static synchronized HelperProcessLauncher get(Config config) {
+        if (instance == null) {
+            String java = config.getString("java");
+            if (java.isEmpty())
+                java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(config.getStringList("java-options"));
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(LauncherHelper.class.getName());
+            instance = new HelperProcessLauncher(command, config.getDuration("start-timeout", TimeUnit.MILLISECONDS));
+        }
+        return instance;
+    }
+
+    @Override
+    public LaunchedProcess launch(List<String> command, File stdout, File stderr) throws IOException {
+        long start = System.nanoTime();
+        Helper h = helper();
+        long id = ids.incrementAndGet();
+        Launch launch = new Launch(h, id);
+        h.launches.put(id, launch);
+        try {
+            synchronized (h.out) {
+                h.out.write(LauncherHelper.SPAWN);
+                h.out.writeLong(id);
+                h.out.writeInt(command.size());
+                for (String arg : command)
+                    LauncherHelper.writeString(h.out, arg);
+                LauncherHelper.writeString(h.out, stdout.getAbsolutePath());
+                LauncherHelper.writeString(h.out, stderr.getAbsolutePath());
+                h.out.flush();
+            }
+            launch.started.get(startTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            h.launches.remove(id);
+            throw e;
+        } catch (ExecutionException e) {
+            h.launches.remove(id);
+            throw new IOException("Cannot run " + command.get(0) + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            abandon(h, launch);
+            throw new IOException("Launcher helper did not start " + command.get(0) + " within " + startTimeoutMs + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(h, launch);
+            throw new InterruptedIOException("Interrupted starting " + command.get(0));
+        }
+        launch.spawnNanos = System.nanoTime() - start;
+        return launch;
+    }
+
+    /**
+     * The caller has given up waiting for {@code launch} to start, but the helper may still start it (the request
+     * has been sent), so ask for it to be killed: the helper handles requests in order, so the kill follows the start.
+     */
+    private static void abandon(Helper h, Launch launch) {
+        launch.kill();
+        h.launches.remove(launch.id);
+    }
+
+    /**
+     * @return The running helper, starting one if needed.
+     */
+    private synchronized Helper helper() throws IOException {
+        if (helper == null || !helper.isAlive()) {
+            log.info("Starting launcher helper: " + String.join(" ", helperCommand));
+            long start = System.nanoTime();
+            helper = new Helper(new ProcessBuilder(helperCommand).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            try {
+                if (!helper.ready.await(startTimeoutMs, TimeUnit.MILLISECONDS) || !helper.isAlive()) {
+                    helper.process.destroyForcibly();
+                    throw new IOException("Launcher helper not ready within " + startTimeoutMs + "ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                helper.process.destroyForcibly();
+                throw new InterruptedIOException("Interrupted starting launcher helper");
+            }
+            log.info("Launcher helper started in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+        return helper;
+    }
+
+    private synchronized void close() {
+        if (helper != null) {
+            try {
+                helper.out.close();
+            } catch (IOException e) {
+                // Already gone.
+            }
+        }
+    }
+
+    /**
+     * A running {@link LauncherHelper}.
+     */
+    private static final class Helper {
+        private final Process process;
+        private final DataOutputStream out;
+        private final Map<Long, Launch> launches = new ConcurrentHashMap<>();
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private volatile boolean exited = false;
+
+        Helper(Process process) {
+            this.process = process;
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            Thread reader = new Thread(this::read, "launcher-helper-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        boolean isAlive() {
+            return !exited && process.isAlive();
+        }
+
+        private void read() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()))) {
+                int op;
+                while ((op = in.read()) >= 0) {
+                    long id = in.readLong();
+                    Launch launch = op == LauncherHelper.READY ? null : launches.get(id);
+                    switch (op) {
+                        case LauncherHelper.READY:
+                            ready.countDown();
+                            break;
+                        case LauncherHelper.SPAWN:
+                            long helperNanos = in.readLong();
+                            if (launch != null)
+                                launch.started.complete(helperNanos);
+                            break;
+                        case LauncherHelper.SPAWN_FAILED:
+                            String message = LauncherHelper.readString(in);
+                            if (launch != null)
+                                launch.started.completeExceptionally(new IOException(message));
+                            launches.remove(id);
+                            break;
+                        case LauncherHelper.EXIT:
+                            int exit = in.readInt();
+                            if (launch != null)
+                                launch.exit.complete(exit);
+                            launches.remove(id);
+                            break;
+                        default:
+                            throw new IOException("Unexpected reply from launcher helper: " + op);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Launcher helper failed", e);
+            }
+            exited = true;
+            ready.countDown();
+            IOException gone = new IOException("launcher helper exited");
+            for (Launch launch : launches.values()) {
+                launch.started.completeExceptionally(gone);
+                launch.exit.completeExceptionally(gone);
+            }
+            launches.clear();
+        }
+    }
+
+    /**
+     * A process started by the helper.
+     */
+    private static final class Launch implements LaunchedProcess {
+        private final Helper helper;
+        private final long id;
+        private final CompletableFuture<Long> started = new CompletableFuture<>();
+        private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+        private volatile long spawnNanos;
+
+        Launch(Helper helper, long id) {
+            this.helper = helper;
+            this.id = id;
+        }
+
+        @Override
+        public long getSpawnNanos() {
+            return spawnNanos;
+        }
+
+        @Override
+        public Integer waitFor(long timeoutMs) throws InterruptedException {
+            try {
+                return exit.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            } catch (ExecutionException e) {
+                // The helper died (and killed the process as it went).
+                log.warn("Launcher helper exited while process " + id + " was running");
+                return -1;
+            }
+        }
+
+        @Override
+        public void kill() {
+            try {
+                synchronized (helper.out) {
+                    helper.out.write(LauncherHelper.KILL);
+                    helper.out.writeLong(id);
+                    helper.out.flush();
+                }
+            } catch (IOException e) {
+                log.warn("Cannot kill process " + id + ", the launcher helper has gone", e);
+            }
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(HelperProcessLauncher.class);
+}
@@ -0,0 +1,52 @@
+package net.martinprobson.jobrunner.launcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3>{@code LaunchMetrics}</h3>
+ * <p>Totals of the time spent starting processes (spawn) and running them, kept separately so the
+ * overhead of starting external commands can be seen apart from the commands themselves.</p>
+ *
+ * @author martinr
+ */
+public final class LaunchMetrics {
+
+    private static long launches = 0;
+    private static long spawnNanos = 0;
+    private static long maxSpawnNanos = 0;
+    private static long runNanos = 0;
+
+    private LaunchMetrics() {
+    }
+
+    /**
+     * Record a process run.
+     *
+     * @param spawn Time (ns) taken to start the process.
+     * @param run   Time (ns) the process ran for.
+     */
+    public static synchronized void record(long spawn, long run) {
+        launches++;
+        spawnNanos += spawn;
+        maxSpawnNanos = Math.max(maxSpawnNanos, spawn);
+        runNanos += run;
+    }
+
+    /**
+     * @return The number of processes run.
+     */
+    public static synchronized long getLaunches() {
+        return launches;
+    }
+
+    /**
+     * @return Summary of the spawn and run times so far.
+     */
+    public static synchronized String describe() {
+        return "launches=" + launches +
+                " spawn(total=" + TimeUnit.NANOSECONDS.toMillis(spawnNanos) + "ms" +
+                " mean=" + (launches == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(spawnNanos / launches)) + "us" +
+                " max=" + TimeUnit.NANOSECONDS.toMicros(maxSpawnNanos) + "us)" +
+                " run(total=" + TimeUnit.NANOSECONDS.toMillis(runNanos) + "ms)";
+    }
+}
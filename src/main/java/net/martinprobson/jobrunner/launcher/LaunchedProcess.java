@@ -0,0 +1,29 @@
+package net.martinprobson.jobrunner.launcher;
+
+/**
+ * <h3>{@code LaunchedProcess}</h3>
+ * <p>A process started by a {@link ProcessLauncher}.</p>
+ *
+ * @author martinr
+ */
+public interface LaunchedProcess {
+
+    /**
+     * @return How long (ns) it took to start the process.
+     */
+    long getSpawnNanos();
+
+    /**
+     * Wait for the process to exit.
+     *
+     * @param timeoutMs How long to wait.
+     * @return The exit value of the process, {@code null} if it is still running after {@code timeoutMs}.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    Integer waitFor(long timeoutMs) throws InterruptedException;
+
+    /**
+     * Kill the process.
+     */
+    void kill();
+}
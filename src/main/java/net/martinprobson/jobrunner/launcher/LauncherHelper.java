@@ -0,0 +1,122 @@
+package net.martinprobson.jobrunner.launcher;
+
+import net.martinprobson.jobrunner.common.ProcessTrees;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <h3>{@code LauncherHelper}</h3>
+ * <p>The helper process started by {@link HelperProcessLauncher}. It is a small JVM that starts processes on
+ * behalf of the job runner, so the job runner JVM itself is not forked for each task.</p>
+ * <p>Requests are read from stdin and replies written to stdout (see {@link HelperProcessLauncher} for the
+ * protocol). When stdin is closed any processes still running are killed and the helper exits.</p>
+ *
+ * @author martinr
+ */
+public final class LauncherHelper {
+
+    static final int READY = 'R';
+    static final int SPAWN = 'S';
+    static final int SPAWN_FAILED = 'F';
+    static final int KILL = 'K';
+    static final int EXIT = 'X';
+
+    private LauncherHelper() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        // Nothing else may write to the reply stream.
+        System.setOut(System.err);
+        Map<Long, Process> children = new ConcurrentHashMap<>();
+        ExecutorService waiters = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "launcher-helper-waiter");
+            t.setDaemon(true);
+            return t;
+        });
+        reply(out, READY, 0, null);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        try {
+            int op;
+            while ((op = in.read()) >= 0) {
+                long id = in.readLong();
+                if (op == KILL) {
+                    Process process = children.get(id);
+                    if (process != null)
+                        ProcessTrees.destroy(process);
+                    continue;
+                }
+                int argc = in.readInt();
+                List<String> command = new ArrayList<>(argc);
+                for (int i = 0; i < argc; i++)
+                    command.add(readString(in));
+                File stdout = new File(readString(in));
+                File stderr = new File(readString(in));
+                long start = System.nanoTime();
+                Process process;
+                try {
+                    process = new ProcessBuilder(command).redirectOutput(stdout).redirectError(stderr).start();
+                } catch (IOException | RuntimeException e) {
+                    reply(out, SPAWN_FAILED, id, String.valueOf(e.getMessage()));
+                    continue;
+                }
+                children.put(id, process);
+                reply(out, SPAWN, id, System.nanoTime() - start);
+                waiters.execute(() -> {
+                    int exit;
+                    while (true) {
+                        try {
+                            exit = process.waitFor();
+                            break;
+                        } catch (InterruptedException e) {
+                            // Only interrupted at exit, keep waiting.
+                        }
+                    }
+                    children.remove(id);
+                    try {
+                        reply(out, EXIT, id, exit);
+                    } catch (IOException e) {
+                        // The job runner has gone.
+                    }
+                });
+            }
+        } finally {
+            for (Process process : children.values())
+                ProcessTrees.destroy(process);
+        }
+        System.exit(0);
+    }
+
+    private static void reply(DataOutputStream out, int op, long id, Object value) throws IOException {
+        synchronized (out) {
+            out.write(op);
+            out.writeLong(id);
+            if (value instanceof String)
+                writeString(out, (String) value);
+            else if (value instanceof Long)
+                out.writeLong((Long) value);
+            else if (value instanceof Integer)
+                out.writeInt((Integer) value);
+            out.flush();
+        }
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
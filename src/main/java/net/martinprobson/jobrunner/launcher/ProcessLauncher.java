@@ -0,0 +1,64 @@
+package net.martinprobson.jobrunner.launcher;
+
+import com.typesafe.config.Config;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <h3>{@code ProcessLauncher}</h3>
+ * <p>Starts the processes of external command tasks, with stdout and stderr written to files.</p>
+ * <p>The launcher used is chosen by {@code jobrunner.launcher.mode}: -</p>
+ * <ul>
+ *     <li>{@code jproc} - (the default) no launcher, commands are run with jproc.</li>
+ *     <li>{@code direct} - processes are started by this JVM ({@link DirectProcessLauncher}).</li>
+ *     <li>{@code helper} - processes are started by a small helper JVM ({@link HelperProcessLauncher}), so this
+ *     (possibly very large) JVM is never forked.</li>
+ * </ul>
+ *
+ * @author martinr
+ */
+public interface ProcessLauncher {
+
+    /**
+     * Start a process.
+     *
+     * @param command The command line.
+     * @param stdout  File stdout is written to (replaced if it exists).
+     * @param stderr  File stderr is written to (replaced if it exists).
+     * @return The process.
+     * @throws IOException If the process cannot be started.
+     */
+    LaunchedProcess launch(List<String> command, File stdout, File stderr) throws IOException;
+
+    /**
+     * @return The launcher configured by {@code jobrunner.launcher}, {@code null} in {@code jproc} mode.
+     * @throws JobRunnerException If the mode is not known.
+     */
+    static ProcessLauncher configured() throws JobRunnerException {
+        Config config = GlobalConfigurationProvider.get().getConfiguration().getConfig("jobrunner.launcher");
+        return forMode(config.getString("mode"), config);
+    }
+
+    /**
+     * @param mode   The launcher mode.
+     * @param config The {@code jobrunner.launcher} config.
+     * @return The launcher for {@code mode}, {@code null} for {@code jproc}.
+     * @throws JobRunnerException If the mode is not known.
+     */
+    static ProcessLauncher forMode(String mode, Config config) throws JobRunnerException {
+        switch (mode) {
+            case "jproc":
+                return null;
+            case "direct":
+                return DirectProcessLauncher.INSTANCE;
+            case "helper":
+                return HelperProcessLauncher.get(config);
+            default:
+                throw new JobRunnerException("Unknown jobrunner.launcher.mode: " + mode + " (expected jproc, direct or helper)");
+        }
+    }
+}
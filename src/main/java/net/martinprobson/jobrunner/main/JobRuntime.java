@@ -0,0 +1,399 @@
+package net.martinprobson.jobrunner.main;
+
+import com.github.dexecutor.core.ExecutionConfig;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import net.martinprobson.jobrunner.Job;
+import net.martinprobson.jobrunner.JobRunner;
+import net.martinprobson.jobrunner.JobRunnerConfig;
+import net.martinprobson.jobrunner.LocalFileSystemTaskBuilder;
+import net.martinprobson.jobrunner.RecursiveFileSystemTaskBuilder;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.checkpoint.CheckpointLog;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.DirectTaskDispatcher;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.StateFiles;
+import net.martinprobson.jobrunner.common.TaskDispatcher;
+import net.martinprobson.jobrunner.common.VirtualThreads;
+import net.martinprobson.jobrunner.dag.DagRunner;
+import net.martinprobson.jobrunner.history.HistoryDurationEstimator;
+import net.martinprobson.jobrunner.history.TaskHistoryStore;
+import net.martinprobson.jobrunner.incremental.IncrementalState;
+import net.martinprobson.jobrunner.incremental.TaskFingerprints;
+import net.martinprobson.jobrunner.scheduler.ConfiguredDurationEstimator;
+import net.martinprobson.jobrunner.scheduler.CriticalPath;
+import net.martinprobson.jobrunner.scheduler.DurationEstimator;
+import net.martinprobson.jobrunner.scheduler.FairShareTaskDispatcher;
+import net.martinprobson.jobrunner.scheduler.PriorityTaskDispatcher;
+import net.martinprobson.jobrunner.speculation.Speculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * <h3>{@code JobRuntime}</h3>
+ * <p>Everything needed to run jobs that outlives a single job: the thread pool tasks run on, the dispatcher,
+ * the task history, the duration estimates and the speculator, all set up from the global configuration.</p>
+ * <p>{@code RunJob} creates one to run a single job. A {@code shared} runtime (as used by the job server)
+ * runs any number of jobs at once: the jobs share the thread pool, and the running tasks are shared between
+ * the jobs by a {@link FairShareTaskDispatcher}, so {@code jobrunner.threads} and the per task type limits
+ * apply across all of them ({@code jobrunner.scheduler} orders the ready tasks within each job).</p>
+ *
+ * @author martinr
+ */
+public class JobRuntime implements Closeable {
+
+    private final Config conf;
+    private final boolean shared;
+    private final Map<String, Integer> typeLimits;
+    private final TaskHistoryStore history;
+    private final DurationEstimator estimator;
+    /**
+     * Starts a second copy of straggling tasks, {@code null} if speculation is disabled.
+     */
+    private final Speculator speculator;
+    private final ExecutorService executorService;
+    /**
+     * Shares the running tasks between the jobs of a shared runtime, {@code null} if not shared.
+     */
+    private final FairShareTaskDispatcher fairShare;
+    private final boolean critical;
+    /**
+     * Tasks go straight to a fixed size pool, with no dispatcher limiting them.
+     */
+    private final boolean direct;
+
+    /**
+     * @param conf   The global configuration.
+     * @param shared {@code true} if several jobs may be run at once.
+     * @throws JobRunnerException If the configuration is invalid.
+     */
+    public JobRuntime(Config conf, boolean shared) throws JobRunnerException {
+        this.conf = conf;
+        this.shared = shared;
+        this.typeLimits = typeLimits(conf);
+        String scheduler = conf.getString("jobrunner.scheduler");
+        switch (scheduler) {
+            case "fifo":
+                critical = false;
+                break;
+            case "critical-path":
+                critical = true;
+                break;
+            default:
+                throw new JobRunnerException("Unknown jobrunner.scheduler: " + scheduler);
+        }
+        String runner = conf.getString("jobrunner.runner");
+        if (!runner.equals("dexecutor") && !runner.equals("compiled"))
+            throw new JobRunnerException("Unknown jobrunner.runner: " + runner);
+        boolean virtual = useVirtualThreads(conf);
+        int numThreads = conf.getInt("jobrunner.threads");
+        // With the dexecutor runner a task waiting to be retried sleeps on its thread, which would take a worker
+        // out of a fixed size pool.
+        direct = !shared && !critical && typeLimits.isEmpty() && !virtual && !(runner.equals("dexecutor") && retries(conf));
+        if (direct) {
+            executorService = Executors.newFixedThreadPool(numThreads);
+            fairShare = null;
+        } else {
+            // Every ready task is handed a thread, the dispatcher limits how many run.
+            executorService = virtual ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+                    : Executors.newCachedThreadPool();
+            fairShare = shared ? new FairShareTaskDispatcher(numThreads, typeLimits) : null;
+        }
+        this.history = openHistory(conf);
+        this.estimator = history == null ? new ConfiguredDurationEstimator()
+                : new HistoryDurationEstimator(history, conf.getDouble("jobrunner.history.estimate-percentile"),
+                new ConfiguredDurationEstimator());
+        this.speculator = createSpeculator(conf, history);
+    }
+
+    /**
+     * Build the job from a single flat task directory, or (when recursive is set, or there are several task
+     * directories) from the task directory trees.
+     *
+     * @param conf            The global configuration.
+     * @param taskDirectory   The task directory (or several, separated by {@link File#pathSeparator}).
+     * @param configDirectory The directory holding the task config files.
+     * @param recursive       Include the tasks in sub-directories of the task directories.
+     * @return The {@code Job}
+     * @throws JobRunnerException If the job cannot be built.
+     */
+    public static Job buildJob(Config conf, String taskDirectory, String configDirectory, boolean recursive)
+            throws JobRunnerException {
+        List<String> taskDirectories = Arrays.asList(taskDirectory.split(Pattern.quote(File.pathSeparator)));
+        if (recursive || taskDirectories.size() > 1 || conf.getBoolean("jobrunner.recursive"))
+            return new Job(RecursiveFileSystemTaskBuilder.create(taskDirectories, configDirectory));
+        return new Job(LocalFileSystemTaskBuilder.create(taskDirectory, configDirectory));
+    }
+
+    /**
+     * Run {@code job}, returning once all of its tasks have finished (see the individual tasks for their
+     * status).
+     *
+     * @param job           The job.
+     * @param taskDirectory The task directory (or directories) the job was built from, the key of its
+     *                      checkpoint and incremental state.
+     * @param incremental   Skip tasks that are unchanged since they last succeeded (also set by
+     *                      jobrunner.incremental).
+     * @param resume        Carry on from the checkpoint of a previous run.
+     * @throws JobRunnerException If the job cannot be run.
+     */
+    public void run(Job job, String taskDirectory, boolean incremental, boolean resume) throws JobRunnerException {
+        run(job, taskDirectory, incremental, resume, taskDirectory, conf.getDouble("jobrunner.fair-share.default-weight"),
+                conf.getInt("jobrunner.fair-share.default-max-concurrency"));
+    }
+
+    /**
+     * Run {@code job}, as {@link #run(Job, String, boolean, boolean)}, with the given fair share of the running
+     * tasks (only used by a shared runtime).
+     *
+     * @param job            The job.
+     * @param taskDirectory  The task directory (or directories) the job was built from.
+     * @param incremental    Skip tasks that are unchanged since they last succeeded.
+     * @param resume         Carry on from the checkpoint of a previous run.
+     * @param share          Name of the job's share (for logging).
+     * @param weight         Weight of the job's share relative to the other running jobs.
+     * @param maxConcurrency The maximum number of the job's tasks allowed to run at once (0 - no limit).
+     * @throws JobRunnerException If the job cannot be run.
+     */
+    public void run(Job job, String taskDirectory, boolean incremental, boolean resume, String share, double weight,
+                    int maxConcurrency) throws JobRunnerException {
+        incremental = incremental || conf.getBoolean("jobrunner.incremental");
+        CheckpointLog checkpoint = openCheckpoint(job, taskDirectory, resume);
+        TaskDispatcher dispatcher = null;
+        boolean compiled = conf.getString("jobrunner.runner").equals("compiled");
+        ExecutorService pool = executorService;
+        try {
+            if (direct && !compiled && retries(job)) {
+                // As in the constructor, some of the tasks (in their own config) retry, so the job is not run
+                // on the fixed size pool.
+                pool = Executors.newCachedThreadPool();
+                dispatcher = new PriorityTaskDispatcher(conf.getInt("jobrunner.threads"), typeLimits, (t1, t2) -> 0);
+            } else
+                dispatcher = dispatcherFor(job, share, weight, maxConcurrency);
+            JobRunnerConfig config = new JobRunnerConfig(pool, job, dispatcher);
+            config.setDurationEstimator(estimator);
+            config.setSpeculator(speculator);
+            if (history != null)
+                config.addListener(history);
+            if (checkpoint != null)
+                config.addListener(checkpoint);
+            if (incremental)
+                config.addListener(skipUpToDate(job, taskDirectory));
+            if (compiled)
+                new DagRunner(config).execute();
+            else
+                new JobRunner(config).execute(ExecutionConfig.NON_TERMINATING);
+        } finally {
+            if (pool != executorService)
+                pool.shutdownNow();
+            if (dispatcher instanceof FairShareTaskDispatcher.Share)
+                ((FairShareTaskDispatcher.Share) dispatcher).close();
+            if (checkpoint != null) {
+                try {
+                    checkpoint.close();
+                } catch (IOException e) {
+                    log.warn("Error closing checkpoint log", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The global configuration.
+     */
+    public Config getConfig() {
+        return conf;
+    }
+
+    /**
+     * @return {@code true} if several jobs may be run at once.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * @return {@code true} if tasks run straight on a fixed size pool of {@code jobrunner.threads}.
+     */
+    boolean isDirect() {
+        return direct;
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+        if (speculator != null)
+            speculator.close();
+        try {
+            executorService.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                log.warn("Error closing task history", e);
+            }
+        }
+    }
+
+    private TaskDispatcher dispatcherFor(Job job, String share, double weight, int maxConcurrency)
+            throws JobRunnerException {
+        if (direct)
+            return new DirectTaskDispatcher();
+        // Ties are dispatched in arrival order.
+        Comparator<BaseTask> order = critical ? CriticalPath.compute(job, estimator).longestFirst() : (t1, t2) -> 0;
+        if (fairShare != null) {
+            try {
+                return fairShare.register(share, weight, maxConcurrency, order);
+            } catch (IllegalArgumentException e) {
+                throw new JobRunnerException(e.getMessage(), e);
+            }
+        }
+        return new PriorityTaskDispatcher(conf.getInt("jobrunner.threads"), typeLimits, order);
+    }
+
+    /**
+     * Start a new checkpoint log for the job or, when resuming, mark the tasks that completed in the
+     * previous run as succeeded so that they are not run again.
+     * @return The {@code CheckpointLog} or {@code null} if checkpoints are disabled.
+     */
+    private CheckpointLog openCheckpoint(Job job, String taskDirectory, boolean resume) throws JobRunnerException {
+        if (!conf.getBoolean("jobrunner.checkpoint.enabled")) {
+            if (resume)
+                throw new JobRunnerException("-resume requires jobrunner.checkpoint.enabled = true");
+            return null;
+        }
+        File file = StateFiles.forTaskDirectory(new File(conf.getString("jobrunner.state-dir")), taskDirectory,
+                "checkpoint", ".wal");
+        if (!resume)
+            return CheckpointLog.create(file);
+        CheckpointLog checkpoint = CheckpointLog.resume(file);
+        for (BaseTask task : job)
+            if (checkpoint.isCompleted(task))
+                task.setTaskResult(new TaskResult.Builder(TaskResult.Result.SUCCESS).build());
+        return checkpoint;
+    }
+
+    /**
+     * @return The per task type concurrency limits (jobrunner.plugintasks.max-concurrency).
+     */
+    private static Map<String, Integer> typeLimits(Config conf) throws JobRunnerException {
+        Map<String, Integer> typeLimits = new HashMap<>();
+        Config limits = conf.getConfig("jobrunner.plugintasks.max-concurrency");
+        for (String type : limits.root().keySet()) {
+            int limit = limits.getInt(ConfigUtil.quoteString(type));
+            if (limit < 1)
+                throw new JobRunnerException("jobrunner.plugintasks.max-concurrency." + type + " must be > 0");
+            typeLimits.put(type, limit);
+        }
+        return typeLimits;
+    }
+
+    /**
+     * @return {@code true} if the global {@code retry} settings (or those of a task type) allow more than one
+     * attempt.
+     */
+    private static boolean retries(Config conf) {
+        if (conf.getInt("retry.max-attempts") > 1)
+            return true;
+        Config types = conf.getConfig("retry.task-types");
+        for (String type : types.root().keySet()) {
+            Config retry = types.getConfig(ConfigUtil.quoteString(type));
+            if (retry.hasPath("max-attempts") && retry.getInt("max-attempts") > 1)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the {@code retry} settings of any task of the job (in its own config) allow more
+     * than one attempt.
+     */
+    private static boolean retries(Job job) {
+        for (BaseTask task : job)
+            if (task.getTaskConfig().hasPath("retry.max-attempts") && task.getTaskConfig().getInt("retry.max-attempts") > 1)
+                return true;
+        return false;
+    }
+
+    /**
+     * Mark the tasks of the job that are unchanged since they last succeeded as up to date.
+     * @return The {@code IncrementalState} that records the tasks that succeed in this run.
+     */
+    private IncrementalState skipUpToDate(Job job, String taskDirectory) throws JobRunnerException {
+        IncrementalState state = IncrementalState.open(
+                IncrementalState.stateFile(new File(conf.getString("jobrunner.state-dir")), taskDirectory),
+                TaskFingerprints.compute(job));
+        for (BaseTask task : job)
+            if (state.isUpToDate(task))
+                task.setUpToDate(true);
+        return state;
+    }
+
+    /**
+     * @return {@code true} if tasks should be run on virtual threads (jobrunner.thread-mode).
+     */
+    private static boolean useVirtualThreads(Config conf) throws JobRunnerException {
+        String threadMode = conf.getString("jobrunner.thread-mode");
+        switch (threadMode) {
+            case "platform":
+                return false;
+            case "virtual":
+                if (VirtualThreads.isAvailable())
+                    return true;
+                log.warn("jobrunner.thread-mode = virtual requires JDK 21 or later, using platform threads");
+                return false;
+            default:
+                throw new JobRunnerException("Unknown jobrunner.thread-mode: " + threadMode);
+        }
+    }
+
+    /**
+     * Open the task history store, a job can still run (without history) if it cannot be opened.
+     * @return The {@code TaskHistoryStore} or {@code null} if disabled or unavailable.
+     */
+    private static TaskHistoryStore openHistory(Config conf) {
+        if (!conf.getBoolean("jobrunner.history.enabled"))
+            return null;
+        try {
+            return TaskHistoryStore.open(new File(conf.getString("jobrunner.state-dir"), "task-history.bin"),
+                    conf.getInt("jobrunner.history.retain"),
+                    conf.getDouble("jobrunner.history.regression-factor"));
+        } catch (JobRunnerException e) {
+            log.warn("Task history not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return The {@code Speculator} or {@code null} if speculation is disabled (or there is no task history to
+     * tell when a task is straggling).
+     */
+    private static Speculator createSpeculator(Config conf, TaskHistoryStore history) {
+        if (!conf.getBoolean("jobrunner.speculation.enabled"))
+            return null;
+        if (history == null) {
+            log.warn("jobrunner.speculation requires the task history (jobrunner.history), speculation disabled");
+            return null;
+        }
+        return Speculator.fromConfig(conf, history);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(JobRuntime.class);
+}
@@ -1,12 +1,10 @@
 package net.martinprobson.jobrunner.main;
 
-import com.github.dexecutor.core.ExecutionConfig;
+import com.typesafe.config.Config;
 import net.martinprobson.jobrunner.Job;
-import net.martinprobson.jobrunner.JobRunner;
-import net.martinprobson.jobrunner.JobRunnerConfig;
-import net.martinprobson.jobrunner.LocalFileSystemTaskBuilder;
 import net.martinprobson.jobrunner.common.JobRunnerException;
 import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
+import net.martinprobson.jobrunner.server.JobServer;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,9 +12,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
 
 public class RunJob {
 
@@ -33,7 +30,12 @@ public class RunJob {
      *      -help               Display help
      *      -conf <DIR>         Directory containing application and task specific configuration
      *                          files.
-     *      -tasks <DIR>        Directory containing tasks to be run.}
+     *      -tasks <DIR>        Directory containing tasks to be run (or several, separated by the
+     *                          path separator).
+     *      -recursive          Include the tasks in sub-directories of the task directory.
+     *      -incremental        Skip tasks that are unchanged since they last succeeded.
+     *      -resume             Resume the previous run, only running the tasks that had not completed.
+     *      -server             Run as a server, accepting jobs over HTTP (see jobrunner.server).}
      * </pre></blockquote>
      *
      * @author martinr
@@ -41,10 +43,12 @@ public class RunJob {
     public static void main(String args[]) {
         Args a = processCmdLine(args);
         int rc;
-        if (a.renderTask)
+        if (a.server)
+            rc = serve(a.configDirectory);
+        else if (a.renderTask)
             rc = render(a);
         else
-            rc = run(a.taskDirectory, a.configDirectory);
+            rc = run(a.taskDirectory, a.configDirectory, a.incremental, a.resume, a.recursive);
         System.exit(rc);
     }
 
@@ -64,7 +68,8 @@ public class RunJob {
         initializeGlobalConfig(args.configDirectory);
         int rc = 0;
         try {
-            job = new Job(LocalFileSystemTaskBuilder.create(args.taskDirectory, args.configDirectory));
+            job = JobRuntime.buildJob(GlobalConfigurationProvider.get().getConfiguration(), args.taskDirectory,
+                    args.configDirectory, args.recursive);
             if (job.hasId(args.renderTaskId)) {
                 System.out.println(job.getId(args.renderTaskId).getRenderedTaskContents());
             } else
@@ -90,33 +95,87 @@ public class RunJob {
      * @author martinr
      */
     static int run(String taskDirectory, String configDirectory) {
+        return run(taskDirectory, configDirectory, false, false);
+    }
+
+    /**
+     * @param taskDirectory   The full path to directory on local filesystem holding tasks.
+     * @param configDirectory The full path to directory containing application/task config file(s).
+     * @param incremental     Skip tasks that are unchanged since they last succeeded (also set by
+     *                        jobrunner.incremental).
+     * @param resume          Carry on from the checkpoint of a previous run, only running the tasks that had
+     *                        not completed.
+     * @return 0 TaskGroup executed (see individual tasks for status).
+     * 1 Error exception occurred.
+     */
+    static int run(String taskDirectory, String configDirectory, boolean incremental, boolean resume) {
+        return run(taskDirectory, configDirectory, incremental, resume, false);
+    }
+
+    /**
+     * @param taskDirectory   The full path to directory on local filesystem holding tasks (or several,
+     *                        separated by {@link File#pathSeparator}).
+     * @param configDirectory The full path to directory containing application/task config file(s).
+     * @param incremental     Skip tasks that are unchanged since they last succeeded (also set by
+     *                        jobrunner.incremental).
+     * @param resume          Carry on from the checkpoint of a previous run, only running the tasks that had
+     *                        not completed.
+     * @param recursive       Include the tasks in sub-directories of the task directories (also set by
+     *                        jobrunner.recursive).
+     * @return 0 TaskGroup executed (see individual tasks for status).
+     * 1 Error exception occurred.
+     */
+    static int run(String taskDirectory, String configDirectory, boolean incremental, boolean resume,
+                   boolean recursive) {
 
         // Initialize out global configuration.
         initializeGlobalConfig(configDirectory);
-        int numThreads = GlobalConfigurationProvider.get().getConfiguration().getInt("jobrunner.threads");
-        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        Config conf = GlobalConfigurationProvider.get().getConfiguration();
         int rc = 0;
-        JobRunnerConfig config;
+        JobRuntime runtime = null;
         try {
-            job = new Job(LocalFileSystemTaskBuilder.create(taskDirectory, configDirectory));
-            config = new JobRunnerConfig(executorService, job);
-            JobRunner jobRunner = new JobRunner(config);
-            jobRunner.execute(ExecutionConfig.NON_TERMINATING);
+            job = JobRuntime.buildJob(conf, taskDirectory, configDirectory, recursive);
+            runtime = new JobRuntime(conf, false);
+            runtime.run(job, taskDirectory, incremental, resume);
         } catch (JobRunnerException e) {
             System.err.println("Exception: " + e);
             rc = 2;
         } finally {
-            try {
-                executorService.shutdownNow();
-                executorService.awaitTermination(1, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                System.err.println("Exception: " + e);
-                rc = 2;
-            }
+            if (runtime != null)
+                runtime.close();
         }
         return rc;
     }
 
+    /**
+     * <h3>{@code RunJob.serve}</h3>
+     * <p>Run a {@link JobServer} until the JVM is stopped.</p>
+     *
+     * @param configDirectory The full path to directory containing application/task config file(s).
+     * @return 2 if the server could not be started.
+     */
+    private static int serve(String configDirectory) {
+        initializeGlobalConfig(configDirectory);
+        JobServer server;
+        try {
+            server = JobServer.start(GlobalConfigurationProvider.get().getConfiguration(), configDirectory);
+        } catch (JobRunnerException e) {
+            System.err.println("Exception: " + e);
+            return 2;
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopped.countDown();
+        }, "jobserver-shutdown"));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
     static Job getJob() {
         return job;
     }
@@ -145,8 +204,7 @@ public class RunJob {
         Option tasks = Option.builder("tasks")
                 .argName("DIR")
                 .hasArg()
-                .required()
-                .desc("Directory containing tasks to be run.")
+                .desc("Directory containing tasks to be run (or several, separated by " + File.pathSeparator + ").")
                 .build();
         Option render = Option.builder("render")
                 .argName("taskId")
@@ -155,6 +213,10 @@ public class RunJob {
                 .desc("Render the given taskId to stdout")
                 .build();
         options.addOption("help", false, "Display help")
+                .addOption("incremental", false, "Skip tasks that are unchanged since they last succeeded.")
+                .addOption("resume", false, "Resume the previous run, only running the tasks that had not completed.")
+                .addOption("recursive", false, "Include the tasks in sub-directories of the task directory.")
+                .addOption("server", false, "Run as a server, accepting jobs over HTTP (see jobrunner.server).")
                 .addOption(confDir).addOption(tasks).addOption(render);
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = null;
@@ -179,15 +241,28 @@ public class RunJob {
             System.exit(2);
         }
 
-        if (!Files.isDirectory(Paths.get(cmd.getOptionValue("tasks")))) {
-            System.err.println("directory " + cmd.getOptionValue("tasks") + " does not exist.");
+        if (cmd.hasOption("server"))
+            return new Args(null, cmd.getOptionValue("conf"), true);
+        if (!cmd.hasOption("tasks")) {
+            System.err.println("Missing required option: tasks");
+            HelpFormatter h = new HelpFormatter();
+            h.printHelp("runjob", options);
             System.exit(2);
         }
+        for (String taskDirectory : cmd.getOptionValue("tasks").split(Pattern.quote(File.pathSeparator))) {
+            if (!Files.isDirectory(Paths.get(taskDirectory))) {
+                System.err.println("directory " + taskDirectory + " does not exist.");
+                System.exit(2);
+            }
+        }
 
         return new Args(cmd.getOptionValue("tasks"),
                 cmd.getOptionValue("conf"),
                 cmd.hasOption("render"),
-                cmd.getOptionValue("render"));
+                cmd.getOptionValue("render"),
+                cmd.hasOption("incremental"),
+                cmd.hasOption("resume"),
+                cmd.hasOption("recursive"));
 
     }
 
@@ -196,12 +271,32 @@ public class RunJob {
         final String configDirectory;
         final boolean renderTask;
         final String renderTaskId;
+        final boolean incremental;
+        final boolean resume;
+        final boolean recursive;
+        final boolean server;
 
-        Args(String taskDirectory, String configDirectory, boolean renderTask, String renderTaskId) {
+        Args(String taskDirectory, String configDirectory, boolean renderTask, String renderTaskId,
+             boolean incremental, boolean resume, boolean recursive) {
             this.taskDirectory = taskDirectory;
             this.configDirectory = configDirectory;
             this.renderTask = renderTask;
             this.renderTaskId = renderTaskId;
+            this.incremental = incremental;
+            this.resume = resume;
+            this.recursive = recursive;
+            this.server = false;
+        }
+
+        Args(String taskDirectory, String configDirectory, boolean server) {
+            this.taskDirectory = taskDirectory;
+            this.configDirectory = configDirectory;
+            this.renderTask = false;
+            this.renderTaskId = null;
+            this.incremental = false;
+            this.resume = false;
+            this.recursive = false;
+            this.server = server;
         }
     }
 
@@ -1,8 +1,11 @@
 package net.martinprobson.jobrunner.monitor;
 
 import net.martinprobson.jobrunner.*;
+import net.martinprobson.jobrunner.common.BaseTask;
 import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
 import net.martinprobson.jobrunner.main.RunJob;
+import net.martinprobson.jobrunner.scheduler.DurationEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,15 +18,54 @@ import java.util.concurrent.TimeUnit;
 public class SimpleMonitor {
 
     public static SimpleMonitor getInstance(Job job) {
-        return new SimpleMonitor(job);
+        return new SimpleMonitor(job, null);
     }
 
-    private SimpleMonitor(Job job) {
+    /**
+     * @param job       The job to monitor.
+     * @param estimator Estimates how long each task takes, used to report the time remaining.
+     *                  May be {@code null}, in which case no estimate is reported.
+     */
+    public static SimpleMonitor getInstance(Job job, DurationEstimator estimator) {
+        return new SimpleMonitor(job, estimator);
+    }
+
+    private SimpleMonitor(Job job, DurationEstimator estimator) {
         this.job = job;
+        this.estimator = estimator;
     }
 
     private void monitor() {
         log.info(job.status());
+        if (estimator != null)
+            log.info(eta(System.currentTimeMillis()));
+    }
+
+    /**
+     * <p>A rough estimate of the time remaining: the outstanding work (estimated duration of the
+     * tasks not yet run plus the expected remainder of the running tasks) spread across the
+     * configured number of threads, but never less than the longest running task still needs.</p>
+     */
+    String eta(long now) {
+        long work = 0;
+        long longest = 0;
+        int outstanding = 0;
+        for (BaseTask task : job) {
+            TaskResult result = task.getTaskResult();
+            long remaining;
+            if (result.getResult() == TaskResult.Result.NOT_EXECUTED)
+                remaining = estimator.estimate(task);
+            else if (result.getResult() == TaskResult.Result.RUNNING)
+                remaining = Math.max(0, estimator.estimate(task) - (now - result.getStartTime()));
+            else
+                continue;
+            outstanding++;
+            work += remaining;
+            longest = Math.max(longest, remaining);
+        }
+        int threads = Math.max(1, GlobalConfigurationProvider.get().getConfiguration().getInt("jobrunner.threads"));
+        long eta = Math.max(longest, work / threads);
+        return "Tasks outstanding: " + outstanding + " Estimated time remaining: " + eta / 1000 + "s";
     }
 
     public void start() {
@@ -38,6 +80,7 @@ public class SimpleMonitor {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleMonitor.class);
     private final Job job;
+    private final DurationEstimator estimator;
     private final ScheduledExecutorService monitorService = Executors.newSingleThreadScheduledExecutor();
 }
 
@@ -0,0 +1,24 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+
+/**
+ * <h3>{@code ConfiguredDurationEstimator}</h3>
+ * <p>Estimates task run time from the {@code scheduling.estimated-duration-ms} configuration value.
+ * The application default (see {@code reference.conf}) can be overridden in a task specific
+ * {@code .conf} file: -</p>
+ * <pre>{@code
+ *   scheduling {
+ *     estimated-duration-ms = 3600000
+ *   }
+ * }</pre>
+ *
+ * @author martinr
+ */
+public class ConfiguredDurationEstimator implements DurationEstimator {
+
+    @Override
+    public long estimate(BaseTask task) {
+        return task.getConfig().getLong("scheduling.estimated-duration-ms");
+    }
+}
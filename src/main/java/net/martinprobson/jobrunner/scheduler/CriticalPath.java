@@ -0,0 +1,97 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+
+import java.util.*;
+
+/**
+ * <h3>{@code CriticalPath}</h3>
+ * <p>Computes, for each task in a group, the length of the longest path from the start of that task
+ * to the end of the job (the task's own estimated duration plus that of its longest chain of
+ * dependent tasks).</p>
+ * <p>Tasks with the longest remaining path are on the critical path, starting them first
+ * minimises the overall run time of the job for a given number of threads.</p>
+ *
+ * @author martinr
+ */
+public final class CriticalPath {
+
+    private final Map<String, Long> remaining;
+
+    private CriticalPath(Map<String, Long> remaining) {
+        this.remaining = remaining;
+    }
+
+    /**
+     * <p>Compute the remaining path length of every task in {@code tasks}.</p>
+     * <p>Dependencies on task ids that are not part of {@code tasks} are ignored (the
+     * {@code JobRunner} reports those).</p>
+     *
+     * @param tasks     The tasks (and their dependencies) to analyse.
+     * @param estimator Supplies the estimated duration of each task.
+     * @return The {@code CriticalPath}.
+     * @throws JobRunnerException If the dependencies contain a cycle.
+     */
+    public static CriticalPath compute(Iterable<BaseTask> tasks, DurationEstimator estimator) throws JobRunnerException {
+        Map<String, BaseTask> byId = new HashMap<>();
+        for (BaseTask task : tasks)
+            byId.put(task.getId(), task);
+
+        // Count the dependents of each task and note the (known) parents of each task.
+        Map<String, Integer> dependents = new HashMap<>();
+        Map<String, List<String>> parents = new HashMap<>();
+        for (BaseTask task : byId.values()) {
+            dependents.putIfAbsent(task.getId(), 0);
+            List<String> known = new ArrayList<>();
+            for (String dep : task.getDependencies())
+                if (byId.containsKey(dep) && !dep.equals(task.getId())) {
+                    known.add(dep);
+                    dependents.merge(dep, 1, Integer::sum);
+                }
+            parents.put(task.getId(), known);
+        }
+
+        // Walk backwards from the tasks nothing depends on, a task's remaining path is
+        // final once all of its dependents have been visited.
+        Map<String, Long> duration = new HashMap<>();
+        Map<String, Long> remaining = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        for (Map.Entry<String, Integer> e : dependents.entrySet()) {
+            duration.put(e.getKey(), estimator.estimate(byId.get(e.getKey())));
+            remaining.put(e.getKey(), duration.get(e.getKey()));
+            if (e.getValue() == 0)
+                ready.add(e.getKey());
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String id = ready.poll();
+            visited++;
+            long length = remaining.get(id);
+            for (String parent : parents.get(id)) {
+                remaining.put(parent, Math.max(remaining.get(parent), duration.get(parent) + length));
+                if (dependents.merge(parent, -1, Integer::sum) == 0)
+                    ready.add(parent);
+            }
+        }
+        if (visited != byId.size())
+            throw new JobRunnerException("CriticalPath: cyclic dependency between tasks");
+        return new CriticalPath(remaining);
+    }
+
+    /**
+     * @param taskId Task id
+     * @return The estimated time (ms) from the start of {@code taskId} to the end of the job, or 0 if
+     * the task is not known.
+     */
+    public long getRemaining(String taskId) {
+        return remaining.getOrDefault(taskId, 0L);
+    }
+
+    /**
+     * @return A {@code Comparator} that orders tasks longest remaining path first.
+     */
+    public Comparator<BaseTask> longestFirst() {
+        return Comparator.comparingLong((BaseTask t) -> getRemaining(t.getId())).reversed();
+    }
+}
@@ -0,0 +1,18 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+
+/**
+ * <h3>{@code DurationEstimator}</h3>
+ * <p>Supplies the expected run time of a task, used to rank tasks when scheduling.</p>
+ *
+ * @author martinr
+ */
+@FunctionalInterface
+public interface DurationEstimator {
+    /**
+     * @param task The task to estimate.
+     * @return The estimated run time of {@code task} in milliseconds.
+     */
+    long estimate(BaseTask task);
+}
@@ -0,0 +1,273 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.TaskDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h3>{@code FairShareTaskDispatcher}</h3>
+ * <p>Shares {@code slots} running tasks between several jobs running at once. Each job registers a
+ * {@link Share} (with a weight and, optionally, a limit on how many of its tasks may run at once) and uses it
+ * as its {@code TaskDispatcher}.</p>
+ * <p>When a slot is free it goes to the share with the fewest running tasks relative to its weight (ties go to
+ * the share whose task has waited longest), so a small job submitted while a large one is running gets its
+ * tasks started straight away rather than behind the large job's queue, while a job on its own can still
+ * use every slot. Within a share, waiting tasks are dispatched in the order given when the share was
+ * registered. The per task type limits apply across all of the shares.</p>
+ * <p>As with {@link PriorityTaskDispatcher}, the thread pool the tasks are submitted to must be able to hold
+ * every ready task.</p>
+ *
+ * @author martinr
+ */
+public class FairShareTaskDispatcher {
+
+    private final int slots;
+    private final Map<String, Integer> typeLimits;
+    private final Map<String, Integer> typeRunning = new HashMap<>();
+    private final List<Share> shares = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int running = 0;
+    private long sequence = 0;
+
+    /**
+     * @param slots      The maximum number of tasks (of all shares) allowed to run concurrently.
+     * @param typeLimits The maximum number of tasks of each task type allowed to run concurrently, task
+     *                   types not in the map are only limited by {@code slots}.
+     */
+    public FairShareTaskDispatcher(int slots, Map<String, Integer> typeLimits) {
+        if (slots < 1)
+            throw new IllegalArgumentException("slots must be > 0");
+        for (Map.Entry<String, Integer> limit : typeLimits.entrySet())
+            if (limit.getValue() < 1)
+                throw new IllegalArgumentException("limit for " + limit.getKey() + " must be > 0");
+        this.slots = slots;
+        this.typeLimits = new HashMap<>(typeLimits);
+    }
+
+    /**
+     * Register a new share, {@link Share#close() close} it once its job has finished.
+     *
+     * @param name           Name of the share (for logging).
+     * @param weight         Weight of the share relative to the others.
+     * @param maxConcurrency The maximum number of tasks of the share allowed to run at once, 0 for no limit
+     *                       (other than {@code slots}).
+     * @param order          The order in which the waiting tasks of the share are dispatched.
+     * @return The {@code Share}
+     */
+    public Share register(String name, double weight, int maxConcurrency, Comparator<BaseTask> order) {
+        if (!(weight > 0))
+            throw new IllegalArgumentException("weight of " + name + " must be > 0");
+        if (maxConcurrency < 0)
+            throw new IllegalArgumentException("max concurrency of " + name + " must be >= 0");
+        Share share = new Share(name, weight, maxConcurrency == 0 ? Integer.MAX_VALUE : maxConcurrency, order);
+        lock.lock();
+        try {
+            shares.add(share);
+        } finally {
+            lock.unlock();
+        }
+        log.debug("Registered share " + name + " weight: " + weight + " max concurrency: " + maxConcurrency);
+        return share;
+    }
+
+    /**
+     * @return The number of tasks (of all shares) that are running.
+     */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of tasks (of all shares) that are ready but waiting for a free slot.
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            int waiting = 0;
+            for (Share share : shares)
+                waiting += share.waiting.size();
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand free slots to waiting tasks, most under served share first. Must be called with the lock held.
+     */
+    private void dispatch() {
+        while (running < slots) {
+            Share best = null;
+            Waiter bestWaiter = null;
+            for (Share share : shares) {
+                if (share.running >= share.maxConcurrency)
+                    continue;
+                Waiter next = share.next();
+                if (next == null)
+                    continue;
+                if (best == null || share.load() < best.load()
+                        || (share.load() == best.load() && next.sequence < bestWaiter.sequence)) {
+                    best = share;
+                    bestWaiter = next;
+                }
+            }
+            if (best == null)
+                return;
+            best.waiting.remove(bestWaiter);
+            bestWaiter.dispatched = true;
+            running++;
+            best.running++;
+            String type = bestWaiter.task.getTaskType();
+            if (type != null && typeLimits.containsKey(type))
+                typeRunning.merge(type, 1, Integer::sum);
+            bestWaiter.condition.signal();
+        }
+    }
+
+    private boolean atTypeLimit(BaseTask task) {
+        String type = task.getTaskType();
+        Integer limit = type == null ? null : typeLimits.get(type);
+        return limit != null && typeRunning.getOrDefault(type, 0) >= limit;
+    }
+
+    /**
+     * Free the slot held by {@code task}. Must be called with the lock held.
+     */
+    private void finished(Share share, BaseTask task) {
+        running--;
+        share.running--;
+        String type = task.getTaskType();
+        if (type != null && typeLimits.containsKey(type))
+            typeRunning.merge(type, -1, Integer::sum);
+    }
+
+    /**
+     * <h3>{@code Share}</h3>
+     * <p>The {@code TaskDispatcher} of one job.</p>
+     */
+    public class Share implements TaskDispatcher, Closeable {
+
+        private final String name;
+        private final double weight;
+        private final int maxConcurrency;
+        private final TreeSet<Waiter> waiting;
+        private int running = 0;
+
+        private Share(String name, double weight, int maxConcurrency, Comparator<BaseTask> order) {
+            this.name = name;
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+            this.waiting = new TreeSet<>(Comparator.comparing((Waiter w) -> w.task, order)
+                    .thenComparingLong(w -> w.sequence));
+        }
+
+        @Override
+        public void acquire(BaseTask task) throws InterruptedException {
+            lock.lock();
+            try {
+                Waiter waiter = new Waiter(task, sequence++, lock.newCondition());
+                waiting.add(waiter);
+                dispatch();
+                try {
+                    while (!waiter.dispatched)
+                        waiter.condition.await();
+                } catch (InterruptedException e) {
+                    if (waiter.dispatched) {
+                        finished(this, task);
+                        dispatch();
+                    } else
+                        waiting.remove(waiter);
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+            log.trace("Dispatched " + task.getId() + " (" + name + ")");
+        }
+
+        @Override
+        public void release(BaseTask task) {
+            lock.lock();
+            try {
+                finished(this, task);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return The number of tasks of this share that are running.
+         */
+        public int getRunning() {
+            lock.lock();
+            try {
+                return running;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Remove the share, once its job has finished.
+         */
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                shares.remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return The running tasks relative to the weight. Must be called with the lock held.
+         */
+        private double load() {
+            return running / weight;
+        }
+
+        /**
+         * @return The first waiting task (in order) whose task type is not at its limit, {@code null} if there
+         * is none. Must be called with the lock held.
+         */
+        private Waiter next() {
+            for (Waiter waiter : waiting)
+                if (!atTypeLimit(waiter.task))
+                    return waiter;
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class Waiter {
+        final BaseTask task;
+        final long sequence;
+        final Condition condition;
+        boolean dispatched = false;
+
+        Waiter(BaseTask task, long sequence, Condition condition) {
+            this.task = task;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FairShareTaskDispatcher.class);
+}
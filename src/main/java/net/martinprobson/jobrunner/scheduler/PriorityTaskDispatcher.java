@@ -0,0 +1,153 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.TaskDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h3>{@code PriorityTaskDispatcher}</h3>
+ * <p>A {@code TaskDispatcher} that allows at most {@code slots} tasks to run at once. Tasks that are
+ * ready but waiting for a slot are queued and dispatched in the order defined by a
+ * {@code Comparator} (ties are dispatched first come, first served).</p>
+ * <p>Optionally the number of tasks of a given task type (for example {@code spark-jar}) that may run
+ * at once can be limited further. A waiting task whose type is at its limit is passed over in favour of
+ * the next task in order, it does not hold up tasks of other types.</p>
+ * <p>The thread pool that Dexecutor submits tasks to must be able to hold every ready task
+ * (for example a cached thread pool); the dispatcher, not the pool, bounds how many actually run.</p>
+ *
+ * @author martinr
+ */
+public class PriorityTaskDispatcher implements TaskDispatcher {
+
+    private final int slots;
+    private final Map<String, Integer> typeLimits;
+    private final Map<String, Integer> typeRunning = new HashMap<>();
+    private final TreeSet<Waiter> waiting;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int running = 0;
+    private long sequence = 0;
+
+    /**
+     * @param slots The maximum number of tasks allowed to run concurrently.
+     * @param order The order in which waiting tasks are dispatched.
+     */
+    public PriorityTaskDispatcher(int slots, Comparator<BaseTask> order) {
+        this(slots, Collections.emptyMap(), order);
+    }
+
+    /**
+     * @param slots      The maximum number of tasks allowed to run concurrently.
+     * @param typeLimits The maximum number of tasks of each task type allowed to run concurrently, task
+     *                   types not in the map are only limited by {@code slots}.
+     * @param order      The order in which waiting tasks are dispatched.
+     */
+    public PriorityTaskDispatcher(int slots, Map<String, Integer> typeLimits, Comparator<BaseTask> order) {
+        if (slots < 1)
+            throw new IllegalArgumentException("slots must be > 0");
+        for (Map.Entry<String, Integer> limit : typeLimits.entrySet())
+            if (limit.getValue() < 1)
+                throw new IllegalArgumentException("limit for " + limit.getKey() + " must be > 0");
+        this.slots = slots;
+        this.typeLimits = new HashMap<>(typeLimits);
+        this.waiting = new TreeSet<>(Comparator.comparing((Waiter w) -> w.task, order)
+                .thenComparingLong(w -> w.sequence));
+    }
+
+    @Override
+    public void acquire(BaseTask task) throws InterruptedException {
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(task, sequence++, lock.newCondition());
+            waiting.add(waiter);
+            dispatch();
+            try {
+                while (!waiter.dispatched)
+                    waiter.condition.await();
+            } catch (InterruptedException e) {
+                if (waiter.dispatched) {
+                    finished(task);
+                    dispatch();
+                } else
+                    waiting.remove(waiter);
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.trace("Dispatched " + task.getId());
+    }
+
+    @Override
+    public void release(BaseTask task) {
+        lock.lock();
+        try {
+            finished(task);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of tasks that are ready but waiting for a free slot.
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand free slots to the highest priority waiting tasks whose task type is not at its limit.
+     * Must be called with the lock held.
+     */
+    private void dispatch() {
+        Iterator<Waiter> it = waiting.iterator();
+        while (running < slots && it.hasNext()) {
+            Waiter next = it.next();
+            String type = next.task.getTaskType();
+            Integer limit = type == null ? null : typeLimits.get(type);
+            if (limit != null && typeRunning.getOrDefault(type, 0) >= limit)
+                continue;
+            it.remove();
+            next.dispatched = true;
+            running++;
+            if (limit != null)
+                typeRunning.merge(type, 1, Integer::sum);
+            next.condition.signal();
+        }
+    }
+
+    /**
+     * Free the slot held by {@code task}. Must be called with the lock held.
+     */
+    private void finished(BaseTask task) {
+        running--;
+        String type = task.getTaskType();
+        if (type != null && typeLimits.containsKey(type))
+            typeRunning.merge(type, -1, Integer::sum);
+    }
+
+    private static class Waiter {
+        final BaseTask task;
+        final long sequence;
+        final Condition condition;
+        boolean dispatched = false;
+
+        Waiter(BaseTask task, long sequence, Condition condition) {
+            this.task = task;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PriorityTaskDispatcher.class);
+}
@@ -0,0 +1,378 @@
+package net.martinprobson.jobrunner.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigUtil;
+import net.martinprobson.jobrunner.Job;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.main.JobRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * <h3>{@code JobServer}</h3>
+ * <p>A long running job runner that accepts jobs over HTTP, so that the start up cost (JVM start, loading
+ * the configuration, the task plugins, database connection pools, Kerberos login) is paid once rather than
+ * by every job. The jobs run on one shared {@link JobRuntime}, so they share its thread pool,
+ * {@code jobrunner.threads} and the per task type limits.</p>
+ * <p>The global configuration is the server's, loaded once at start up. The configuration directory of a
+ * job only supplies its task config files (an {@code application.conf} there is not read).</p>
+ * <ul>
+ * <li>{@code POST /jobs} - submit a job. Parameters (query string or form body): {@code tasks} (required),
+ * {@code conf}, {@code incremental}, {@code resume}, {@code recursive}, {@code tenant}, {@code weight},
+ * {@code max-concurrency} (see {@code jobrunner.fair-share}) and {@code wait} (reply once the job has
+ * finished rather than straight away).</li>
+ * <li>{@code GET /jobs} - list the jobs (queued, running and recently finished).</li>
+ * <li>{@code GET /jobs/<id>} - the state of a job and the result of each of its tasks.</li>
+ * </ul>
+ * <p>Replies are plain text, {@code key=value} per line.</p>
+ *
+ * @author martinr
+ */
+public class JobServer implements Closeable {
+
+    private final JobRuntime runtime;
+    private final String configDirectory;
+    private final int retain;
+    private final ExecutorService jobs;
+    private final HttpServer http;
+    private final AtomicLong ids = new AtomicLong();
+    /**
+     * Submissions in the order submitted, finished ones are dropped (oldest first) beyond {@code retain}.
+     */
+    private final LinkedHashMap<String, Submission> submissions = new LinkedHashMap<>();
+
+    /**
+     * @param runtime         A shared {@code JobRuntime}, closed with the server.
+     * @param configDirectory The configuration directory used for jobs that are submitted without one.
+     * @param host            Address to listen on.
+     * @param port            Port to listen on (0 - any free port).
+     * @param maxJobs         The maximum number of jobs to run at once, further jobs are queued.
+     * @param retain          The number of finished jobs to remember.
+     * @throws JobRunnerException If the server cannot be started.
+     */
+    public JobServer(JobRuntime runtime, String configDirectory, String host, int port, int maxJobs, int retain)
+            throws JobRunnerException {
+        if (!runtime.isShared())
+            throw new JobRunnerException("JobServer: requires a shared JobRuntime");
+        if (maxJobs < 1)
+            throw new JobRunnerException("jobrunner.server.max-jobs must be > 0");
+        this.runtime = runtime;
+        this.configDirectory = configDirectory;
+        this.retain = retain;
+        this.jobs = Executors.newFixedThreadPool(maxJobs, threadFactory("jobserver-job"));
+        try {
+            this.http = HttpServer.create(new InetSocketAddress(host, port), 0);
+        } catch (IOException e) {
+            jobs.shutdownNow();
+            throw new JobRunnerException("JobServer: cannot listen on " + host + ":" + port, e);
+        }
+        http.createContext("/jobs", this::handle);
+        http.setExecutor(Executors.newCachedThreadPool(threadFactory("jobserver-http")));
+        http.start();
+        log.info("Job server listening on " + http.getAddress() + ", running up to " + maxJobs + " jobs at once");
+    }
+
+    /**
+     * Start a job server configured by {@code jobrunner.server}.
+     *
+     * @param conf            The global configuration.
+     * @param configDirectory The configuration directory used for jobs that are submitted without one.
+     * @return The {@code JobServer}
+     * @throws JobRunnerException If the server cannot be started.
+     */
+    public static JobServer start(Config conf, String configDirectory) throws JobRunnerException {
+        JobRuntime runtime = new JobRuntime(conf, true);
+        try {
+            return new JobServer(runtime, configDirectory, conf.getString("jobrunner.server.host"),
+                    conf.getInt("jobrunner.server.port"), conf.getInt("jobrunner.server.max-jobs"),
+                    conf.getInt("jobrunner.server.retain"));
+        } catch (JobRunnerException e) {
+            runtime.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * Queue a job to run.
+     *
+     * @param taskDirectory   The task directory (or several, separated by {@link File#pathSeparator}).
+     * @param configDirectory The directory holding the task config files, {@code null} for the server's.
+     * @param incremental     Skip tasks that are unchanged since they last succeeded.
+     * @param resume          Carry on from the checkpoint of a previous run.
+     * @param recursive       Include the tasks in sub-directories of the task directories.
+     * @return The {@code Submission}
+     * @throws JobRunnerException If a directory does not exist, or a job for the same task directory is
+     *                            already queued or running.
+     */
+    public Submission submit(String taskDirectory, String configDirectory, boolean incremental, boolean resume,
+                             boolean recursive) throws JobRunnerException {
+        return submit(taskDirectory, configDirectory, incremental, resume, recursive, null, null, null);
+    }
+
+    /**
+     * Queue a job to run, with a given share of the running tasks. The weight and maximum concurrency are
+     * taken, in order, from the arguments, {@code jobrunner.fair-share.tenants.<tenant>} and the
+     * {@code jobrunner.fair-share} defaults.
+     *
+     * @param taskDirectory   The task directory (or several, separated by {@link File#pathSeparator}).
+     * @param configDirectory The directory holding the task config files, {@code null} for the server's.
+     * @param incremental     Skip tasks that are unchanged since they last succeeded.
+     * @param resume          Carry on from the checkpoint of a previous run.
+     * @param recursive       Include the tasks in sub-directories of the task directories.
+     * @param tenant          The tenant the job is run for, may be {@code null}.
+     * @param weight          Weight of the job's share, may be {@code null}.
+     * @param maxConcurrency  The maximum number of the job's tasks allowed to run at once (0 - no limit), may
+     *                        be {@code null}.
+     * @return The {@code Submission}
+     * @throws JobRunnerException If a directory does not exist, the weight or maximum concurrency is invalid,
+     *                            or a job for the same task directory is already queued or running.
+     */
+    public Submission submit(String taskDirectory, String configDirectory, boolean incremental, boolean resume,
+                             boolean recursive, String tenant, Double weight, Integer maxConcurrency)
+            throws JobRunnerException {
+        Config fairShare = runtime.getConfig().getConfig("jobrunner.fair-share");
+        Config tenantConf = tenant != null && fairShare.hasPath("tenants." + ConfigUtil.quoteString(tenant))
+                ? fairShare.getConfig("tenants." + ConfigUtil.quoteString(tenant)) : ConfigFactory.empty();
+        if (weight == null)
+            weight = tenantConf.hasPath("weight") ? tenantConf.getDouble("weight") : fairShare.getDouble("default-weight");
+        if (maxConcurrency == null)
+            maxConcurrency = tenantConf.hasPath("max-concurrency") ? tenantConf.getInt("max-concurrency")
+                    : fairShare.getInt("default-max-concurrency");
+        if (!(weight > 0))
+            throw new JobRunnerException("weight must be > 0");
+        if (maxConcurrency < 0)
+            throw new JobRunnerException("max-concurrency must be >= 0");
+        String confDir = configDirectory == null || configDirectory.isEmpty() ? this.configDirectory : configDirectory;
+        for (String dir : taskDirectory.split(Pattern.quote(File.pathSeparator)))
+            if (!Files.isDirectory(Paths.get(dir)))
+                throw new JobRunnerException("directory " + dir + " does not exist.");
+        if (!Files.isDirectory(Paths.get(confDir)))
+            throw new JobRunnerException("directory " + confDir + " does not exist.");
+        Submission submission;
+        synchronized (submissions) {
+            // Two runs of the same tasks at once would share their checkpoint and incremental state.
+            for (Submission s : submissions.values())
+                if (!s.isDone() && s.getTaskDirectory().equals(taskDirectory))
+                    throw new JobRunnerException("A job for " + taskDirectory + " is already queued or running (id " +
+                            s.getId() + ")");
+            submission = new Submission(String.valueOf(ids.incrementAndGet()), taskDirectory, confDir, incremental,
+                    resume, recursive, tenant, weight, maxConcurrency);
+            submissions.put(submission.getId(), submission);
+            expire();
+        }
+        if (!confDir.equals(this.configDirectory) && Files.exists(Paths.get(confDir, "application.conf")))
+            log.warn("Job " + submission.getId() + ": " + Paths.get(confDir, "application.conf") +
+                    " is ignored, the server's configuration is used");
+        jobs.execute(() -> run(submission));
+        log.info("Job " + submission.getId() + " submitted: " + taskDirectory);
+        return submission;
+    }
+
+    /**
+     * @param id Submission id.
+     * @return The submission, {@code null} if there is no such submission (or it has been forgotten).
+     */
+    public Submission get(String id) {
+        synchronized (submissions) {
+            return submissions.get(id);
+        }
+    }
+
+    /**
+     * @return The submissions queued, running and recently finished, oldest first.
+     */
+    public List<Submission> list() {
+        synchronized (submissions) {
+            return new ArrayList<>(submissions.values());
+        }
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        ((ExecutorService) http.getExecutor()).shutdownNow();
+        jobs.shutdownNow();
+        runtime.close();
+        try {
+            jobs.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Job server stopped");
+    }
+
+    private void run(Submission submission) {
+        try {
+            Job job = JobRuntime.buildJob(runtime.getConfig(), submission.getTaskDirectory(),
+                    submission.getConfigDirectory(), submission.isRecursive());
+            submission.started(job);
+            log.info("Job " + submission.getId() + " started");
+            runtime.run(job, submission.getTaskDirectory(), submission.isIncremental(), submission.isResume(),
+                    "job " + submission.getId(), submission.getWeight(), submission.getMaxConcurrency());
+            // Finish and expire as one, so anyone woken by the job finishing sees the old jobs expired.
+            synchronized (submissions) {
+                submission.finished();
+                expire();
+            }
+            log.info("Job " + submission.getId() + " finished: " + job.status());
+        } catch (JobRunnerException | RuntimeException e) {
+            log.error("Job " + submission.getId() + " failed", e);
+            synchronized (submissions) {
+                submission.failed(e.toString());
+                expire();
+            }
+        }
+    }
+
+    /**
+     * Forget the oldest finished submissions beyond {@code retain}. Must be called holding the
+     * {@code submissions} lock.
+     */
+    private void expire() {
+        int finished = 0;
+        for (Submission s : submissions.values())
+            if (s.isDone())
+                finished++;
+        Iterator<Submission> it = submissions.values().iterator();
+        while (finished > retain && it.hasNext()) {
+            if (it.next().isDone()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/jobs") || path.equals("/jobs/")) {
+                if (method.equals("POST"))
+                    handleSubmit(exchange);
+                else if (method.equals("GET")) {
+                    StringBuilder sb = new StringBuilder();
+                    for (Submission s : list())
+                        sb.append(s).append('\n');
+                    reply(exchange, 200, sb.toString());
+                } else
+                    reply(exchange, 405, "error=Method not allowed\n");
+            } else if (method.equals("GET")) {
+                Submission submission = get(path.substring("/jobs/".length()));
+                if (submission == null)
+                    reply(exchange, 404, "error=No such job\n");
+                else
+                    reply(exchange, 200, submission.describe());
+            } else
+                reply(exchange, 405, "error=Method not allowed\n");
+        } catch (RuntimeException e) {
+            log.error("Job server: error handling " + exchange.getRequestURI(), e);
+            reply(exchange, 500, "error=" + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleSubmit(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parameters(exchange.getRequestURI().getRawQuery());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                body.write(buffer, 0, n);
+        }
+        params.putAll(parameters(new String(body.toByteArray(), StandardCharsets.UTF_8)));
+        String tasks = params.get("tasks");
+        if (tasks == null || tasks.isEmpty()) {
+            reply(exchange, 400, "error=Missing parameter: tasks\n");
+            return;
+        }
+        Submission submission;
+        try {
+            submission = submit(tasks, params.get("conf"), flag(params, "incremental"), flag(params, "resume"),
+                    flag(params, "recursive"), params.get("tenant"),
+                    params.containsKey("weight") ? Double.valueOf(params.get("weight")) : null,
+                    params.containsKey("max-concurrency") ? Integer.valueOf(params.get("max-concurrency")) : null);
+        } catch (NumberFormatException e) {
+            reply(exchange, 400, "error=Invalid number: " + e.getMessage() + "\n");
+            return;
+        } catch (JobRunnerException e) {
+            reply(exchange, 400, "error=" + e.getMessage() + "\n");
+            return;
+        }
+        if (flag(params, "wait")) {
+            try {
+                submission.await(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reply(exchange, 200, submission.describe());
+        } else
+            reply(exchange, 202, submission.describe());
+    }
+
+    private static boolean flag(Map<String, String> params, String name) {
+        String value = params.get(name);
+        return value != null && (value.isEmpty() || Boolean.parseBoolean(value));
+    }
+
+    private static Map<String, String> parameters(String encoded) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (encoded == null || encoded.isEmpty())
+            return params;
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty())
+                continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            params.put(key.trim(), value.trim());
+        }
+        return params;
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(JobServer.class);
+}
@@ -0,0 +1,181 @@
+package net.martinprobson.jobrunner.server;
+
+import net.martinprobson.jobrunner.Job;
+import net.martinprobson.jobrunner.common.BaseTask;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3>{@code Submission}</h3>
+ * <p>A job submitted to the {@link JobServer}, and how far it has got.</p>
+ *
+ * @author martinr
+ */
+public class Submission {
+
+    public enum State {QUEUED, RUNNING, FINISHED, ERROR}
+
+    private final String id;
+    private final String taskDirectory;
+    private final String configDirectory;
+    private final boolean incremental;
+    private final boolean resume;
+    private final boolean recursive;
+    private final String tenant;
+    private final double weight;
+    private final int maxConcurrency;
+    private final long submitted = System.currentTimeMillis();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile State state = State.QUEUED;
+    private volatile Job job;
+    private volatile String error;
+    private volatile long started;
+    private volatile long ended;
+
+    Submission(String id, String taskDirectory, String configDirectory, boolean incremental, boolean resume,
+               boolean recursive, String tenant, double weight, int maxConcurrency) {
+        this.id = id;
+        this.taskDirectory = taskDirectory;
+        this.configDirectory = configDirectory;
+        this.incremental = incremental;
+        this.resume = resume;
+        this.recursive = recursive;
+        this.tenant = tenant;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTaskDirectory() {
+        return taskDirectory;
+    }
+
+    public String getConfigDirectory() {
+        return configDirectory;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * @return The tenant the job was submitted for, {@code null} if none.
+     */
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * @return The weight of the job's share of the running tasks.
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return The maximum number of the job's tasks allowed to run at once (0 - no limit).
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return The job, {@code null} until it has been built.
+     */
+    public Job getJob() {
+        return job;
+    }
+
+    /**
+     * @return Why the job could not be run ({@code ERROR} state), otherwise {@code null}.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return {@code true} once the job has finished (or could not be run).
+     */
+    public boolean isDone() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * Wait for the job to finish.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit    Unit of {@code timeout}.
+     * @return {@code true} if the job finished.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    void started(Job job) {
+        this.job = job;
+        this.started = System.currentTimeMillis();
+        this.state = State.RUNNING;
+    }
+
+    void finished() {
+        this.ended = System.currentTimeMillis();
+        this.state = State.FINISHED;
+        finished.countDown();
+    }
+
+    void failed(String error) {
+        this.error = error;
+        this.ended = System.currentTimeMillis();
+        this.state = State.ERROR;
+        finished.countDown();
+    }
+
+    /**
+     * @return The state of the submission and (once built) the result of each task of the job, one
+     * {@code key=value} per line.
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("id=").append(id).append('\n');
+        sb.append("state=").append(state).append('\n');
+        sb.append("tasks=").append(taskDirectory).append('\n');
+        if (tenant != null)
+            sb.append("tenant=").append(tenant).append('\n');
+        sb.append("weight=").append(weight).append('\n');
+        sb.append("max-concurrency=").append(maxConcurrency).append('\n');
+        sb.append("submitted=").append(submitted).append('\n');
+        if (started != 0)
+            sb.append("started=").append(started).append('\n');
+        if (ended != 0)
+            sb.append("ended=").append(ended).append('\n');
+        if (error != null)
+            sb.append("error=").append(error.replace('\n', ' ')).append('\n');
+        Job j = job;
+        if (j != null)
+            for (BaseTask task : j)
+                sb.append("task.").append(task.getId()).append('=').append(task.getTaskResult().getResult()).append('\n');
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + state + " " + taskDirectory;
+    }
+}
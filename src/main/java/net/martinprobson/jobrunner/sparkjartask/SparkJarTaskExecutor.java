@@ -10,7 +10,8 @@ import java.util.List;
  * <p>{@code SparkJarTaskExecutor}</p>
  *
  * <p>Responsible for executing a jar file.</p>
- * <p>Code is executed via {@code spark-submit}</p>
+ * <p>Code is executed via {@code spark-submit}, or with {@code spark-jar.session.enabled} in a long running
+ * driver session started with {@code spark-jar.session.command}.</p>
  *
  * @author martinr
  */
@@ -66,4 +67,9 @@ class SparkJarTaskExecutor extends AbstractExternalCmdExecutor implements TaskEx
         args.add(task.getTaskFile().getAbsolutePath());
         return args.toArray(new String[0]);
     }
+
+    @Override
+    protected String getSessionConfigPath() {
+        return "spark-jar.session";
+    }
 }
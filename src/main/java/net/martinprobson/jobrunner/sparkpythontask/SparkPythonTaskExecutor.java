@@ -21,14 +21,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * <p>{@code SparkPythonTaskExecutor}</p>
  *
  * <p>Responsible for executing Python Spark code via a Spark connection.</p>
- * <p>Code is executed via {@code spark-submit}</p>
+ * <p>Code is executed via {@code spark-submit}, or with {@code spark-python.session.enabled} in a long running
+ * driver session (by default the bundled {@code session_driver.py}, started with {@code spark-submit}).</p>
  *
  * @author martinr
  */
@@ -84,6 +88,43 @@ class SparkPythonTaskExecutor extends AbstractExternalCmdExecutor implements Tas
         return args.toArray(new String[0]);
     }
 
+    @Override
+    protected String getSessionConfigPath() {
+        return "spark-python.session";
+    }
+
+    /**
+     * <p>The configured session command, or {@code spark-submit} (with the same arguments as a task) running
+     * the bundled session driver.</p>
+     */
+    @Override
+    protected List<String> getSessionCommand(BaseTask task, String[] args) throws JobRunnerException {
+        List<String> command = super.getSessionCommand(task, args);
+        if (command != null)
+            return command;
+        command = new ArrayList<>();
+        command.add(getCmd());
+        command.addAll(Arrays.asList(args).subList(0, args.length - 1));
+        command.add(sessionDriver().getAbsolutePath());
+        return command;
+    }
+
+    private static File sessionDriver;
+
+    private static synchronized File sessionDriver() throws JobRunnerException {
+        if (sessionDriver == null) {
+            try (InputStream in = SparkPythonTaskExecutor.class.getResourceAsStream("session_driver.py")) {
+                File file = File.createTempFile("spark-python-session", ".py");
+                file.deleteOnExit();
+                Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                sessionDriver = file;
+            } catch (IOException e) {
+                throw new JobRunnerException("Error extracting session_driver.py", e);
+            }
+        }
+        return sessionDriver;
+    }
+
     /**
      * <p>Get temp file name prefix</p>
      */
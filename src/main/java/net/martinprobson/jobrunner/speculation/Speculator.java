@@ -0,0 +1,224 @@
+package net.martinprobson.jobrunner.speculation;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskAttempt;
+import net.martinprobson.jobrunner.common.TaskExecutor;
+import net.martinprobson.jobrunner.common.TaskSpeculator;
+import net.martinprobson.jobrunner.history.TaskHistoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h3>{@code Speculator}</h3>
+ * <p>A {@link TaskSpeculator} that decides a task is straggling from its previous run times, held in a
+ * {@link TaskHistoryStore}.</p>
+ * <p>Only tasks that set {@code speculation.idempotent} are speculated, and only once they have some history.
+ * Such a task is run as a {@link TaskAttempt} on a thread of the speculator's own. If it is still running
+ * {@code speculation.multiplier} times the {@code speculation.percentile} of its previous successful run times
+ * later (and at least {@code speculation.min-runtime}), a second (speculative) attempt is started. The attempt
+ * that succeeds first is used, the other is cancelled (killing its process) and its thread interrupted. The
+ * speculator waits (up to {@code kill-timeout}) for the cancelled attempt to stop, so that it cannot touch
+ * the task once it has finished.</p>
+ *
+ * @author martinr
+ */
+public class Speculator implements TaskSpeculator, Closeable {
+
+    private final TaskHistoryStore history;
+    private final long killTimeoutMs;
+    private final ExecutorService attempts;
+    /**
+     * The number of speculative attempts started, and the number of those that were used.
+     */
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger won = new AtomicInteger();
+
+    /**
+     * @param history       The run history.
+     * @param killTimeoutMs How long (ms) to wait for a cancelled attempt to stop.
+     */
+    public Speculator(TaskHistoryStore history, long killTimeoutMs) {
+        this.history = history;
+        this.killTimeoutMs = killTimeoutMs;
+        AtomicInteger threads = new AtomicInteger();
+        this.attempts = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "speculation-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param conf    The global configuration.
+     * @param history The run history.
+     * @return A {@code Speculator} set up from {@code jobrunner.speculation}.
+     */
+    public static Speculator fromConfig(Config conf, TaskHistoryStore history) {
+        return new Speculator(history, conf.getDuration("jobrunner.speculation.kill-timeout", TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @param task The task.
+     * @return How long (ms) the task may run before a speculative attempt is started, -1 if it is never
+     * speculated.
+     * @throws JobRunnerException If the task's {@code speculation} config is invalid.
+     */
+    public long threshold(BaseTask task) throws JobRunnerException {
+        try {
+            Config config = task.getConfig().getConfig("speculation");
+            if (!config.getBoolean("idempotent"))
+                return -1;
+            OptionalLong percentile = history.percentile(task, config.getDouble("percentile"));
+            if (!percentile.isPresent())
+                return -1;
+            return Math.max(config.getDuration("min-runtime", TimeUnit.MILLISECONDS),
+                    (long) (percentile.getAsLong() * config.getDouble("multiplier")));
+        } catch (ConfigException e) {
+            throw new JobRunnerException("Task: " + task.getId() + " invalid speculation config: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public TaskResult execute(BaseTask task, TaskExecutor executor) throws JobRunnerException {
+        long threshold = threshold(task);
+        if (threshold < 0)
+            return executor.executeTask(task);
+        CompletionService<TaskResult> finished = new ExecutorCompletionService<>(attempts);
+        Attempt primary = new Attempt(new TaskAttempt(task, false), executor, finished);
+        Attempt speculative = null;
+        try {
+            Future<TaskResult> first = finished.poll(threshold, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                log.warn("Task: " + task.getId() + " has been running for " + threshold +
+                        "ms, starting a speculative attempt");
+                started.incrementAndGet();
+                speculative = new Attempt(new TaskAttempt(task, true), executor, finished);
+                first = finished.take();
+                if (failed(first)) {
+                    // The other attempt may yet succeed.
+                    Attempt other = first == primary.future ? speculative : primary;
+                    log.warn("Task: " + task.getId() + " attempt failed, waiting for the " + describe(other) +
+                            " attempt");
+                    first = finished.take();
+                }
+                if (first == speculative.future && !failed(first)) {
+                    won.incrementAndGet();
+                    log.info("Task: " + task.getId() + " speculative attempt finished first");
+                }
+            }
+            return result(first);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobRunnerException("Task: " + task.getId() + " interrupted", e);
+        } finally {
+            stop(task, primary);
+            if (speculative != null)
+                stop(task, speculative);
+        }
+    }
+
+    /**
+     * @return The number of speculative attempts started.
+     */
+    public int getStarted() {
+        return started.get();
+    }
+
+    /**
+     * @return The number of speculative attempts that finished (successfully) before the original attempt.
+     */
+    public int getWon() {
+        return won.get();
+    }
+
+    @Override
+    public void close() {
+        attempts.shutdownNow();
+    }
+
+    /**
+     * Cancel {@code attempt} if it is still running, and wait for it to stop.
+     */
+    private void stop(BaseTask task, Attempt attempt) {
+        if (attempt.stopped.getCount() == 0)
+            return;
+        log.info("Task: " + task.getId() + " cancelling the " + describe(attempt) + " attempt");
+        attempt.attempt.cancel();
+        attempt.future.cancel(true);
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (!attempt.stopped.await(killTimeoutMs, TimeUnit.MILLISECONDS))
+                log.warn("Task: " + task.getId() + " " + describe(attempt) + " attempt did not stop within " +
+                        killTimeoutMs + "ms");
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean failed(Future<TaskResult> future) {
+        try {
+            future.get();
+            return false;
+        } catch (ExecutionException | InterruptedException e) {
+            return true;
+        }
+    }
+
+    private static TaskResult result(Future<TaskResult> future) throws JobRunnerException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JobRunnerException)
+                throw (JobRunnerException) e.getCause();
+            throw new JobRunnerException(String.valueOf(e.getCause().getMessage()), e.getCause());
+        }
+    }
+
+    private static String describe(Attempt attempt) {
+        return attempt.attempt.isSpeculative() ? "speculative" : "original";
+    }
+
+    /**
+     * A {@code TaskAttempt} running on one of the speculator's threads.
+     */
+    private static class Attempt {
+        final TaskAttempt attempt;
+        final Future<TaskResult> future;
+        /**
+         * Counted down once the attempt has stopped running ({@code future} is done as soon as it is cancelled).
+         */
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        Attempt(TaskAttempt attempt, TaskExecutor executor, CompletionService<TaskResult> finished) {
+            this.attempt = attempt;
+            this.future = finished.submit(() -> {
+                try {
+                    return attempt.run(executor);
+                } finally {
+                    stopped.countDown();
+                }
+            });
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(Speculator.class);
+}
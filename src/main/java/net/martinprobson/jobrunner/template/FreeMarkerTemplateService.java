@@ -2,28 +2,43 @@ package net.martinprobson.jobrunner.template;
 
 
 import com.typesafe.config.Config;
-import com.typesafe.config.ConfigValue;
+import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.Template;
+import freemarker.template.TemplateBooleanModel;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static freemarker.template.Configuration.VERSION_2_3_28;
 
 /**
- * A mock template service that does nothing, it simply returns the content unchanged.
+ * <h3>{@code FreeMarkerTemplateService}</h3>
+ * <p>Applies the fields in the {@code template} section of the configuration to the content, using FreeMarker
+ * (with square bracket syntax, for example {@code [=queue]}).</p>
+ * <p>Template fields can be any configuration value (strings, numbers, booleans, lists or nested objects,
+ * nested fields are referred to as {@code [=a.b]}).</p>
+ * <p>Compiled templates (keyed by id and content) and the template fields of each {@code Config} are cached,
+ * in LRU caches of at most {@code jobrunner.template-cache-size} entries that are shared by all instances, so
+ * rendering the same task again does not parse the template or the configuration again.</p>
  */
 public class FreeMarkerTemplateService implements TemplateService {
 
     @SuppressWarnings("unused")
     private static final Logger log = LoggerFactory.getLogger(FreeMarkerTemplateService.class);
     private static final freemarker.template.Configuration freeMarkerConfig;
+    private static final Map<TemplateKey, CompiledTemplate> templates;
+    private static final Map<ConfigKey, Map<String, Object>> models;
 
     static {
         freeMarkerConfig = new freemarker.template.Configuration(VERSION_2_3_28);
@@ -31,39 +46,172 @@ public class FreeMarkerTemplateService implements TemplateService {
         freeMarkerConfig.setTemplateExceptionHandler(TemplateExceptionHandler.DEBUG_HANDLER);
         freeMarkerConfig.setInterpolationSyntax(freemarker.template.Configuration.SQUARE_BRACKET_INTERPOLATION_SYNTAX);
         freeMarkerConfig.setTagSyntax(freemarker.template.Configuration.SQUARE_BRACKET_TAG_SYNTAX);
+        // Numbers are rendered as code expects them (10000, not the locale's 10,000), and booleans as true/false
+        // (FreeMarker 2.3.28 has no boolean_format that does this, see SqlObjectWrapper).
+        freeMarkerConfig.setNumberFormat("computer");
+        freeMarkerConfig.setObjectWrapper(new SqlObjectWrapper());
+        int cacheSize = GlobalConfigurationProvider.get().getConfiguration().getInt("jobrunner.template-cache-size");
+        templates = lruCache(cacheSize);
+        models = lruCache(cacheSize);
     }
 
     @Override
     public String apply(String id, String content, Config configuration) throws net.martinprobson.jobrunner.template.TemplateException {
-        String templatedContent;
-        Map<String,String> templateVars = new HashMap<>();
-        if (configuration.hasPath("template")) {
-            for (Map.Entry<String, ConfigValue> m : configuration.getConfig("template").entrySet())
-                templateVars.put(m.getKey(), (String) m.getValue().unwrapped());
-        }
+        Map<String, Object> templateVars = model(configuration);
         if (templateVars.isEmpty())
-            templatedContent = content;
-        else {
-            Template template;
-            try {
-                template = new Template(id, content, freeMarkerConfig);
-                StringWriter stringWriter = new StringWriter();
-                template.process(templateVars, stringWriter);
-                templatedContent =stringWriter.toString();
-            } catch (IOException e) {
-                throw new net.martinprobson.jobrunner.template.TemplateException("IOError", e);
-            } catch (TemplateException e) {
-                throw new net.martinprobson.jobrunner.template.TemplateException("TemplateException", e);
+            return content;
+        try {
+            StringWriter stringWriter = new StringWriter();
+            template(id, content).process(templateVars, stringWriter);
+            return stringWriter.toString();
+        } catch (IOException e) {
+            throw new net.martinprobson.jobrunner.template.TemplateException("IOError", e);
+        } catch (TemplateException e) {
+            throw new net.martinprobson.jobrunner.template.TemplateException("TemplateException", e);
+        }
+    }
+
+    /**
+     * @return The (cached) compiled template for {@code content}.
+     */
+    private static Template template(String id, String content) throws IOException {
+        TemplateKey key = new TemplateKey(id, content);
+        CompiledTemplate compiled;
+        synchronized (templates) {
+            compiled = templates.get(key);
+        }
+        // The key only holds the hash of the content, so check it really is the same content.
+        if (compiled != null && compiled.content.equals(content))
+            return compiled.template;
+        // A Template can be shared by threads once it has been built.
+        Template template = new Template(id, content, freeMarkerConfig);
+        synchronized (templates) {
+            templates.put(key, new CompiledTemplate(content, template));
+        }
+        return template;
+    }
+
+    /**
+     * @return The (cached) template fields held in {@code configuration}, unwrapped to plain Java objects.
+     */
+    private static Map<String, Object> model(Config configuration) {
+        ConfigKey key = new ConfigKey(configuration);
+        synchronized (models) {
+            Map<String, Object> model = models.get(key);
+            if (model != null)
+                return model;
+        }
+        Map<String, Object> model = configuration.hasPath("template")
+                ? Collections.unmodifiableMap(configuration.getConfig("template").root().unwrapped())
+                : Collections.emptyMap();
+        synchronized (models) {
+            models.put(key, model);
+        }
+        return model;
+    }
+
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
             }
+        };
+    }
+
+    /**
+     * Wraps booleans so that {@code [=flag]} renders {@code true} or {@code false}, while {@code [#if flag]} still
+     * treats them as booleans.
+     */
+    private static final class SqlObjectWrapper extends DefaultObjectWrapper {
+        private SqlObjectWrapper() {
+            super(VERSION_2_3_28);
+        }
+
+        @Override
+        public TemplateModel wrap(Object obj) throws TemplateModelException {
+            if (obj instanceof Boolean)
+                return ((Boolean) obj) ? SqlBoolean.TRUE : SqlBoolean.FALSE;
+            return super.wrap(obj);
         }
-        return templatedContent;
     }
 
-    /* For testing */
-    FreeMarkerTemplateService() {
+    private static final class SqlBoolean implements TemplateBooleanModel, TemplateScalarModel {
+        private static final SqlBoolean TRUE = new SqlBoolean(true);
+        private static final SqlBoolean FALSE = new SqlBoolean(false);
+
+        private final boolean value;
+
+        private SqlBoolean(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            return value;
+        }
+
+        @Override
+        public String getAsString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class TemplateKey {
+        private final String id;
+        private final int contentHash;
+
+        private TemplateKey(String id, String content) {
+            this.id = id;
+            this.contentHash = content.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TemplateKey)) return false;
+            TemplateKey that = (TemplateKey) o;
+            return contentHash == that.contentHash && id.equals(that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + contentHash;
+        }
     }
-}
 
+    private static final class CompiledTemplate {
+        private final String content;
+        private final Template template;
 
+        private CompiledTemplate(String content, Template template) {
+            this.content = content;
+            this.template = template;
+        }
+    }
 
+    /**
+     * Compares {@code Config}s by identity, {@code Config.equals} compares the whole tree.
+     */
+    private static final class ConfigKey {
+        private final Config config;
 
+        private ConfigKey(Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ConfigKey && ((ConfigKey) o).config == config;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(config);
+        }
+    }
+
+    /* For testing */
+    FreeMarkerTemplateService() {
+    }
+}
@@ -0,0 +1,33 @@
+package net.martinprobson.jobrunner.common;
+
+/**
+ * <h3>{@code ProcessTrees}</h3>
+ * <p>Kills a process along with the processes it started (a Spark or Hive client forks JVMs of its own,
+ * killing just the client can leave them running). Used by the process launchers and {@link DriverSession}.</p>
+ * <p>JDK 21 version, the descendants are found with {@link ProcessHandle}.</p>
+ *
+ * @author martinr
+ */
+public final class ProcessTrees {
+
+    /**
+     * Forcibly kill {@code process} and its descendants.
+     *
+     * @param process The process.
+     */
+    public static void destroy(Process process) {
+        // Kill the children first, so they are not re-parented (and lost) when the process dies.
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * @return {@code true}, the descendants are killed too.
+     */
+    public static boolean killsDescendants() {
+        return true;
+    }
+
+    private ProcessTrees() {
+    }
+}
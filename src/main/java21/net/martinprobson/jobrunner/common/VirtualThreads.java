@@ -0,0 +1,31 @@
+package net.martinprobson.jobrunner.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <h3>{@code VirtualThreads}</h3>
+ * <p>Access to virtual threads (JDK 21+) from code compiled for Java 8.</p>
+ * <p>This is the JDK 21 version, packaged under {@code META-INF/versions/21} of the multi-release jar.</p>
+ *
+ * @author martinr
+ */
+public final class VirtualThreads {
+
+    /**
+     * @return {@code true} if the running JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * @return An {@code ExecutorService} that runs each submitted task on a new virtual thread.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("jobrunner-task-", 0).factory());
+    }
+
+    private VirtualThreads() {
+    }
+}
@@ -0,0 +1,32 @@
+#
+# jobrunner driver session for spark-python tasks.
+#
+# Creates a SparkSession and then runs each script it is sent on stdin ("RUN <file>") in
+# turn, so scripts calling SparkSession.builder.getOrCreate() share the one session. See
+# net.martinprobson.jobrunner.common.DriverSession for the protocol.
+#
+import runpy
+import sys
+import traceback
+
+from pyspark.sql import SparkSession
+
+spark = SparkSession.builder.appName("jobrunner-session").getOrCreate()
+print("#jobrunner-ready", flush=True)
+
+for line in sys.stdin:
+    cmd, _, path = line.rstrip("\n").partition(" ")
+    if cmd != "RUN":
+        continue
+    rc = 0
+    try:
+        runpy.run_path(path, run_name="__main__")
+    except SystemExit as e:
+        rc = e.code if isinstance(e.code, int) else (0 if e.code is None else 1)
+    except BaseException:
+        traceback.print_exc(file=sys.stdout)
+        rc = 1
+    sys.stderr.flush()
+    print("#jobrunner-done %d" % rc, flush=True)
+
+spark.stop()
@@ -11,10 +11,14 @@ import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.startsWith;
@@ -77,6 +81,28 @@ public class LocalFileSystemTaskBuilderTest {
         assertEquals(expectedResults,tasks);
     }
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBuildOrder() throws Exception {
+        File taskDir = folder.newFolder("tasks");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String id = String.format("task%03d.txt", i);
+            expected.add(id);
+            FileUtils.writeStringToFile(new File(taskDir, id), "task " + i, Charset.defaultCharset());
+            if (i > 0)
+                FileUtils.writeStringToFile(new File(taskDir, String.format("task%03d.conf", i)),
+                        String.format("depends-on { id = [\"task%03d.txt\"] }", i - 1), Charset.defaultCharset());
+        }
+        Map<String, BaseTask> tasks = LocalFileSystemTaskBuilder.create(taskDir.getAbsolutePath(),
+                taskDir.getAbsolutePath()).build();
+        assertEquals(expected, new ArrayList<>(tasks.keySet()));
+        assertEquals(Collections.singletonList("task198.txt"),
+                tasks.get("task199.txt").getConfig().getStringList("depends-on.id"));
+    }
+
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
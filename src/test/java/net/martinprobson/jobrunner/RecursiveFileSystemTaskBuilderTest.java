@@ -0,0 +1,91 @@
+package net.martinprobson.jobrunner;
+
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RecursiveFileSystemTaskBuilderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static void write(File dir, String path, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(dir, path), content, Charset.defaultCharset());
+    }
+
+    @Test
+    public void nestedTree() throws Exception {
+        File root = folder.newFolder("sales");
+        write(root, "top.txt", "top");
+        write(root, "daily/stage.txt", "stage");
+        write(root, "daily/load.txt", "load");
+        write(root, "daily/load.conf", "depends-on { id = [\"stage.txt\", \"top.txt\"] }");
+        write(root, "daily/notes.md", "not a task");
+        write(root, ".hidden/skipped.txt", "skipped");
+
+        Map<String, BaseTask> tasks = RecursiveFileSystemTaskBuilder.create(
+                Collections.singletonList(root.getAbsolutePath()), root.getAbsolutePath()).build();
+        assertEquals(Arrays.asList("daily/load.txt", "daily/stage.txt", "top.txt"),
+                Arrays.asList(tasks.keySet().toArray()));
+        assertEquals(Arrays.asList("daily/stage.txt", "top.txt"),
+                tasks.get("daily/load.txt").getConfig().getStringList("depends-on.id"));
+        assertEquals("stage", tasks.get("daily/stage.txt").getTaskContents());
+    }
+
+    @Test
+    public void multipleRoots() throws Exception {
+        File sales = folder.newFolder("sales");
+        File finance = folder.newFolder("finance");
+        File conf = folder.newFolder("conf");
+        write(sales, "daily/load.txt", "load");
+        write(finance, "calendar.txt", "calendar");
+        write(conf, "sales/daily/load.conf", "depends-on { id = [\"finance/calendar.txt\"] }\n" +
+                "template { source = \"conf\" }");
+        write(sales, "daily/load.conf", "template { source = \"alongside\", other = \"alongside\" }");
+
+        Map<String, BaseTask> tasks = RecursiveFileSystemTaskBuilder.create(
+                Arrays.asList(sales.getAbsolutePath(), finance.getAbsolutePath()), conf.getAbsolutePath()).build();
+        assertEquals(Arrays.asList("finance/calendar.txt", "sales/daily/load.txt"),
+                Arrays.asList(tasks.keySet().toArray()));
+        BaseTask load = tasks.get("sales/daily/load.txt");
+        assertEquals(Collections.singletonList("finance/calendar.txt"), load.getConfig().getStringList("depends-on.id"));
+        assertEquals("conf", load.getConfig().getString("template.source"));
+        assertEquals("alongside", load.getConfig().getString("template.other"));
+        assertFalse(tasks.get("finance/calendar.txt").getConfig().hasPath("depends-on"));
+    }
+
+    @Test
+    public void duplicateRootNames() throws Exception {
+        File a = folder.newFolder("a", "tasks");
+        File b = folder.newFolder("b", "tasks");
+        thrown.expect(JobRunnerException.class);
+        thrown.expectMessage(startsWith("task directories"));
+        RecursiveFileSystemTaskBuilder.create(Arrays.asList(a.getAbsolutePath(), b.getAbsolutePath()),
+                a.getAbsolutePath());
+    }
+
+    @Test
+    public void invalidTaskDir() throws Exception {
+        thrown.expect(JobRunnerException.class);
+        thrown.expectMessage(startsWith("task directory"));
+        RecursiveFileSystemTaskBuilder.create(Collections.singletonList("foo"), folder.getRoot().getAbsolutePath());
+    }
+}
@@ -82,4 +82,19 @@ public class TaskResultTest {
         TaskResult r = new TaskResult.Builder(TaskResult.Result.FAILED).build();
         assertTrue(r.failed());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getDuration() {
+        TaskResult tr = new TaskResult.Builder(TaskResult.Result.SUCCESS).startTime(1000).endTime(4500).build();
+        assertEquals(3500, tr.getDuration());
+        assertEquals(0, new TaskResult.Builder(TaskResult.Result.RUNNING).startTime(1000).build().getDuration());
+    }
+
+    @Test
+    public void copyBuilder() {
+        TaskResult tr = new TaskResult.Builder(TaskResult.Result.FAILED).exitValue(2).output("Output").build();
+        TaskResult copy = new TaskResult.Builder(tr).startTime(1).endTime(2).build();
+        assertEquals(tr.toString(), copy.toString());
+        assertEquals(1, copy.getDuration());
+    }
+}
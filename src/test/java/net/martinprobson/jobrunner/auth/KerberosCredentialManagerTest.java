@@ -0,0 +1,84 @@
+package net.martinprobson.jobrunner.auth;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KerberosCredentialManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A stub kinit that records each call (the principal and the password read from stdin) and exits with
+     * {@code rc}.
+     */
+    private File kinit(int rc) throws IOException {
+        File calls = new File(folder.getRoot(), "calls");
+        File script = new File(folder.getRoot(), "kinit");
+        FileUtils.writeStringToFile(script, "#!/bin/sh\nread pw\necho \"$1 $pw\" >> " + calls.getAbsolutePath()
+                + "\nexit " + rc + "\n", Charset.defaultCharset());
+        assertTrue(script.setExecutable(true));
+        return script;
+    }
+
+    private int calls() throws IOException {
+        File calls = new File(folder.getRoot(), "calls");
+        return calls.exists() ? FileUtils.readLines(calls, Charset.defaultCharset()).size() : 0;
+    }
+
+    @Test
+    public void kinitOnce() throws Exception {
+        try (KerberosCredentialManager manager = new KerberosCredentialManager(kinit(0).getAbsolutePath(),
+                "user@REALM", "secret", 3600000, 60000)) {
+            assertFalse(manager.isValid());
+            for (int i = 0; i < 100; i++)
+                manager.ensureValid();
+            assertTrue(manager.isValid());
+            assertEquals(1, manager.getLogins());
+            assertEquals(1, calls());
+            assertEquals("user@REALM secret",
+                    FileUtils.readFileToString(new File(folder.getRoot(), "calls"), Charset.defaultCharset()).trim());
+        }
+    }
+
+    @Test
+    public void renewedInBackground() throws Exception {
+        try (KerberosCredentialManager manager = new KerberosCredentialManager(kinit(0).getAbsolutePath(),
+                "user@REALM", "secret", 400, 300)) {
+            manager.ensureValid();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (manager.getLogins() < 3 && System.currentTimeMillis() < deadline)
+                Thread.sleep(20);
+            assertTrue(manager.getLogins() >= 3);
+            assertTrue(manager.isValid());
+        }
+    }
+
+    @Test
+    public void failedKinit() throws Exception {
+        try (KerberosCredentialManager manager = new KerberosCredentialManager(kinit(1).getAbsolutePath(),
+                "user@REALM", "secret", 3600000, 60000)) {
+            manager.ensureValid();
+            assertFalse(manager.isValid());
+            manager.ensureValid();
+            assertFalse(manager.isValid());
+            assertEquals(0, manager.getLogins());
+            assertEquals(2, calls());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void renewBeforeLifetime() {
+        new KerberosCredentialManager("kinit", "user@REALM", "secret", 1000, 1000);
+    }
+}
@@ -0,0 +1,91 @@
+package net.martinprobson.jobrunner.checkpoint;
+
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BaseTask task(String id) throws Exception {
+        File file = new File(folder.getRoot(), id);
+        FileUtils.write(file, id, Charset.defaultCharset());
+        return TaskProvider.getInstance().createTask("dummy", id, file);
+    }
+
+    private static TaskResult result(TaskResult.Result result) {
+        return new TaskResult.Builder(result).build();
+    }
+
+    @Test
+    public void resume() throws Exception {
+        File file = new File(folder.getRoot(), "checkpoint.wal");
+        BaseTask a = task("a");
+        BaseTask b = task("b");
+        BaseTask c = task("c");
+        try (CheckpointLog log = CheckpointLog.create(file)) {
+            log.taskStarted(a);
+            log.taskFinished(a, result(TaskResult.Result.SUCCESS));
+            log.taskStarted(b);
+            log.taskFinished(b, result(TaskResult.Result.FAILED));
+            log.taskStarted(c);
+        }
+        try (CheckpointLog log = CheckpointLog.resume(file)) {
+            assertTrue(log.isCompleted(a));
+            assertFalse(log.isCompleted(b));
+            assertFalse(log.isCompleted(c));
+            log.taskFinished(b, result(TaskResult.Result.SUCCESS));
+        }
+        try (CheckpointLog log = CheckpointLog.resume(file)) {
+            assertTrue(log.isCompleted(b));
+        }
+        try (CheckpointLog log = CheckpointLog.create(file)) {
+            assertFalse(log.isCompleted(a));
+        }
+    }
+
+    @Test
+    public void partialLineIgnored() throws Exception {
+        File file = new File(folder.getRoot(), "checkpoint.wal");
+        BaseTask a = task("a");
+        try (CheckpointLog log = CheckpointLog.create(file)) {
+            log.taskFinished(a, result(TaskResult.Result.SUCCESS));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+        try (CheckpointLog log = CheckpointLog.resume(file)) {
+            assertFalse(log.isCompleted(a));
+            log.taskFinished(a, result(TaskResult.Result.SUCCESS));
+        }
+        try (CheckpointLog log = CheckpointLog.resume(file)) {
+            assertTrue(log.isCompleted(a));
+        }
+    }
+
+    @Test
+    public void changedTaskNotCompleted() throws Exception {
+        File file = new File(folder.getRoot(), "checkpoint.wal");
+        BaseTask a = task("a");
+        try (CheckpointLog log = CheckpointLog.create(file)) {
+            log.taskFinished(a, result(TaskResult.Result.SUCCESS));
+        }
+        FileUtils.write(a.getTaskFile(), "changed", Charset.defaultCharset());
+        try (CheckpointLog log = CheckpointLog.resume(file)) {
+            assertFalse(log.isCompleted(a));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package net.martinprobson.jobrunner.common;
+
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
+import net.martinprobson.jobrunner.launcher.LaunchMetrics;
+import net.martinprobson.jobrunner.launcher.ProcessLauncher;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DefaultExternalCommandBuilderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void buffered() throws Exception {
+        TaskResult result = new DefaultExternalCommandBuilder().setCmd("sh")
+                .withArgs("-c", "echo out; echo err >&2")
+                .run();
+        assertEquals("out\n", result.getOutput());
+        assertEquals("err\n", result.getError());
+    }
+
+    @Test
+    public void streaming() throws Exception {
+        File stdout = new File(folder.getRoot(), "t.stdout.log");
+        File stderr = new File(folder.getRoot(), "t.stderr.log");
+        TaskResult result = new DefaultExternalCommandBuilder().setCmd("sh")
+                .withArgs("-c", "i=0; while [ $i -lt 500 ]; do echo line$i; i=$((i+1)); done; echo err >&2")
+                .withStreamingOutput(8, stdout, stderr)
+                .run();
+        assertEquals(0, result.getExitValue());
+        assertTrue(result.getOutput().endsWith("\nline499\n"));
+        assertEquals("err\n", result.getError());
+        assertEquals(500, FileUtils.readLines(stdout, Charset.defaultCharset()).size());
+        assertEquals("err\n", FileUtils.readFileToString(stderr, Charset.defaultCharset()));
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void streamingFailure() throws Exception {
+        new DefaultExternalCommandBuilder().setCmd("sh")
+                .withArgs("-c", "exit 3")
+                .withStreamingOutput(8, new File(folder.getRoot(), "o"), new File(folder.getRoot(), "e"))
+                .run();
+    }
+
+    private static ProcessLauncher helper() throws Exception {
+        return ProcessLauncher.forMode("helper", GlobalConfigurationProvider.get().getConfiguration()
+                .getConfig("jobrunner.launcher"));
+    }
+
+    @Test
+    public void launched() throws Exception {
+        long launches = LaunchMetrics.getLaunches();
+        TaskResult result = new DefaultExternalCommandBuilder(helper()).setCmd("sh")
+                .withArgs("-c", "echo out; echo err >&2")
+                .run();
+        assertEquals("out\n", result.getOutput());
+        assertEquals("err\n", result.getError());
+        assertEquals("sh -c echo out; echo err >&2", result.getProcString());
+        assertEquals(launches + 1, LaunchMetrics.getLaunches());
+    }
+
+    @Test
+    public void launchedStreaming() throws Exception {
+        File stdout = new File(folder.getRoot(), "t.stdout.log");
+        File stderr = new File(folder.getRoot(), "t.stderr.log");
+        TaskResult result = new DefaultExternalCommandBuilder(helper()).setCmd("sh")
+                .withArgs("-c", "i=0; while [ $i -lt 500 ]; do echo line$i; i=$((i+1)); done; echo err >&2")
+                .withStreamingOutput(8, stdout, stderr)
+                .run();
+        assertTrue(result.getOutput().startsWith("[... "));
+        assertTrue(result.getOutput().endsWith("\nline499\n"));
+        assertEquals(500, FileUtils.readLines(stdout, Charset.defaultCharset()).size());
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void launchedFailure() throws Exception {
+        new DefaultExternalCommandBuilder(helper()).setCmd("sh")
+                .withArgs("-c", "exit 3")
+                .run();
+    }
+
+    @Test
+    public void launchedTimeout() throws Exception {
+        DefaultExternalCommandBuilder builder = new DefaultExternalCommandBuilder(helper());
+        builder.setCmd("sleep").withArgs("30");
+        builder.withTimeoutMillis(200);
+        try {
+            builder.run();
+            fail("Expected a JobRunnerException");
+        } catch (JobRunnerException e) {
+            assertTrue(e.getMessage().contains("timed out"));
+        }
+    }
+
+    @Test
+    public void cancelledAttemptKillsProcess() throws Exception {
+        BaseTask task = TaskProvider.getInstance().createTask("dummy", "cancelled", new File(""), ConfigFactory.empty());
+        TaskAttempt attempt = new TaskAttempt(task, true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long start = System.currentTimeMillis();
+            // jproc (the default launcher) cannot kill the process, so the attempt starts it directly.
+            Future<TaskResult> result = executor.submit(() -> attempt.run(t -> {
+                ExternalCommandBuilder builder = new DefaultExternalCommandBuilder().setCmd("sleep").withArgs("30");
+                builder.withTimeoutMillis(60000);
+                return builder.run();
+            }));
+            Thread.sleep(500);
+            attempt.cancel();
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail("Expected the cancelled attempt to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof JobRunnerException);
+            }
+            assertTrue(System.currentTimeMillis() - start < 10000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
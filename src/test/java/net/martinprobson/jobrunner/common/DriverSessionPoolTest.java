@@ -0,0 +1,176 @@
+package net.martinprobson.jobrunner.common;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskResult;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class DriverSessionPoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Config CONFIG = ConfigFactory.parseString("pool-size = 1, start-timeout = 10s, idle-timeout = 10m");
+
+    /**
+     * A stand-in driver that runs each file it is sent with sh, after writing its own pid, and exits after
+     * {@code maxRequests} files.
+     */
+    private List<String> driver(int maxRequests) throws IOException {
+        File script = folder.newFile();
+        FileUtils.writeStringToFile(script, "echo starting\n" +
+                "echo '" + DriverSession.READY + "'\n" +
+                "n=0\n" +
+                "while read cmd file; do\n" +
+                "  [ \"$cmd\" = RUN ] || continue\n" +
+                "  echo \"session $$\"\n" +
+                "  sh \"$file\"\n" +
+                "  echo \"" + DriverSession.DONE + "$?\"\n" +
+                "  n=$((n + 1))\n" +
+                "  [ $n -ge " + maxRequests + " ] && exit 0\n" +
+                "done\n", Charset.defaultCharset());
+        return Arrays.asList("sh", script.getAbsolutePath());
+    }
+
+    private String file(String content) throws IOException {
+        File file = folder.newFile();
+        FileUtils.writeStringToFile(file, content, Charset.defaultCharset());
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * @return {@code true} if process {@code pid} is still running (a zombie has stopped).
+     */
+    private static boolean running(String pid) throws IOException, InterruptedException {
+        Process ps = new ProcessBuilder("ps", "-o", "stat=", "-p", pid).redirectErrorStream(true).start();
+        String stat;
+        try (InputStream in = ps.getInputStream()) {
+            stat = IOUtils.toString(in, Charset.defaultCharset()).trim();
+        }
+        ps.waitFor();
+        return !stat.isEmpty() && !stat.startsWith("Z");
+    }
+
+    private static String session(TaskResult result) {
+        return result.getOutput().split("\n")[0];
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        DriverSessionPool.closeAll();
+    }
+
+    @Test
+    public void sessionReused() throws Exception {
+        DriverSessionPool pool = DriverSessionPool.get(driver(100), CONFIG);
+        TaskResult first = pool.run(file("echo hello"), 10000, false);
+        TaskResult second = pool.run(file("echo world"), 10000, false);
+        assertTrue(first.succeeded());
+        assertEquals("hello", first.getOutput().split("\n")[1]);
+        assertEquals("world", second.getOutput().split("\n")[1]);
+        assertEquals(session(first), session(second));
+        assertEquals(1, pool.idleSessions());
+    }
+
+    @Test
+    public void failure() throws Exception {
+        DriverSessionPool pool = DriverSessionPool.get(driver(100), CONFIG);
+        try {
+            pool.run(file("echo oops\nexit 3"), 10000, false);
+            fail("Expected a JobRunnerException");
+        } catch (JobRunnerException e) {
+            assertTrue(e.getMessage().contains("exit code 3"));
+            assertTrue(e.getMessage().contains("oops"));
+        }
+        // The session survives a failed file.
+        assertEquals(1, pool.idleSessions());
+        assertTrue(pool.run(file("echo ok"), 10000, false).succeeded());
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        DriverSessionPool pool = DriverSessionPool.get(driver(100), CONFIG);
+        TaskResult first = pool.run(file("echo ok"), 10000, false);
+        try {
+            pool.run(file("sleep 30"), 500, false);
+            fail("Expected a JobRunnerException");
+        } catch (JobRunnerException e) {
+            assertTrue(e.getMessage().contains("timed out"));
+        }
+        // The session that timed out is killed, and a new one started.
+        TaskResult next = pool.run(file("echo ok"), 10000, false);
+        assertNotEquals(session(first), session(next));
+    }
+
+    @Test(timeout = 30000)
+    public void timeoutKillsProcessTree() throws Exception {
+        File pid = new File(folder.getRoot(), "child.pid");
+        DriverSessionPool pool = DriverSessionPool.get(driver(100), CONFIG);
+        try {
+            pool.run(file("sleep 60 &\necho $! > " + pid.getAbsolutePath() + "\nwait"), 1000, false);
+            fail("Expected a JobRunnerException");
+        } catch (JobRunnerException e) {
+            assertTrue(e.getMessage().contains("timed out"));
+        }
+        String child = FileUtils.readFileToString(pid, Charset.defaultCharset()).trim();
+        // Only a JVM that can find the descendants of a process (JDK 21 version of ProcessTrees) kills them.
+        assumeTrue(ProcessTrees.killsDescendants());
+        for (int i = 0; i < 50 && running(child); i++)
+            Thread.sleep(100);
+        assertFalse("process " + child + " started by the driver is still running", running(child));
+    }
+
+    @Test
+    public void sessionExited() throws Exception {
+        DriverSessionPool pool = DriverSessionPool.get(driver(1), CONFIG);
+        TaskResult first = pool.run(file("echo one"), 10000, false);
+        TaskResult second = pool.run(file("echo two"), 10000, false);
+        assertTrue(second.succeeded());
+        assertEquals("two", second.getOutput().split("\n")[1]);
+        assertNotEquals(session(first), session(second));
+    }
+
+    @Test
+    public void noSession() throws Exception {
+        List<String> command = Arrays.asList(new File(folder.getRoot(), "no-such-driver").getAbsolutePath());
+        DriverSessionPool pool = DriverSessionPool.get(command, CONFIG);
+        assertNull(pool.run(file("echo hello"), 10000, true));
+        try {
+            pool.run(file("echo hello"), 10000, false);
+            fail("Expected a JobRunnerException");
+        } catch (JobRunnerException e) {
+            assertTrue(e.getMessage().contains("Cannot start driver session"));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void sessionDiesWithoutOutput() throws Exception {
+        // A driver killed by the file it is sent (without writing anything) is not restarted forever.
+        File script = folder.newFile();
+        FileUtils.writeStringToFile(script, "echo '" + DriverSession.READY + "'\n" +
+                "read cmd file\n" +
+                "exit 9\n", Charset.defaultCharset());
+        DriverSessionPool pool = DriverSessionPool.get(Arrays.asList("sh", script.getAbsolutePath()), CONFIG);
+        try {
+            pool.run(file("echo hello"), 10000, false);
+            fail("Expected an ExternalCommandException");
+        } catch (ExternalCommandException e) {
+            assertEquals(9, e.getExitValue());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package net.martinprobson.jobrunner.common;
+
+import com.github.dexecutor.core.task.TaskExecutionException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.template.DummyTemplateService;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.SQLTransientException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+    private static final String FAST = "retry { initial-backoff = 1ms, jitter = 0 }\n";
+
+    private static class TestTask extends BaseTask {
+        TestTask(String config, TaskExecutor taskExecutor) {
+            super("test", new File(""), ConfigFactory.parseString(config), new DummyTemplateService(), taskExecutor);
+        }
+    }
+
+    /**
+     * A {@code TaskExecutor} that throws {@code failure} the first {@code failures} times it is called.
+     */
+    private static TaskExecutor flaky(int failures, JobRunnerException failure, AtomicInteger calls) {
+        return task -> {
+            if (calls.incrementAndGet() <= failures)
+                throw failure;
+            return new TaskResult.Builder(TaskResult.Result.SUCCESS).build();
+        };
+    }
+
+    private static RetryPolicy policy(String config) {
+        Config retry = ConfigFactory.parseString(config).withFallback(ConfigFactory.load().getConfig("retry"));
+        return RetryPolicy.fromConfig(retry);
+    }
+
+    @Test
+    public void retriedUntilSuccess() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        BaseTask task = new TestTask(FAST + "retry.max-attempts = 3",
+                flaky(2, new JobRunnerException("transient"), calls));
+        assertTrue(task.execute().succeeded());
+        assertEquals(3, calls.get());
+        assertEquals(TaskResult.Result.SUCCESS, task.getTaskResult().getResult());
+    }
+
+    @Test
+    public void attemptsExhausted() {
+        AtomicInteger calls = new AtomicInteger();
+        BaseTask task = new TestTask(FAST + "retry.max-attempts = 2",
+                flaky(5, new JobRunnerException("broken"), calls));
+        try {
+            task.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException e) {
+            assertEquals(2, calls.get());
+            assertTrue(task.getTaskResult().failed());
+        }
+    }
+
+    @Test
+    public void notRetriedByDefault() {
+        AtomicInteger calls = new AtomicInteger();
+        BaseTask task = new TestTask("", flaky(1, new JobRunnerException("broken"), calls));
+        try {
+            task.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException e) {
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void retryOn() {
+        RetryPolicy policy = policy("max-attempts = 3, retry-on = [\"java.sql.SQLTransientException\"]");
+        assertTrue(policy.shouldRetry(1, new JobRunnerException("wrapped", new SQLTransientException("hiccup"))));
+        assertFalse(policy.shouldRetry(1, new JobRunnerException("syntax error")));
+        assertFalse(policy.shouldRetry(3, new SQLTransientException("hiccup")));
+        assertFalse(policy.shouldRetry(1, new JobRunnerException("interrupted", new InterruptedException())));
+    }
+
+    @Test
+    public void exitCodes() {
+        RetryPolicy policy = policy("max-attempts = 3, exit-codes = [75]");
+        assertTrue(policy.shouldRetry(1, new JobRunnerException("failed", new ExternalCommandException("queue full", 75))));
+        assertFalse(policy.shouldRetry(1, new ExternalCommandException("bad script", 1)));
+        // Failures without an exit code are not affected by exit-codes.
+        assertTrue(policy.shouldRetry(1, new JobRunnerException("connection reset")));
+    }
+
+    @Test
+    public void backoff() {
+        RetryPolicy policy = policy("max-attempts = 5, initial-backoff = 100ms, multiplier = 2, max-backoff = 300ms, jitter = 0");
+        assertEquals(100, policy.backoffMillis(1));
+        assertEquals(200, policy.backoffMillis(2));
+        assertEquals(300, policy.backoffMillis(3));
+        assertEquals(300, policy.backoffMillis(4));
+    }
+
+    @Test
+    public void jitter() {
+        RetryPolicy policy = policy("initial-backoff = 1000ms, jitter = 0.25");
+        for (int i = 0; i < 100; i++) {
+            long backoff = policy.backoffMillis(1);
+            assertTrue(String.valueOf(backoff), backoff >= 750 && backoff <= 1250);
+        }
+    }
+
+    @Test
+    public void precedence() throws Exception {
+        TaskProvider taskProvider = TaskProvider.getInstance();
+        // retry.task-types.dummy (test reference.conf) overrides the global retry settings...
+        BaseTask byType = taskProvider.createTask("dummy", "byType", new File(""), ConfigFactory.empty());
+        assertEquals(1, byType.getRetryPolicy().backoffMillis(1));
+        // ... and the task's own settings override both.
+        BaseTask byTask = taskProvider.createTask("dummy", "byTask", new File(""),
+                ConfigFactory.parseString("retry.initial-backoff = 5ms"));
+        assertEquals(5, byTask.getRetryPolicy().backoffMillis(1));
+        assertEquals(1, byTask.getRetryPolicy().getMaxAttempts());
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void invalidConfiguration() throws Exception {
+        BaseTask task = new TestTask("retry.max-attempts = 0", flaky(0, null, new AtomicInteger()));
+        task.getRetryPolicy();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownRetryOn() {
+        policy("max-attempts = 3, retry-on = [\"java.sql.SQLTransientExcepton\"]");
+    }
+
+    @Test
+    public void unknownRetryOnFailsTheTask() {
+        AtomicInteger calls = new AtomicInteger();
+        BaseTask task = new TestTask(FAST + "retry { max-attempts = 3, retry-on = [\"no.such.Exception\"] }",
+                flaky(0, null, calls));
+        try {
+            task.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("no.such.Exception"));
+            // The task is not run with only some of the retries it asked for.
+            assertEquals(0, calls.get());
+            assertTrue(task.getTaskResult().failed());
+        }
+    }
+}
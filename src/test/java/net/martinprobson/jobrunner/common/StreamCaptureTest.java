@@ -0,0 +1,52 @@
+package net.martinprobson.jobrunner.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamCaptureTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void shortStream() throws Exception {
+        StreamCapture capture = new StreamCapture(10, null);
+        capture.write(bytes("abc"));
+        capture.write('d');
+        assertEquals("abcd", capture.getTail(StandardCharsets.UTF_8));
+        assertEquals(4, capture.getWritten());
+    }
+
+    @Test
+    public void keepsTail() throws Exception {
+        StreamCapture capture = new StreamCapture(5, null);
+        capture.write(bytes("abc"));
+        capture.write(bytes("defg"));
+        assertEquals("[... 2 bytes not shown]\ncdefg", capture.getTail(StandardCharsets.UTF_8));
+        capture.write(bytes("0123456789"));
+        assertEquals("[... 12 bytes not shown]\n56789", capture.getTail(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void logsWholeStream() throws Exception {
+        File log = new File(folder.getRoot(), "logs/task.stdout.log");
+        try (StreamCapture capture = new StreamCapture(4, log)) {
+            for (int i = 0; i < 1000; i++)
+                capture.write(bytes(i + "\n"));
+            assertEquals("[... 3886 bytes not shown]\n999\n", capture.getTail(StandardCharsets.UTF_8));
+        }
+        assertEquals(1000, FileUtils.readLines(log, Charset.defaultCharset()).size());
+    }
+}
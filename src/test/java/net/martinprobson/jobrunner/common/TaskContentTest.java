@@ -0,0 +1,64 @@
+package net.martinprobson.jobrunner.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TaskContentTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String sha256(String s) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)))
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    @Test
+    public void cachedUntilChanged() throws Exception {
+        File file = folder.newFile("task.sql");
+        FileUtils.writeStringToFile(file, "select 1", StandardCharsets.UTF_8);
+        TaskContent content = new TaskContent(file, StandardCharsets.UTF_8);
+        Object version = content.getVersion();
+        assertEquals("select 1", content.getContents());
+        assertEquals(sha256("select 1"), content.getHash());
+        assertSame(version, content.getVersion());
+        assertSame(content.getContents(), content.getContents());
+
+        FileUtils.writeStringToFile(file, "select 2", StandardCharsets.UTF_8);
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertNotSame(version, content.getVersion());
+        assertEquals("select 2", content.getContents());
+        assertEquals(sha256("select 2"), content.getHash());
+    }
+
+    @Test
+    public void largeFileMapped() throws Exception {
+        File file = folder.newFile("large.sql");
+        char[] chars = new char[(int) TaskContent.MMAP_THRESHOLD + 10];
+        Arrays.fill(chars, 'x');
+        String text = new String(chars);
+        FileUtils.writeStringToFile(file, text, StandardCharsets.UTF_8);
+        TaskContent content = new TaskContent(file, StandardCharsets.UTF_8);
+        assertEquals(text, content.getContents());
+        assertEquals(sha256(text), content.getHash());
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void missingFile() throws Exception {
+        new TaskContent(new File(folder.getRoot(), "missing.sql"), StandardCharsets.UTF_8).getHash();
+    }
+}
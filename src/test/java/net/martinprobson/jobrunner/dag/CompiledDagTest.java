@@ -0,0 +1,133 @@
+package net.martinprobson.jobrunner.dag;
+
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledDagTest {
+
+    private static TaskProvider taskProvider;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        taskProvider = TaskProvider.getInstance();
+    }
+
+    private static BaseTask task(String id, String... dependsOn) throws JobRunnerException {
+        return taskProvider.createTask("dummy", id, new File(""),
+                ConfigFactory.parseMap(Collections.singletonMap("depends-on.id", Arrays.asList(dependsOn))));
+    }
+
+    /*
+     *   a -> b -> c
+     *   d -> c
+     *   e
+     */
+    private static List<BaseTask> tasks() throws JobRunnerException {
+        return Arrays.asList(task("a"), task("b", "a"), task("c", "b", "d", "b"), task("d"), task("e"));
+    }
+
+    private static Set<String> parents(CompiledDag dag, String id) {
+        int i = dag.indexOf(id);
+        Set<String> ids = new HashSet<>();
+        for (int k = 0; k < dag.parentCount(i); k++)
+            ids.add(dag.id(dag.parent(i, k)));
+        return ids;
+    }
+
+    private static Set<String> children(CompiledDag dag, String id) {
+        int i = dag.indexOf(id);
+        Set<String> ids = new HashSet<>();
+        for (int k = 0; k < dag.childCount(i); k++)
+            ids.add(dag.id(dag.child(i, k)));
+        return ids;
+    }
+
+    @Test
+    public void compile() throws JobRunnerException {
+        CompiledDag dag = CompiledDag.compile(tasks());
+        assertEquals(5, dag.size());
+        // The duplicate dependency of c on b is only counted once.
+        assertEquals(3, dag.edges());
+        assertEquals(-1, dag.indexOf("unknown"));
+        assertEquals(new HashSet<>(Arrays.asList("b", "d")), parents(dag, "c"));
+        assertEquals(Collections.singleton("a"), parents(dag, "b"));
+        assertEquals(Collections.emptySet(), parents(dag, "e"));
+        assertEquals(Collections.singleton("c"), children(dag, "b"));
+        assertEquals(Collections.singleton("c"), children(dag, "d"));
+        assertEquals(Collections.emptySet(), children(dag, "c"));
+    }
+
+    @Test
+    public void levels() throws JobRunnerException {
+        CompiledDag dag = CompiledDag.compile(tasks());
+        assertEquals(3, dag.levels());
+        assertEquals(0, dag.level(dag.indexOf("a")));
+        assertEquals(1, dag.level(dag.indexOf("b")));
+        assertEquals(2, dag.level(dag.indexOf("c")));
+        assertEquals(0, dag.level(dag.indexOf("d")));
+        assertEquals(0, dag.level(dag.indexOf("e")));
+    }
+
+    @Test
+    public void topologicalOrder() throws JobRunnerException {
+        CompiledDag dag = CompiledDag.compile(tasks());
+        int[] position = new int[dag.size()];
+        for (int k = 0; k < dag.size(); k++)
+            position[dag.inOrder(k)] = k;
+        for (int i = 0; i < dag.size(); i++)
+            for (int p = 0; p < dag.parentCount(i); p++)
+                assertTrue(dag.id(i), position[dag.parent(i, p)] < position[i]);
+    }
+
+    @Test
+    public void longChain() throws JobRunnerException {
+        List<BaseTask> tasks = new ArrayList<>();
+        tasks.add(task("t0"));
+        for (int i = 1; i < 2000; i++)
+            tasks.add(task("t" + i, "t" + (i - 1)));
+        Collections.reverse(tasks);
+        CompiledDag dag = CompiledDag.compile(tasks);
+        assertEquals(2000, dag.levels());
+        assertEquals(1999, dag.level(dag.indexOf("t1999")));
+        assertEquals("t0", dag.id(dag.inOrder(0)));
+    }
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void cycle() throws JobRunnerException {
+        thrown.expect(JobRunnerException.class);
+        thrown.expectMessage(startsWith("CompiledDag: cyclic"));
+        thrown.expectMessage(containsString("3 task(s)"));
+        CompiledDag.compile(Arrays.asList(task("a", "c"), task("b", "a"), task("c", "b"), task("d")));
+    }
+
+    @Test
+    public void unknownDependency() throws JobRunnerException {
+        thrown.expect(JobRunnerException.class);
+        thrown.expectMessage("b - setDependencies: There is no Task with an id of: x");
+        CompiledDag.compile(Arrays.asList(task("a"), task("b", "x")));
+    }
+
+    @Test
+    public void selfDependency() throws JobRunnerException {
+        thrown.expect(JobRunnerException.class);
+        thrown.expectMessage("a - setDependencies: A task cannot be dependent on itself");
+        CompiledDag.compile(Collections.singletonList(task("a", "a")));
+    }
+}
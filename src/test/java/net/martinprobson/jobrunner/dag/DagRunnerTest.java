@@ -0,0 +1,136 @@
+package net.martinprobson.jobrunner.dag;
+
+import net.martinprobson.jobrunner.Job;
+import net.martinprobson.jobrunner.JobRunnerConfig;
+import net.martinprobson.jobrunner.LocalFileSystemTaskBuilder;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskListener;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class DagRunnerTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executorService.shutdownNow();
+        executorService.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Run the tasks in {@code testBaseDir} and check the results against its expectedResults.properties.
+     */
+    private void run(String testBaseDir) throws JobRunnerException, IOException {
+        run(testBaseDir, executorService);
+    }
+
+    /**
+     * As {@link #run(String)}, on {@code executor}, also checking that no task is started more than once.
+     */
+    private void run(String testBaseDir, ExecutorService executor) throws JobRunnerException, IOException {
+        String testDir = new File(Objects.requireNonNull(getClass().getClassLoader().getResource(testBaseDir)).getFile()).getAbsolutePath();
+        JobRunnerConfig config = new JobRunnerConfig(executor,
+                new Job(LocalFileSystemTaskBuilder.create(testDir, testDir)));
+        Map<String, Integer> started = new ConcurrentHashMap<>();
+        config.addListener(new TaskListener() {
+            @Override
+            public void taskStarted(BaseTask task) {
+                started.merge(task.getId(), 1, Integer::sum);
+            }
+        });
+        new DagRunner(config).execute();
+        started.forEach((id, count) -> assertEquals("Task: " + id + " starts", 1, (int) count));
+        Properties expected = new Properties();
+        try (FileInputStream in = new FileInputStream(testDir + File.separatorChar + "expectedResults.properties")) {
+            expected.load(in);
+        }
+        for (BaseTask task : config.getJob())
+            assertEquals("Task: " + task.getId(),
+                    TaskResult.Result.valueOf(expected.getProperty(task.getId()).toUpperCase()),
+                    task.getTaskResult().getResult());
+    }
+
+    @Test
+    public void success() throws JobRunnerException, IOException {
+        run("taskrunner_test3");
+    }
+
+    @Test
+    public void failureStopsDependentTasks() throws JobRunnerException, IOException {
+        run("taskrunner_test1");
+    }
+
+    /**
+     * Each root runs to completion (finishing or blocking its children) before the next root is submitted, so
+     * a child is released while the roots are still being submitted.
+     */
+    @Test
+    public void rootFinishesWhileSubmitting() throws JobRunnerException, IOException {
+        ExecutorService inline = new AbstractExecutorService() {
+            private volatile boolean shutdown = false;
+
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+
+            @Override
+            public void shutdown() {
+                shutdown = true;
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                shutdown = true;
+                return Collections.emptyList();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return shutdown;
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return shutdown;
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        };
+        run("taskrunner_test1", inline);
+        run("taskrunner_test3", inline);
+    }
+
+    @Test
+    public void alreadyCompleted() throws JobRunnerException {
+        String testDir = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("taskrunner_test2")).getFile()).getAbsolutePath();
+        Job job = new Job(LocalFileSystemTaskBuilder.create(testDir, testDir));
+        for (BaseTask task : job)
+            task.setTaskResult(new TaskResult.Builder(TaskResult.Result.SUCCESS).build());
+        new DagRunner(new JobRunnerConfig(executorService, job)).execute();
+        for (BaseTask task : job)
+            assertEquals(TaskResult.Result.SUCCESS, task.getTaskResult().getResult());
+    }
+}
@@ -0,0 +1,197 @@
+package net.martinprobson.jobrunner.history;
+
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TaskHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TaskRun run(String id, long hash, long duration, TaskResult.Result result) {
+        return new TaskRun(id, hash, 1000, 1000 + duration, result);
+    }
+
+    @Test
+    public void percentile() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            for (long d = 10; d <= 100; d += 10)
+                store.record(run("a", 1, d, TaskResult.Result.SUCCESS));
+            store.record(run("a", 1, 5000, TaskResult.Result.FAILED));
+            assertEquals(OptionalLong.of(50), store.percentile("a", 1, 50));
+            assertEquals(OptionalLong.of(90), store.percentile("a", 1, 90));
+            assertEquals(OptionalLong.of(100), store.percentile("a", 1, 100));
+            // Unknown contents fall back to the runs of any contents.
+            assertEquals(OptionalLong.of(50), store.percentile("a", 2, 50));
+            assertFalse(store.percentile("b", 1, 50).isPresent());
+        }
+    }
+
+    @Test
+    public void modes() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            for (long d = 10; d <= 30; d += 10) {
+                store.record(new TaskRun("a", 1, "cli", 1000, 1000 + d * 10, TaskResult.Result.SUCCESS));
+                store.record(new TaskRun("a", 1, "jdbc", 1000, 1000 + d, TaskResult.Result.SUCCESS));
+            }
+            // The runs of each mode are kept apart...
+            assertEquals(OptionalLong.of(200), store.percentile("a", 1, "cli", 50));
+            assertEquals(OptionalLong.of(20), store.percentile("a", 1, "jdbc", 50));
+            Map<String, Long> byMode = store.percentileByMode("a", 1, 50);
+            assertEquals(2, byMode.size());
+            assertEquals(Long.valueOf(200), byMode.get("cli"));
+            assertEquals(Long.valueOf(20), byMode.get("jdbc"));
+            // ... other contents in the same mode are used before any other mode.
+            assertEquals(OptionalLong.of(20), store.percentile("a", 2, "jdbc", 50));
+            assertEquals(OptionalLong.of(30), store.percentile("a", 2, "other", 50));
+        }
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            assertEquals("cli", store.getRuns("a").get(0).getMode());
+            assertEquals("jdbc", store.getRuns("a").get(1).getMode());
+        }
+    }
+
+    @Test
+    public void recordsHiveMode() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        BaseTask cli = TaskProvider.getInstance().createTask("hive", "h", new File(""));
+        BaseTask jdbc = TaskProvider.getInstance().createTask("hive", "h", new File(""),
+                ConfigFactory.parseString("hive.mode = jdbc"));
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            store.taskFinished(cli, new TaskResult.Builder(TaskResult.Result.SUCCESS).startTime(100).endTime(900).build());
+            store.taskFinished(jdbc, new TaskResult.Builder(TaskResult.Result.SUCCESS).startTime(100).endTime(200).build());
+            assertEquals("cli", store.getRuns("h").get(0).getMode());
+            assertEquals("jdbc", store.getRuns("h").get(1).getMode());
+            assertEquals(OptionalLong.of(800), store.percentile(cli, 50));
+            assertEquals(OptionalLong.of(100), store.percentile(jdbc, 50));
+        }
+    }
+
+    @Test
+    public void readsVersion1() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x4a524831);
+            out.writeUTF("a");
+            out.writeLong(1);
+            out.writeLong(1000);
+            out.writeLong(1010);
+            out.writeUTF("SUCCESS");
+        }
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            assertEquals(run("a", 1, 10, TaskResult.Result.SUCCESS), store.getRuns("a").get(0));
+            store.record(new TaskRun("a", 1, "jdbc", 1000, 1020, TaskResult.Result.SUCCESS));
+        }
+        // The file has been rewritten in the current format.
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            assertEquals(2, store.getRuns("a").size());
+            assertEquals("", store.getRuns("a").get(0).getMode());
+            assertEquals("jdbc", store.getRuns("a").get(1).getMode());
+        }
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            store.record(run("a", 1, 10, TaskResult.Result.SUCCESS));
+            store.record(run("b", 2, 20, TaskResult.Result.FAILED));
+        }
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            assertEquals(1, store.getRuns("a").size());
+            assertEquals(run("b", 2, 20, TaskResult.Result.FAILED), store.getRuns("b").get(0));
+            store.record(run("a", 1, 30, TaskResult.Result.SUCCESS));
+        }
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            assertEquals(2, store.getRuns("a").size());
+        }
+    }
+
+    @Test
+    public void partialRecordDiscarded() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            store.record(run("a", 1, 10, TaskResult.Result.SUCCESS));
+            store.record(run("a", 1, 20, TaskResult.Result.SUCCESS));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            assertEquals(1, store.getRuns("a").size());
+            store.record(run("a", 1, 30, TaskResult.Result.SUCCESS));
+        }
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            assertEquals(2, store.getRuns("a").size());
+            assertEquals(30, store.getRuns("a").get(1).getDuration());
+        }
+    }
+
+    @Test
+    public void retainAndCompact() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 3, 3.0)) {
+            for (long d = 1; d <= 10; d++)
+                store.record(run("a", 1, d, TaskResult.Result.SUCCESS));
+            assertEquals(3, store.getRuns("a").size());
+            assertEquals(8, store.getRuns("a").get(0).getDuration());
+        }
+        long before = file.length();
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 3, 3.0)) {
+            assertEquals(3, store.getRuns("a").size());
+        }
+        assertEquals(4 + 3 * (before - 4) / 10, file.length());
+    }
+
+    @Test
+    public void recordsFinishedTasks() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        BaseTask task = TaskProvider.getInstance().createTask("dummy", "t1", new File(""));
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            store.taskFinished(task, new TaskResult.Builder(TaskResult.Result.SUCCESS).startTime(100).endTime(350).build());
+            store.taskFinished(task, new TaskResult.Builder(TaskResult.Result.NOT_EXECUTED).build());
+            assertEquals(1, store.getRuns("t1").size());
+            assertEquals(OptionalLong.of(250), store.percentile(task, 50));
+        }
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void notAHistoryFile() throws Exception {
+        File file = folder.newFile("other.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(42);
+        }
+        TaskHistoryStore.open(file, 50, 3.0);
+    }
+
+    @Test
+    public void historyDurationEstimator() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        BaseTask task = TaskProvider.getInstance().createTask("dummy", "t1", new File(""));
+        BaseTask other = TaskProvider.getInstance().createTask("dummy", "t2", new File(""));
+        try (TaskHistoryStore store = TaskHistoryStore.open(file, 50, 3.0)) {
+            store.record(run("t1", TaskHistoryStore.contentHash(task), 1234, TaskResult.Result.SUCCESS));
+            HistoryDurationEstimator estimator = new HistoryDurationEstimator(store, 50, t -> 99L);
+            assertEquals(1234L, estimator.estimate(task));
+            assertEquals(99L, estimator.estimate(other));
+        }
+    }
+}
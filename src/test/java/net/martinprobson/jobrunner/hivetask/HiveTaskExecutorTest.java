@@ -1,5 +1,6 @@
 package net.martinprobson.jobrunner.hivetask;
 
+import com.github.dexecutor.core.task.TaskExecutionException;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import net.martinprobson.jobrunner.TaskProvider;
@@ -12,7 +13,9 @@ import org.junit.Test;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -52,4 +55,52 @@ public class HiveTaskExecutorTest {
         assertTrue(taskResult.getProcString().contains("/bin/hive"));
         assertTrue(taskResult.getProcString().contains(".hql"));
     }
-}
\ No newline at end of file
+
+    private static final Config SETTINGS = ConfigFactory.parseString("hive { " +
+            "hiveconf { hive.exec.dynamic.partition.mode = nonstrict, \"mapreduce.job.queuename\" = etl }, " +
+            "hivevar { run_date = \"2018-06-01\" } }");
+
+    @Test
+    public void executeWithSettings() throws Exception {
+        BaseTask task = taskProvider.createTask("hive","test",createFile("DUMMY"), SETTINGS);
+        TaskResult taskResult = task.execute();
+        assertTrue(taskResult.getProcString().contains("/bin/hive --hiveconf hive.exec.dynamic.partition.mode=nonstrict " +
+                "--hiveconf mapreduce.job.queuename=etl --hivevar run_date=2018-06-01 -f "));
+    }
+
+    @Test
+    public void setStatements() throws Exception {
+        BaseTask task = taskProvider.createTask("hive","test",createFile("DUMMY"), SETTINGS);
+        assertEquals(Arrays.asList("set hive.exec.dynamic.partition.mode=nonstrict",
+                "set mapreduce.job.queuename=etl",
+                "set hivevar:run_date=2018-06-01"), HiveJdbcExecutor.setStatements(task.getConfig()));
+    }
+
+    @Test
+    public void executeJdbc() throws Exception {
+        // The test data source is derby, which has no hive settings to reset.
+        Config config = ConfigFactory.parseString("hive { mode = jdbc, jdbc { reset = [], max-output-rows = 2 } }");
+        String hql = "create table hive1 (id int, name varchar(10));\n" +
+                "insert into hive1 values (1, 'one'), (2, 'two'), (3, 'three');\n" +
+                "select id, name from hive1 order by id;\n" +
+                "drop table hive1;\n";
+        BaseTask task = taskProvider.createTask("hive","executeJdbc",createFile(hql), config);
+        TaskResult taskResult = task.execute();
+        assertTrue(taskResult.succeeded());
+        assertEquals("1\tone\n2\ttwo\n[... 1 more row(s) not shown]\n", taskResult.getOutput());
+    }
+
+    @Test
+    public void executeUnknownMode() throws Exception {
+        BaseTask task = taskProvider.createTask("hive","test",createFile("DUMMY"),
+                ConfigFactory.parseString("hive.mode = beeline"));
+        try {
+            task.execute();
+        } catch (TaskExecutionException e) {
+            assertTrue(task.getTaskResult().failed());
+            assertTrue(e.getMessage().contains("Unknown hive.mode"));
+            return;
+        }
+        fail("Expected a TaskExecutionException");
+    }
+}
@@ -0,0 +1,47 @@
+package net.martinprobson.jobrunner.incremental;
+
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class IncrementalStateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TaskResult result(TaskResult.Result result) {
+        return new TaskResult.Builder(result).build();
+    }
+
+    @Test
+    public void recordsSuccessAndForgetsFailure() throws Exception {
+        File file = new File(folder.getRoot(), "state.properties");
+        BaseTask task = TaskProvider.getInstance().createTask("dummy", "a", new File(""));
+
+        IncrementalState state = IncrementalState.open(file, Collections.singletonMap("a", "f1"));
+        assertFalse(state.isUpToDate(task));
+        state.taskFinished(task, result(TaskResult.Result.SUCCESS));
+        assertTrue(state.isUpToDate(task));
+
+        assertTrue(IncrementalState.open(file, Collections.singletonMap("a", "f1")).isUpToDate(task));
+        assertFalse(IncrementalState.open(file, Collections.singletonMap("a", "f2")).isUpToDate(task));
+
+        state.taskFinished(task, result(TaskResult.Result.FAILED));
+        assertFalse(IncrementalState.open(file, Collections.singletonMap("a", "f1")).isUpToDate(task));
+    }
+
+    @Test
+    public void stateFilePerTaskDirectory() throws Exception {
+        File stateDir = folder.getRoot();
+        assertEquals(IncrementalState.stateFile(stateDir, "tasks"), IncrementalState.stateFile(stateDir, "./tasks"));
+        assertNotEquals(IncrementalState.stateFile(stateDir, "tasks"), IncrementalState.stateFile(stateDir, "other"));
+    }
+}
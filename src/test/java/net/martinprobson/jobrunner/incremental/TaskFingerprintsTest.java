@@ -0,0 +1,73 @@
+package net.martinprobson.jobrunner.incremental;
+
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TaskFingerprintsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BaseTask task(String id, String content, Map<String, Object> config) throws Exception {
+        File file = new File(folder.getRoot(), id + ".txt");
+        FileUtils.write(file, content, Charset.defaultCharset());
+        return TaskProvider.getInstance().createTask("dummy", id, file, ConfigFactory.parseMap(config));
+    }
+
+    private BaseTask task(String id, String content, String... dependsOn) throws Exception {
+        return task(id, content, Collections.singletonMap("depends-on.id", Arrays.asList(dependsOn)));
+    }
+
+    @Test
+    public void stable() throws Exception {
+        Map<String, String> first = TaskFingerprints.compute(Arrays.asList(task("a", "A"), task("b", "B", "a")));
+        Map<String, String> second = TaskFingerprints.compute(Arrays.asList(task("a", "A"), task("b", "B", "a")));
+        assertEquals(first, second);
+        assertNotEquals(first.get("a"), first.get("b"));
+    }
+
+    @Test
+    public void contentChangeFlowsDownstream() throws Exception {
+        Map<String, String> before = TaskFingerprints.compute(Arrays.asList(task("a", "A"), task("b", "B", "a"), task("c", "C")));
+        Map<String, String> after = TaskFingerprints.compute(Arrays.asList(task("a", "A2"), task("b", "B", "a"), task("c", "C")));
+        assertNotEquals(before.get("a"), after.get("a"));
+        assertNotEquals(before.get("b"), after.get("b"));
+        assertEquals(before.get("c"), after.get("c"));
+    }
+
+    @Test
+    public void configChange() throws Exception {
+        String before = TaskFingerprints.compute(Collections.singletonList(
+                task("a", "${x}", Collections.singletonMap("x", "1")))).get("a");
+        String after = TaskFingerprints.compute(Collections.singletonList(
+                task("a", "${x}", Collections.singletonMap("x", "2")))).get("a");
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    public void frameworkConfigIgnored() throws Exception {
+        String before = TaskFingerprints.compute(Collections.singletonList(
+                task("a", "A", Collections.emptyMap()))).get("a");
+        String after = TaskFingerprints.compute(Collections.singletonList(
+                task("a", "A", Collections.singletonMap("jobrunner.threads", 99)))).get("a");
+        assertEquals(before, after);
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void cycle() throws Exception {
+        TaskFingerprints.compute(Arrays.asList(task("a", "A", "b"), task("b", "B", "a")));
+    }
+}
@@ -0,0 +1,82 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DBSourceTest {
+
+    @Test
+    public void singleDataSource() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<DataSource>> sources = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                sources.add(executor.submit(() -> {
+                    start.await();
+                    return DBSource.get();
+                }));
+            start.countDown();
+            for (Future<DataSource> source : sources)
+                assertSame(DBSource.get(), source.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void configured() throws Exception {
+        GenericObjectPool<PoolableConnection> pool = DBSource.getPool();
+        // jdbc.pool.max-total = 0, so jobrunner.threads.
+        assertEquals(2, pool.getMaxTotal());
+        assertTrue(pool.getTestOnBorrow());
+        assertEquals(300000, pool.getMaxWaitMillis());
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(pool.getJmxName()));
+    }
+
+    @Test
+    public void namedSources() throws Exception {
+        assertEquals(new TreeSet<>(Arrays.asList(DBSource.DEFAULT, "other")), DBSource.names());
+        assertNotSame(DBSource.get(), DBSource.get("other"));
+        assertSame(DBSource.get(), DBSource.get(DBSource.DEFAULT));
+        // Falls back to the jdbc block for the driver and pool settings, overrides max-total.
+        assertEquals(1, DBSource.getPool("other").getMaxTotal());
+        assertEquals("jdbc:derby:memory:otherDB;create=true", DBSource.config("other").getString("url"));
+        assertEquals("org.apache.derby.jdbc.EmbeddedDriver", DBSource.config("other").getString("driver"));
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void unknownSource() throws Exception {
+        DBSource.get("missing");
+    }
+
+    @Test
+    public void prewarmAndMetrics() throws Exception {
+        GenericObjectPool<PoolableConnection> pool = DBSource.getPool();
+        DBSource.prewarm(DBSource.DEFAULT, 2);
+        assertEquals(2, pool.getNumIdle() + pool.getNumActive());
+        // Limited to max-total.
+        DBSource.prewarm(DBSource.DEFAULT, 10);
+        assertEquals(2, pool.getNumIdle() + pool.getNumActive());
+        try (Connection conn = DBSource.get().getConnection()) {
+            assertTrue(conn.isValid(1));
+            assertTrue(DBSource.metrics(DBSource.DEFAULT).startsWith("active=1 idle=1 "));
+        }
+    }
+}
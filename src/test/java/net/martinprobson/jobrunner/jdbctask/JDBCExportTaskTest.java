@@ -0,0 +1,148 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import com.github.dexecutor.core.task.TaskExecutionException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class JDBCExportTaskTest {
+
+    private static TaskProvider taskProvider;
+
+    private static File createFile(String content) throws Exception {
+        File file = File.createTempFile("JDBCExportTaskTest", "");
+        FileUtils.write(file, content, Charset.defaultCharset());
+        return file;
+    }
+
+    private static Config export(File output, String format) {
+        return ConfigFactory.parseString("jdbc.export { format = " + format + ", fetch-size = 2, buffer-size = 64 }")
+                .withValue("jdbc.export.output", ConfigValueFactory.fromAnyRef(output.getPath()));
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        taskProvider = TaskProvider.getInstance();
+        String sql = "create table export1 (id int, name varchar(20), amount double);\n" +
+                "insert into export1 values (1, 'one', 1.5);\n" +
+                "insert into export1 values (2, 'two, \"2\"', null);\n" +
+                "insert into export1 values (3, null, 3.25);\n";
+        assertTrue(taskProvider.createTask("jdbc", "JDBCExportTaskTest setup", createFile(sql)).execute().succeeded());
+    }
+
+    @Test
+    public void exportCsv() throws Exception {
+        File output = new File(Files.createTempDirectory("JDBCExportTaskTest").toFile(), "export1.csv");
+        BaseTask task = taskProvider.createTask("jdbc-export", "exportCsv",
+                createFile("select id, name, amount from export1 order by id"), export(output, "csv"));
+        TaskResult result = task.execute();
+        assertTrue(result.succeeded());
+        String csv = FileUtils.readFileToString(output, StandardCharsets.UTF_8);
+        assertEquals("ID,NAME,AMOUNT\r\n" +
+                "1,one,1.5\r\n" +
+                "2,\"two, \"\"2\"\"\",\r\n" +
+                "3,,3.25\r\n", csv);
+        assertEquals("rows=3 bytes=" + output.length() + " file=" + output.getAbsolutePath(), result.getOutput());
+        assertFalse(new File(output.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void exportColumnar() throws Exception {
+        File output = new File(Files.createTempDirectory("JDBCExportTaskTest").toFile(), "export1.jrc");
+        Config config = export(output, "columnar").withValue("jdbc.export.columnar.row-group-size",
+                ConfigValueFactory.fromAnyRef(2));
+        BaseTask task = taskProvider.createTask("jdbc-export", "exportColumnar",
+                createFile("select id, name, amount from export1 order by id"), config);
+        assertTrue(task.execute().succeeded());
+        try (DataInputStream in = new DataInputStream(new FileInputStream(output))) {
+            byte[] magic = new byte[4];
+            in.readFully(magic);
+            assertArrayEquals(ColumnarResultSetWriter.MAGIC, magic);
+            assertEquals(3, in.readInt());
+            byte[] kinds = new byte[3];
+            for (int i = 0; i < 3; i++) {
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                kinds[i] = in.readByte();
+                in.readInt();
+            }
+            assertArrayEquals(new byte[]{ColumnarResultSetWriter.LONG, ColumnarResultSetWriter.STRING,
+                    ColumnarResultSetWriter.DOUBLE}, kinds);
+            // First row group: rows 1 and 2, amount is null in row 2.
+            assertEquals(2, in.readInt());
+            assertEquals(0, in.readByte());
+            assertEquals(1, in.readLong());
+            assertEquals(2, in.readLong());
+            assertEquals(0, in.readByte());
+            byte[] one = new byte[in.readInt()];
+            in.readFully(one);
+            assertEquals("one", new String(one, StandardCharsets.UTF_8));
+            in.skipBytes(in.readInt());
+            assertEquals(2, in.readByte());
+            assertEquals(1.5, in.readDouble(), 0.0);
+            // Second row group: row 3, name is null.
+            assertEquals(1, in.readInt());
+            assertEquals(0, in.readByte());
+            assertEquals(3, in.readLong());
+            assertEquals(1, in.readByte());
+            assertEquals(0, in.readByte());
+            assertEquals(3.25, in.readDouble(), 0.0);
+            assertEquals(0, in.readInt());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void exportRunsPrecedingStatements() throws Exception {
+        File output = new File(Files.createTempDirectory("JDBCExportTaskTest").toFile(), "export2.csv");
+        String sql = "create table export2 (id int);\n" +
+                "insert into export2 values (7);\n" +
+                "select id from export2;\n";
+        BaseTask task = taskProvider.createTask("jdbc-export", "exportRunsPrecedingStatements", createFile(sql),
+                export(output, "csv").withValue("jdbc.export.csv.header", ConfigValueFactory.fromAnyRef(false)));
+        assertTrue(task.execute().succeeded());
+        assertEquals("7\r\n", FileUtils.readFileToString(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void exportFailure() throws Exception {
+        File output = new File(Files.createTempDirectory("JDBCExportTaskTest").toFile(), "export3.csv");
+        BaseTask task = taskProvider.createTask("jdbc-export", "exportFailure",
+                createFile("select * from no_such_table"), export(output, "csv"));
+        try {
+            task.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException e) {
+            assertTrue(task.getTaskResult().failed());
+        }
+        assertFalse(output.exists());
+        assertFalse(new File(output.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void exportWithoutOutput() throws Exception {
+        BaseTask task = taskProvider.createTask("jdbc-export", "exportWithoutOutput",
+                createFile("select * from export1"));
+        try {
+            task.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException e) {
+            assertTrue(task.getTaskResult().failed());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package net.martinprobson.jobrunner.jdbctask;
 
 import com.github.dexecutor.core.task.TaskExecutionException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import net.martinprobson.jobrunner.*;
 import net.martinprobson.jobrunner.common.BaseTask;
 import nl.jqno.equalsverifier.EqualsVerifier;
@@ -9,7 +11,12 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
+import java.lang.reflect.Proxy;
 import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 import static org.junit.Assert.*;
 
@@ -72,6 +79,119 @@ public class JDBCTaskTest {
         assertTrue(result.succeeded());
     }
 
+    private static Config batch(int size, boolean singleTransaction) {
+        return ConfigFactory.parseString("jdbc.batch { enabled = true, size = " + size +
+                ", single-transaction = " + singleTransaction + " }");
+    }
+
+    private static int count(String table) throws Exception {
+        try (Connection conn = DBSource.get().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("select count(*) from " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void TestExecuteBatched() throws Exception {
+        String sql = "create table batch1 (bar varchar(1));\n" +
+                "insert into batch1 values ('1');\n" +
+                "insert into batch1 values ('2');\n" +
+                "INSERT into batch1 values ('3');\n" +
+                "update batch1 set bar = 'x' where bar <> '1';\n" +
+                "select * from batch1;\n" +
+                "delete from batch1 where bar = '1';\n";
+        BaseTask jdbcTask = taskProvider.createTask("jdbc", "TestExecuteBatched", createFile(sql), batch(2, false));
+        TaskResult result = jdbcTask.execute();
+        assertTrue(result.succeeded());
+        assertEquals("batch 1: 2 statement(s), 2 row(s)\n" +
+                "batch 2: 2 statement(s), 3 row(s)\n" +
+                "batch 3: 1 statement(s), 1 row(s)\n", result.getOutput());
+        assertEquals(2, count("batch1"));
+    }
+
+    @Test
+    public void TestExecuteBatchedRollback() throws Exception {
+        BaseTask create = taskProvider.createTask("jdbc", "TestExecuteBatchedRollback 1",
+                createFile("create table batch2 (bar varchar(1));"));
+        assertTrue(create.execute().succeeded());
+        String sql = "insert into batch2 values ('1');\n" +
+                "insert into batch2 values ('2');\n" +
+                "insert into batch2 values ('too long');\n";
+        BaseTask jdbcTask = taskProvider.createTask("jdbc", "TestExecuteBatchedRollback 2", createFile(sql),
+                batch(2, true));
+        try {
+            jdbcTask.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException e) {
+            assertTrue(jdbcTask.getTaskResult().failed());
+        }
+        assertEquals(0, count("batch2"));
+    }
+
+    @Test
+    public void TestExecuteNamedSource() throws Exception {
+        BaseTask jdbcTask = taskProvider.createTask("jdbc", "TestExecuteNamedSource", createFile(
+                "create table other1 (bar varchar(1));\ninsert into other1 values ('1');"),
+                ConfigFactory.parseString("jdbc.source = \"other\""));
+        assertTrue(jdbcTask.execute().succeeded());
+        try (Connection conn = DBSource.get("other").getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("select count(*) from other1")) {
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+        }
+        try {
+            count("other1");
+            fail("Expected other1 to only exist in the other data source");
+        } catch (java.sql.SQLException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void TestExecuteUnknownSource() throws Exception {
+        BaseTask jdbcTask = taskProvider.createTask("jdbc", "TestExecuteUnknownSource", createFile("select 1;"),
+                ConfigFactory.parseString("jdbc.source = \"missing\""));
+        try {
+            jdbcTask.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException e) {
+            assertTrue(jdbcTask.getTaskResult().failed());
+            assertTrue(e.getMessage(), e.getMessage().contains("Unknown JDBC data source: missing"));
+        }
+    }
+
+    @Test
+    public void poolMetricsOfUnknownSource() throws Exception {
+        BaseTask jdbcTask = taskProvider.createTask("jdbc", "poolMetricsOfUnknownSource", createFile("select 1;"),
+                ConfigFactory.parseString("jdbc.source = \"missing\""));
+        // Logged as the task fails, so must not replace the task's own error.
+        JDBCTaskExecutor.logPoolMetrics(jdbcTask, new ConfiguredConnectionRouter());
+    }
+
+    @Test
+    public void restoreAutoCommitFails() {
+        Connection conn = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    throw new SQLException("connection closed");
+                });
+        // Called from a finally block, so must not replace the task's own error.
+        JDBCTaskExecutor.restoreAutoCommit(conn, true);
+    }
+
+    @Test
+    public void isDml() {
+        assertTrue(JDBCTaskExecutor.isDml(" insert into foo values (1)"));
+        assertTrue(JDBCTaskExecutor.isDml("UPDATE foo set a = 1"));
+        assertTrue(JDBCTaskExecutor.isDml("delete from foo"));
+        assertTrue(JDBCTaskExecutor.isDml("merge into foo using bar on (1 = 1)"));
+        assertFalse(JDBCTaskExecutor.isDml("select * from foo"));
+        assertFalse(JDBCTaskExecutor.isDml("create table inserts (a int)"));
+        assertFalse(JDBCTaskExecutor.isDml("updated"));
+    }
+
     @Test
     public void equalsContract() {
         EqualsVerifier.forClass(JDBCTask.class)
@@ -0,0 +1,117 @@
+package net.martinprobson.jobrunner.jdbctask;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SqlStatementReaderTest {
+
+    private static List<String> split(String script) {
+        List<String> stmts = new ArrayList<>();
+        new SqlStatementReader(new StringReader(script)).forEachRemaining(stmts::add);
+        return stmts;
+    }
+
+    private static List<String> splitWithBackslashEscapes(String script) {
+        List<String> stmts = new ArrayList<>();
+        new SqlStatementReader(new StringReader(script), true).forEachRemaining(stmts::add);
+        return stmts;
+    }
+
+    @Test
+    public void simple() {
+        assertEquals(Arrays.asList("create table foo (a int)", "insert into foo values (1)"),
+                split("create table foo (a int);\ninsert into foo values (1);\n"));
+    }
+
+    @Test
+    public void lastStatementWithoutSemicolon() {
+        assertEquals(Arrays.asList("select 1", "select 2"), split("select 1;\nselect 2\n"));
+    }
+
+    @Test
+    public void emptyStatements() {
+        assertEquals(Collections.singletonList("select 1"), split(";;\n  ; select 1;  ;\n"));
+        assertEquals(Collections.emptyList(), split(" \n-- just a comment\n"));
+    }
+
+    @Test
+    public void quotes() {
+        assertEquals(Arrays.asList("select 'a;b', \"c;d\", `e;f` from t", "select 'it''s;' from t"),
+                split("select 'a;b', \"c;d\", `e;f` from t; select 'it''s;' from t;"));
+    }
+
+    @Test
+    public void trailingBackslash() {
+        // In standard SQL a backslash is just a character, 'C:\' is a complete literal.
+        assertEquals(Arrays.asList("insert into t values ('C:\\')", "insert into t values ('x')"),
+                split("insert into t values ('C:\\');\ninsert into t values ('x');"));
+    }
+
+    @Test
+    public void backslashEscapes() {
+        assertEquals(Arrays.asList("select 'back\\';slash', \"d\\\";q\" from t", "select `a\\`", "select 2"),
+                splitWithBackslashEscapes("select 'back\\';slash', \"d\\\";q\" from t;select `a\\`;select 2"));
+    }
+
+    @Test
+    public void commentMarkersInQuotes() {
+        assertEquals(Collections.singletonList("select '--not a comment', '/* nor this */' from t"),
+                split("select '--not a comment', '/* nor this */' from t;"));
+    }
+
+    @Test
+    public void comments() {
+        assertEquals(Arrays.asList("select 1", "select 2 \n from t"),
+                split("-- header; comment\nselect 1; /* block; \n comment */ select 2 -- trailing;\n from t;"));
+    }
+
+    @Test
+    public void hintsKept() {
+        assertEquals(Collections.singletonList("select /*+ parallel(4) */ * from t"),
+                split("select /*+ parallel(4) */ * from t;"));
+    }
+
+    @Test
+    public void dollarQuotes() {
+        String body = "create function f() returns int as $$ begin; return 1; end; $$ language plpgsql";
+        String tagged = "do $body$ begin; perform 1; end $body$";
+        assertEquals(Arrays.asList(body, tagged, "select $1, v$session from t"),
+                split(body + ";\n" + tagged + ";\nselect $1, v$session from t;"));
+    }
+
+    @Test
+    public void minusAndDivide() {
+        assertEquals(Collections.singletonList("select a - b / c from t"), split("select a - b / c from t;"));
+    }
+
+    @Test
+    public void readsLazily() {
+        // An endless script.
+        Reader reader = new Reader() {
+            private final String stmt = "insert into t values (1);\n";
+            private long pos = 0;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                for (int i = 0; i < len; i++)
+                    cbuf[off + i] = stmt.charAt((int) (pos++ % stmt.length()));
+                return len;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SqlStatementReader stmts = new SqlStatementReader(reader);
+        for (int i = 0; i < 1000; i++)
+            assertEquals("insert into t values (1)", stmts.next());
+    }
+}
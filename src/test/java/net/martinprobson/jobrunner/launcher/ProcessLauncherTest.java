@@ -0,0 +1,97 @@
+package net.martinprobson.jobrunner.launcher;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ProcessLauncherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Config CONFIG = ConfigFactory.parseString(
+            "java = \"\", java-options = [\"-Xmx32m\"], start-timeout = 30s");
+
+    private void run(ProcessLauncher launcher) throws Exception {
+        File stdout = new File(folder.getRoot(), "out");
+        File stderr = new File(folder.getRoot(), "err");
+        LaunchedProcess process = launcher.launch(Arrays.asList("sh", "-c", "echo out; echo err >&2; exit 2"),
+                stdout, stderr);
+        assertEquals(Integer.valueOf(2), process.waitFor(10000));
+        assertTrue(process.getSpawnNanos() > 0);
+        assertEquals("out\n", FileUtils.readFileToString(stdout, Charset.defaultCharset()));
+        assertEquals("err\n", FileUtils.readFileToString(stderr, Charset.defaultCharset()));
+    }
+
+    private void kill(ProcessLauncher launcher) throws Exception {
+        LaunchedProcess process = launcher.launch(Arrays.asList("sleep", "30"),
+                new File(folder.getRoot(), "out"), new File(folder.getRoot(), "err"));
+        assertNull(process.waitFor(200));
+        process.kill();
+        assertNotNull(process.waitFor(10000));
+    }
+
+    private void noSuchCommand(ProcessLauncher launcher) throws Exception {
+        try {
+            launcher.launch(Arrays.asList(new File(folder.getRoot(), "no-such-command").getAbsolutePath()),
+                    new File(folder.getRoot(), "out"), new File(folder.getRoot(), "err"));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("no-such-command"));
+        }
+    }
+
+    @Test
+    public void direct() throws Exception {
+        ProcessLauncher launcher = ProcessLauncher.forMode("direct", CONFIG);
+        run(launcher);
+        kill(launcher);
+        noSuchCommand(launcher);
+    }
+
+    @Test
+    public void helper() throws Exception {
+        ProcessLauncher launcher = ProcessLauncher.forMode("helper", CONFIG);
+        assertSame(launcher, ProcessLauncher.forMode("helper", CONFIG));
+        run(launcher);
+        kill(launcher);
+        noSuchCommand(launcher);
+        // The helper is still usable after a failed launch.
+        run(launcher);
+    }
+
+    @Test
+    public void helperInterrupted() throws Exception {
+        ProcessLauncher launcher = ProcessLauncher.forMode("helper", CONFIG);
+        run(launcher);
+        File started = new File(folder.getRoot(), "started");
+        Thread.currentThread().interrupt();
+        try {
+            launcher.launch(Arrays.asList("sh", "-c", "sleep 2; touch " + started.getAbsolutePath()),
+                    new File(folder.getRoot(), "out"), new File(folder.getRoot(), "err"));
+            fail("Expected an InterruptedIOException");
+        } catch (InterruptedIOException e) {
+            assertTrue(Thread.interrupted());
+        }
+        // The helper may have started the process anyway, if so it has been killed.
+        Thread.sleep(4000);
+        assertFalse(started.exists());
+        run(launcher);
+    }
+
+    @Test
+    public void jproc() throws Exception {
+        assertNull(ProcessLauncher.forMode("jproc", CONFIG));
+    }
+}
@@ -0,0 +1,28 @@
+package net.martinprobson.jobrunner.main;
+
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JobRuntimeTest {
+
+    private static boolean direct(String config) throws JobRunnerException {
+        try (JobRuntime runtime = new JobRuntime(ConfigFactory.parseString(config).withFallback(ConfigFactory.load()),
+                false)) {
+            return runtime.isDirect();
+        }
+    }
+
+    @Test
+    public void retriesNeedSpareThreads() throws Exception {
+        assertTrue(direct(""));
+        // A task waiting to retry sleeps on its thread, which would take a worker out of a fixed pool ...
+        assertFalse(direct("retry.max-attempts = 2"));
+        assertFalse(direct("retry.task-types.hive.max-attempts = 3"));
+        // ... but the compiled runner does not sleep.
+        assertTrue(direct("retry.max-attempts = 2, jobrunner.runner = compiled"));
+    }
+}
@@ -0,0 +1,49 @@
+package net.martinprobson.jobrunner.main;
+
+import net.martinprobson.jobrunner.TaskResult;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+public class RunJobIncrementalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TaskResult.Result result(String id) {
+        return RunJob.getJob().getId(id).getTaskResult().getResult();
+    }
+
+    @Test
+    public void skipsUnchangedTasks() throws Exception {
+        File tasks = folder.newFolder("tasks");
+        FileUtils.write(new File(tasks, "a.txt"), "a", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "b.txt"), "b", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "b.conf"), "depends-on { id = [\"a.txt\"] }", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "c.txt"), "c", Charset.defaultCharset());
+        String dir = tasks.getAbsolutePath();
+
+        assertEquals(0, RunJob.run(dir, dir, true, false));
+        assertEquals(TaskResult.Result.SUCCESS, result("a.txt"));
+
+        assertEquals(0, RunJob.run(dir, dir, true, false));
+        assertEquals(TaskResult.Result.SKIPPED_UP_TO_DATE, result("a.txt"));
+        assertEquals(TaskResult.Result.SKIPPED_UP_TO_DATE, result("b.txt"));
+        assertEquals(TaskResult.Result.SKIPPED_UP_TO_DATE, result("c.txt"));
+
+        FileUtils.write(new File(tasks, "a.txt"), "a changed", Charset.defaultCharset());
+        assertEquals(0, RunJob.run(dir, dir, true, false));
+        assertEquals(TaskResult.Result.SUCCESS, result("a.txt"));
+        assertEquals(TaskResult.Result.SUCCESS, result("b.txt"));
+        assertEquals(TaskResult.Result.SKIPPED_UP_TO_DATE, result("c.txt"));
+
+        assertEquals(0, RunJob.run(dir, dir, false, false));
+        assertEquals(TaskResult.Result.SUCCESS, result("c.txt"));
+    }
+}
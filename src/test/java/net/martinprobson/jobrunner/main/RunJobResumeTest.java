@@ -0,0 +1,60 @@
+package net.martinprobson.jobrunner.main;
+
+import net.martinprobson.jobrunner.TaskResult;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RunJobResumeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TaskResult result(String id) {
+        return RunJob.getJob().getId(id).getTaskResult();
+    }
+
+    @Test
+    public void resumeRunsOnlyIncompleteTasks() throws Exception {
+        File tasks = folder.newFolder("tasks");
+        FileUtils.write(new File(tasks, "a.txt"), "a", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "b.txt"), "b", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "b.conf"), "depends-on { id = [\"a.txt\"] }", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "c.txt"), "c", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "c.conf"), "depends-on { id = [\"b.txt\"] }", Charset.defaultCharset());
+        FileUtils.write(new File(tasks, "d.txt"), "d", Charset.defaultCharset());
+        String dir = tasks.getAbsolutePath();
+
+        assertEquals(0, RunJob.run(dir, dir, false, false));
+        assertEquals(TaskResult.Result.SUCCESS, result("c.txt").getResult());
+
+        // b has changed since it completed, so b and c (downstream of b) are run again.
+        FileUtils.write(new File(tasks, "b.txt"), "b changed", Charset.defaultCharset());
+        assertEquals(0, RunJob.run(dir, dir, false, true));
+        for (String id : new String[]{"a.txt", "b.txt", "c.txt", "d.txt"})
+            assertEquals(id, TaskResult.Result.SUCCESS, result(id).getResult());
+        assertEquals(0, result("a.txt").getStartTime());
+        assertEquals(0, result("d.txt").getStartTime());
+        assertTrue(result("b.txt").getStartTime() > 0);
+        assertTrue(result("c.txt").getStartTime() > 0);
+
+        // Everything has completed.
+        assertEquals(0, RunJob.run(dir, dir, false, true));
+        assertEquals(0, result("b.txt").getStartTime());
+    }
+
+    @Test
+    public void resumeWithoutCheckpoint() throws Exception {
+        File tasks = folder.newFolder("tasks");
+        FileUtils.write(new File(tasks, "a.txt"), "a", Charset.defaultCharset());
+        String dir = tasks.getAbsolutePath();
+        assertEquals(2, RunJob.run(dir, dir, false, true));
+    }
+}
@@ -0,0 +1,87 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertEquals;
+
+public class CriticalPathTest {
+
+    private static TaskProvider taskProvider;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        taskProvider = TaskProvider.getInstance();
+    }
+
+    private static BaseTask task(String id, String... dependsOn) throws JobRunnerException {
+        return taskProvider.createTask("dummy", id, new File(""),
+                ConfigFactory.parseMap(Collections.singletonMap("depends-on.id", Arrays.asList(dependsOn))));
+    }
+
+    /*
+     *   a(10) -> b(10) -> c(100)
+     *   d(50) -> c(100)
+     *   e(30)
+     */
+    private static List<BaseTask> tasks() throws JobRunnerException {
+        return Arrays.asList(task("a"), task("b", "a"), task("c", "b", "d"), task("d"), task("e"));
+    }
+
+    private static final Map<String, Long> durations = new HashMap<>();
+
+    static {
+        durations.put("a", 10L);
+        durations.put("b", 10L);
+        durations.put("c", 100L);
+        durations.put("d", 50L);
+        durations.put("e", 30L);
+    }
+
+    @Test
+    public void getRemaining() throws JobRunnerException {
+        CriticalPath criticalPath = CriticalPath.compute(tasks(), t -> durations.get(t.getId()));
+        assertEquals(120L, criticalPath.getRemaining("a"));
+        assertEquals(110L, criticalPath.getRemaining("b"));
+        assertEquals(100L, criticalPath.getRemaining("c"));
+        assertEquals(150L, criticalPath.getRemaining("d"));
+        assertEquals(30L, criticalPath.getRemaining("e"));
+        assertEquals(0L, criticalPath.getRemaining("unknown"));
+    }
+
+    @Test
+    public void longestFirst() throws JobRunnerException {
+        List<BaseTask> tasks = new ArrayList<>(tasks());
+        tasks.sort(CriticalPath.compute(tasks, t -> durations.get(t.getId())).longestFirst());
+        List<String> ids = new ArrayList<>();
+        for (BaseTask task : tasks)
+            ids.add(task.getId());
+        assertEquals(Arrays.asList("d", "a", "b", "c", "e"), ids);
+    }
+
+    @Test
+    public void configuredDuration() throws JobRunnerException {
+        CriticalPath criticalPath = CriticalPath.compute(tasks(), new ConfiguredDurationEstimator());
+        assertEquals(3 * 60000L, criticalPath.getRemaining("a"));
+    }
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void cycle() throws JobRunnerException {
+        thrown.expect(JobRunnerException.class);
+        thrown.expectMessage(startsWith("CriticalPath: cyclic"));
+        CriticalPath.compute(Arrays.asList(task("a", "c"), task("b", "a"), task("c", "b")), t -> 1L);
+    }
+}
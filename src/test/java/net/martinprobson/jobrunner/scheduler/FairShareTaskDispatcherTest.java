@@ -0,0 +1,139 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.common.BaseTask;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class FairShareTaskDispatcherTest {
+
+    private static TaskProvider taskProvider;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        taskProvider = TaskProvider.getInstance();
+    }
+
+    private static final Comparator<BaseTask> FIFO = (t1, t2) -> 0;
+
+    private static void waitForWaiting(FairShareTaskDispatcher dispatcher, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && dispatcher.getWaiting() != count; i++)
+            Thread.sleep(10);
+        assertEquals(count, dispatcher.getWaiting());
+    }
+
+    private static void waitForDispatched(List<String> dispatched, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && dispatched.size() != count; i++)
+            Thread.sleep(10);
+        assertEquals(count, dispatched.size());
+    }
+
+    /**
+     * Acquire a slot for a new task on another thread (which records the task id once dispatched).
+     */
+    private static BaseTask acquire(FairShareTaskDispatcher.Share share, String id, List<String> dispatched)
+            throws Exception {
+        BaseTask task = taskProvider.createTask("dummy", id, new File(""));
+        Thread t = new Thread(() -> {
+            try {
+                share.acquire(task);
+                dispatched.add(id);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return task;
+    }
+
+    @Test
+    public void smallJobNotQueuedBehindLargeJob() throws Exception {
+        FairShareTaskDispatcher dispatcher = new FairShareTaskDispatcher(2, Collections.emptyMap());
+        FairShareTaskDispatcher.Share large = dispatcher.register("large", 1, 0, FIFO);
+        List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+        BaseTask l1 = acquire(large, "l1", dispatched);
+        acquire(large, "l2", dispatched);
+        waitForDispatched(dispatched, 2);
+        for (int i = 3; i <= 6; i++) {
+            acquire(large, "l" + i, dispatched);
+            waitForWaiting(dispatcher, i - 2);
+        }
+        FairShareTaskDispatcher.Share small = dispatcher.register("small", 1, 0, FIFO);
+        acquire(small, "s1", dispatched);
+        waitForWaiting(dispatcher, 5);
+
+        large.release(l1);
+        waitForWaiting(dispatcher, 4);
+        waitForDispatched(dispatched, 3);
+        assertEquals("s1", dispatched.get(dispatched.size() - 1));
+        assertEquals(1, small.getRunning());
+        assertEquals(1, large.getRunning());
+    }
+
+    @Test
+    public void weights() throws Exception {
+        FairShareTaskDispatcher dispatcher = new FairShareTaskDispatcher(4, Collections.emptyMap());
+        FairShareTaskDispatcher.Share heavy = dispatcher.register("heavy", 3, 0, FIFO);
+        FairShareTaskDispatcher.Share light = dispatcher.register("light", 1, 0, FIFO);
+        // Fill the slots from a third share, so that both queue up before any slot is free.
+        FairShareTaskDispatcher.Share filler = dispatcher.register("filler", 1, 0, FIFO);
+        List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+        List<BaseTask> fill = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            fill.add(acquire(filler, "f" + i, dispatched));
+        waitForDispatched(dispatched, 4);
+        for (int i = 0; i < 4; i++) {
+            acquire(heavy, "h" + i, dispatched);
+            acquire(light, "l" + i, dispatched);
+        }
+        waitForWaiting(dispatcher, 8);
+        filler.close();
+        for (BaseTask task : fill)
+            filler.release(task);
+        waitForDispatched(dispatched, 8);
+        assertEquals(3, heavy.getRunning());
+        assertEquals(1, light.getRunning());
+        assertEquals(4, dispatcher.getRunning());
+    }
+
+    @Test
+    public void maxConcurrency() throws Exception {
+        FairShareTaskDispatcher dispatcher = new FairShareTaskDispatcher(3, Collections.emptyMap());
+        FairShareTaskDispatcher.Share share = dispatcher.register("capped", 1, 1, FIFO);
+        List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+        BaseTask t1 = acquire(share, "t1", dispatched);
+        waitForDispatched(dispatched, 1);
+        acquire(share, "t2", dispatched);
+        waitForWaiting(dispatcher, 1);
+        assertEquals(1, dispatcher.getRunning());
+        share.release(t1);
+        waitForDispatched(dispatched, 2);
+        assertEquals(Arrays.asList("t1", "t2"), dispatched);
+    }
+
+    @Test
+    public void typeLimitsApplyAcrossShares() throws Exception {
+        FairShareTaskDispatcher dispatcher = new FairShareTaskDispatcher(4, Collections.singletonMap("dummy", 1));
+        FairShareTaskDispatcher.Share a = dispatcher.register("a", 1, 0, FIFO);
+        FairShareTaskDispatcher.Share b = dispatcher.register("b", 1, 0, FIFO);
+        List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+        BaseTask a1 = acquire(a, "a1", dispatched);
+        waitForDispatched(dispatched, 1);
+        acquire(b, "b1", dispatched);
+        waitForWaiting(dispatcher, 1);
+        a.release(a1);
+        waitForDispatched(dispatched, 2);
+        assertEquals(Arrays.asList("a1", "b1"), dispatched);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidWeight() {
+        new FairShareTaskDispatcher(1, Collections.emptyMap()).register("zero", 0, 0, FIFO);
+    }
+}
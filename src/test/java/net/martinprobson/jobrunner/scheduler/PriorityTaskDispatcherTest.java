@@ -0,0 +1,111 @@
+package net.martinprobson.jobrunner.scheduler;
+
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.common.BaseTask;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PriorityTaskDispatcherTest {
+
+    private static TaskProvider taskProvider;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        taskProvider = TaskProvider.getInstance();
+    }
+
+    private static void waitForWaiting(PriorityTaskDispatcher dispatcher, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && dispatcher.getWaiting() != count; i++)
+            Thread.sleep(10);
+        assertEquals(count, dispatcher.getWaiting());
+    }
+
+    @Test
+    public void dispatchInPriorityOrder() throws Exception {
+        Map<String, Integer> priority = new HashMap<>();
+        priority.put("low", 1);
+        priority.put("medium", 2);
+        priority.put("high", 3);
+        PriorityTaskDispatcher dispatcher = new PriorityTaskDispatcher(1,
+                Comparator.comparing((BaseTask t) -> priority.getOrDefault(t.getId(), 0)).reversed());
+
+        BaseTask first = taskProvider.createTask("dummy", "first", new File(""));
+        dispatcher.acquire(first);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        int waiting = 0;
+        for (String id : new String[]{"medium", "low", "high"}) {
+            BaseTask task = taskProvider.createTask("dummy", id, new File(""));
+            Thread t = new Thread(() -> {
+                try {
+                    dispatcher.acquire(task);
+                    order.add(task.getId());
+                    dispatcher.release(task);
+                } catch (InterruptedException e) {
+                    fail("Interrupted");
+                }
+            });
+            t.start();
+            threads.add(t);
+            waitForWaiting(dispatcher, ++waiting);
+        }
+        dispatcher.release(first);
+        for (Thread t : threads)
+            t.join(5000);
+        assertEquals(Arrays.asList("high", "medium", "low"), order);
+    }
+
+    @Test
+    public void slots() throws Exception {
+        PriorityTaskDispatcher dispatcher = new PriorityTaskDispatcher(2, Comparator.comparing(BaseTask::getId));
+        BaseTask t1 = taskProvider.createTask("dummy", "t1", new File(""));
+        BaseTask t2 = taskProvider.createTask("dummy", "t2", new File(""));
+        BaseTask t3 = taskProvider.createTask("dummy", "t3", new File(""));
+        dispatcher.acquire(t1);
+        dispatcher.acquire(t2);
+        Thread t = new Thread(() -> {
+            try {
+                dispatcher.acquire(t3);
+            } catch (InterruptedException e) {
+                fail("Interrupted");
+            }
+        });
+        t.start();
+        waitForWaiting(dispatcher, 1);
+        dispatcher.release(t1);
+        t.join(5000);
+        assertEquals(0, dispatcher.getWaiting());
+    }
+
+    @Test
+    public void typeLimits() throws Exception {
+        PriorityTaskDispatcher dispatcher = new PriorityTaskDispatcher(3,
+                Collections.singletonMap("hive", 1), Comparator.comparing(BaseTask::getId));
+        BaseTask h1 = taskProvider.createTask("hive", "h1", new File(""));
+        BaseTask h2 = taskProvider.createTask("hive", "h2", new File(""));
+        BaseTask d1 = taskProvider.createTask("dummy", "d1", new File(""));
+        dispatcher.acquire(h1);
+        Thread t = new Thread(() -> {
+            try {
+                dispatcher.acquire(h2);
+            } catch (InterruptedException e) {
+                fail("Interrupted");
+            }
+        });
+        t.start();
+        waitForWaiting(dispatcher, 1);
+        // h2 is held back by the hive limit, but does not block other task types.
+        dispatcher.acquire(d1);
+        assertEquals(1, dispatcher.getWaiting());
+        dispatcher.release(h1);
+        t.join(5000);
+        assertEquals(0, dispatcher.getWaiting());
+    }
+}
@@ -0,0 +1,150 @@
+package net.martinprobson.jobrunner.server;
+
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.configurationservice.GlobalConfigurationProvider;
+import net.martinprobson.jobrunner.main.JobRuntime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.*;
+
+public class JobServerTest {
+
+    private JobServer server;
+
+    @Before
+    public void setUp() throws JobRunnerException {
+        server = new JobServer(new JobRuntime(GlobalConfigurationProvider.get().getConfiguration(), true),
+                dir("taskrunner_test3"), "127.0.0.1", 0, 2, 1);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private String dir(String testBaseDir) {
+        return new File(Objects.requireNonNull(getClass().getClassLoader().getResource(testBaseDir)).getFile()).getAbsolutePath();
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        Properties properties() throws IOException {
+            Properties properties = new Properties();
+            properties.load(new StringReader(body));
+            return properties;
+        }
+    }
+
+    private Response request(String method, String path, String form) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (form != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(form.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+            body.write(buffer, 0, n);
+        in.close();
+        return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void submitAndWait() throws IOException {
+        Response response = request("POST", "/jobs", "wait=true&tasks=" + URLEncoder.encode(dir("taskrunner_test3"), "UTF-8"));
+        assertEquals(200, response.status);
+        Properties result = response.properties();
+        assertEquals("FINISHED", result.getProperty("state"));
+        assertEquals("SUCCESS", result.getProperty("task.create_table.sql"));
+        assertEquals("SUCCESS", result.getProperty("task.drop_table.sql"));
+
+        Response status = request("GET", "/jobs/" + result.getProperty("id"), null);
+        assertEquals(200, status.status);
+        assertEquals("FINISHED", status.properties().getProperty("state"));
+    }
+
+    @Test
+    public void concurrentJobs() throws Exception {
+        Submission success = server.submit(dir("taskrunner_test2"), dir("taskrunner_test2"), false, false, false);
+        Submission failure = server.submit(dir("taskrunner_test1"), dir("taskrunner_test1"), false, false, false);
+        assertTrue(success.await(60, TimeUnit.SECONDS));
+        assertTrue(failure.await(60, TimeUnit.SECONDS));
+        assertEquals(Submission.State.FINISHED, success.getState());
+        assertEquals(Submission.State.FINISHED, failure.getState());
+        assertThat(success.describe(), containsString("task.insert1.sql=SUCCESS"));
+        assertThat(failure.describe(), containsString("task.drop_table1.sql=FAILED"));
+        assertThat(failure.describe(), containsString("task.insert1.sql=NOT_EXECUTED"));
+        // Only the most recent finished job is kept (retain = 1).
+        assertEquals(1, server.list().size());
+    }
+
+    @Test
+    public void fairShare() throws IOException {
+        Response response = request("POST", "/jobs", "wait=true&tenant=reports&weight=2.5&max-concurrency=1&tasks=" +
+                URLEncoder.encode(dir("taskrunner_test3"), "UTF-8"));
+        assertEquals(200, response.status);
+        Properties result = response.properties();
+        assertEquals("reports", result.getProperty("tenant"));
+        assertEquals("2.5", result.getProperty("weight"));
+        assertEquals("1", result.getProperty("max-concurrency"));
+        assertEquals("SUCCESS", result.getProperty("task.drop_table.sql"));
+
+        assertEquals(400, request("POST", "/jobs", "weight=0&tasks=" +
+                URLEncoder.encode(dir("taskrunner_test3"), "UTF-8")).status);
+    }
+
+    @Test
+    public void missingTasks() throws IOException {
+        Response response = request("POST", "/jobs", "wait=true");
+        assertEquals(400, response.status);
+        assertThat(response.body, containsString("Missing parameter: tasks"));
+    }
+
+    @Test
+    public void unknownDirectory() throws IOException {
+        Response response = request("POST", "/jobs?tasks=does_not_exist", null);
+        assertEquals(400, response.status);
+        assertThat(response.body, containsString("directory does_not_exist does not exist"));
+    }
+
+    @Test
+    public void unknownJob() throws IOException {
+        assertEquals(404, request("GET", "/jobs/999", null).status);
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void requiresSharedRuntime() throws JobRunnerException {
+        JobRuntime runtime = new JobRuntime(GlobalConfigurationProvider.get().getConfiguration(), false);
+        try {
+            new JobServer(runtime, dir("taskrunner_test3"), "127.0.0.1", 0, 1, 1).close();
+        } finally {
+            runtime.close();
+        }
+    }
+}
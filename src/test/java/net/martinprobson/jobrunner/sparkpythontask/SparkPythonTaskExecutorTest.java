@@ -2,6 +2,7 @@ package net.martinprobson.jobrunner.sparkpythontask;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
 import net.martinprobson.jobrunner.TaskProvider;
 import net.martinprobson.jobrunner.TaskResult;
 import net.martinprobson.jobrunner.common.BaseTask;
@@ -12,7 +13,10 @@ import org.junit.Test;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -52,4 +56,30 @@ public class SparkPythonTaskExecutorTest {
         assertTrue(taskResult.getProcString().contains("/bin/spark-submit --master local[*] --num-executors 2 --queue default "));
         assertTrue(taskResult.getProcString().contains(".py"));
     }
-}
\ No newline at end of file
+
+    private static Config session(String... command) {
+        return ConfigFactory.parseString("spark-python.session { enabled = true, fallback = true }")
+                .withValue("spark-python.session.command", ConfigValueFactory.fromIterable(Arrays.asList(command)));
+    }
+
+    @Test
+    public void executeInSession() throws Exception {
+        File driver = createFile("echo '#jobrunner-ready'\n" +
+                "while read cmd file; do sh \"$file\"; echo \"#jobrunner-done $?\"; done\n");
+        BaseTask task = taskProvider.createTask("spark-python", "test", createFile("echo from-session"),
+                session("sh", driver.getAbsolutePath()));
+        TaskResult taskResult = task.execute();
+        assertTrue(taskResult.succeeded());
+        assertEquals("from-session\n", taskResult.getOutput());
+        assertTrue(taskResult.getProcString().contains("< RUN "));
+    }
+
+    @Test
+    public void executeSessionFallback() throws Exception {
+        File missing = new File(Files.createTempDirectory("SparkPythonTaskTest").toFile(), "no-such-driver");
+        BaseTask task = taskProvider.createTask("spark-python", "test", createFile("DUMMY"),
+                session(missing.getAbsolutePath()));
+        TaskResult taskResult = task.execute();
+        assertTrue(taskResult.getProcString().contains("/bin/spark-submit --master local[*] --num-executors 2 --queue default "));
+    }
+}
@@ -0,0 +1,200 @@
+package net.martinprobson.jobrunner.speculation;
+
+import com.typesafe.config.ConfigFactory;
+import net.martinprobson.jobrunner.TaskProvider;
+import net.martinprobson.jobrunner.TaskResult;
+import net.martinprobson.jobrunner.common.BaseTask;
+import net.martinprobson.jobrunner.common.JobRunnerException;
+import net.martinprobson.jobrunner.common.TaskAttempt;
+import net.martinprobson.jobrunner.common.TaskExecutor;
+import net.martinprobson.jobrunner.history.TaskHistoryStore;
+import net.martinprobson.jobrunner.history.TaskRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SpeculatorTest {
+
+    private static final String IDEMPOTENT = "speculation { idempotent = true, percentile = 50, multiplier = 2.0, min-runtime = 0ms }";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TaskHistoryStore history;
+    private Speculator speculator;
+
+    @Before
+    public void setUp() throws Exception {
+        history = TaskHistoryStore.open(new File(folder.getRoot(), "history.bin"), 50, 3.0);
+        speculator = new Speculator(history, 5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        speculator.close();
+        history.close();
+    }
+
+    private static BaseTask task(String id, String config) throws JobRunnerException {
+        return TaskProvider.getInstance().createTask("dummy", id, new File(""), ConfigFactory.parseString(config));
+    }
+
+    /**
+     * Record previous successful runs of {@code id} taking {@code duration} ms.
+     */
+    private void ran(String id, long duration) throws JobRunnerException {
+        for (int i = 0; i < 3; i++)
+            history.record(new TaskRun(id, 0, 1000, 1000 + duration, TaskResult.Result.SUCCESS));
+    }
+
+    private static TaskResult success() {
+        return new TaskResult.Builder(TaskResult.Result.SUCCESS).build();
+    }
+
+    @Test
+    public void threshold() throws Exception {
+        ran("t", 100);
+        assertEquals(200, speculator.threshold(task("t", IDEMPOTENT)));
+        assertEquals(1000, speculator.threshold(task("t", IDEMPOTENT + "\nspeculation.min-runtime = 1s")));
+        // Not idempotent, or no history.
+        assertEquals(-1, speculator.threshold(task("t", "")));
+        assertEquals(-1, speculator.threshold(task("u", IDEMPOTENT)));
+    }
+
+    @Test(expected = JobRunnerException.class)
+    public void invalidConfig() throws Exception {
+        speculator.threshold(task("t", "speculation.idempotent = maybe"));
+    }
+
+    @Test
+    public void notSpeculated() throws Exception {
+        ran("t", 10);
+        AtomicBoolean inAttempt = new AtomicBoolean(true);
+        TaskResult result = speculator.execute(task("t", ""), t -> {
+            inAttempt.set(TaskAttempt.current() != null);
+            return success();
+        });
+        assertTrue(result.succeeded());
+        // A task that is not speculated is run by the calling thread, as it would be without a speculator.
+        assertFalse(inAttempt.get());
+        assertEquals(0, speculator.getStarted());
+    }
+
+    @Test
+    public void finishesInTime() throws Exception {
+        ran("t", 5000);
+        AtomicInteger calls = new AtomicInteger();
+        TaskResult result = speculator.execute(task("t", IDEMPOTENT), t -> {
+            calls.incrementAndGet();
+            return success();
+        });
+        assertTrue(result.succeeded());
+        assertEquals(1, calls.get());
+        assertEquals(0, speculator.getStarted());
+    }
+
+    @Test
+    public void stragglerLoses() throws Exception {
+        ran("t", 50);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        TaskExecutor executor = t -> {
+            TaskAttempt attempt = TaskAttempt.current();
+            if (attempt.isSpeculative())
+                return new TaskResult.Builder(TaskResult.Result.SUCCESS).output("speculative").build();
+            // The original attempt hangs until it is cancelled.
+            attempt.onCancel(cancelled::countDown);
+            try {
+                Thread.sleep(30000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            throw new JobRunnerException("killed");
+        };
+        long start = System.currentTimeMillis();
+        TaskResult result = speculator.execute(task("t", IDEMPOTENT), executor);
+        assertEquals("speculative", result.getOutput());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(0, cancelled.getCount());
+        // The losing attempt has stopped by the time execute returns.
+        assertTrue(interrupted.get());
+        assertEquals(1, speculator.getStarted());
+        assertEquals(1, speculator.getWon());
+    }
+
+    @Test
+    public void originalWins() throws Exception {
+        ran("t", 50);
+        CountDownLatch speculativeStarted = new CountDownLatch(1);
+        AtomicBoolean speculativeCancelled = new AtomicBoolean(false);
+        TaskExecutor executor = t -> {
+            TaskAttempt attempt = TaskAttempt.current();
+            try {
+                if (!attempt.isSpeculative()) {
+                    speculativeStarted.await(10, TimeUnit.SECONDS);
+                    return new TaskResult.Builder(TaskResult.Result.SUCCESS).output("original").build();
+                }
+                speculativeStarted.countDown();
+                attempt.onCancel(() -> speculativeCancelled.set(true));
+                Thread.sleep(30000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new JobRunnerException("killed");
+        };
+        TaskResult result = speculator.execute(task("t", IDEMPOTENT), executor);
+        assertEquals("original", result.getOutput());
+        assertTrue(speculativeCancelled.get());
+        assertEquals(1, speculator.getStarted());
+        assertEquals(0, speculator.getWon());
+    }
+
+    @Test
+    public void failedAttemptWaitsForTheOther() throws Exception {
+        ran("t", 50);
+        CountDownLatch speculativeStarted = new CountDownLatch(1);
+        TaskExecutor executor = t -> {
+            try {
+                if (!TaskAttempt.current().isSpeculative()) {
+                    speculativeStarted.await(10, TimeUnit.SECONDS);
+                    throw new JobRunnerException("original failed");
+                }
+                speculativeStarted.countDown();
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new JobRunnerException("interrupted", e);
+            }
+            return new TaskResult.Builder(TaskResult.Result.SUCCESS).output("speculative").build();
+        };
+        assertEquals("speculative", speculator.execute(task("t", IDEMPOTENT), executor).getOutput());
+    }
+
+    @Test
+    public void bothFail() throws Exception {
+        ran("t", 50);
+        TaskExecutor executor = t -> {
+            try {
+                Thread.sleep(TaskAttempt.current().isSpeculative() ? 50 : 300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new JobRunnerException("failed");
+        };
+        try {
+            speculator.execute(task("t", IDEMPOTENT), executor);
+            fail("Expected a JobRunnerException");
+        } catch (JobRunnerException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+}
@@ -73,6 +73,32 @@ public class FreeMarkerTemplateServiceTest {
         fail("Expected exception");
     }
 
+    @Test
+    public void applyNonStringConfig() throws TemplateException {
+        FreeMarkerTemplateService service = new FreeMarkerTemplateService();
+        Config config = ConfigFactory.load("freemarkertest3");
+        String actual = service.apply("test3.sql",
+                "select [#list columns as c][=c][#sep], [/#list] from [=table.name] limit [=rows] -- [=enabled?c]",
+                config);
+        assertEquals("select a, b from bar limit 10 -- true", actual);
+        // No grouping separators in large numbers, and booleans can be interpolated directly.
+        assertEquals("select * from t where x < 0.5 and true limit 10000 -- on",
+                service.apply("test3b.sql",
+                        "select * from t where x < [=ratio] and [=enabled] limit [=big] -- [#if enabled]on[/#if]",
+                        config));
+    }
+
+    @Test
+    public void applyChangedContent() throws TemplateException {
+        FreeMarkerTemplateService service = new FreeMarkerTemplateService();
+        Config config = ConfigFactory.load("freemarkertest1");
+        assertEquals("queuename", service.apply("test4.sql", "[=queue]", config));
+        assertEquals("queuename", service.apply("test4.sql", "[=queue]", config));
+        assertEquals("dummy1", service.apply("test4.sql", "[=dummy]", config));
+        assertEquals("dummy1", new FreeMarkerTemplateService().apply("test4.sql", "[=dummy]",
+                ConfigFactory.load("freemarkertest1")));
+    }
+
     private static String readFile(String dir, String fileName) throws IOException {
         String filePath = testDir + File.separatorChar + fileName;
         return FileUtils.readFileToString(new File(filePath), Charset.defaultCharset());